@@ -21,6 +21,8 @@ import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.annotation.PostConstruct;
 
+import org.prototype.annotation.MessageBus;
+import org.prototype.reflect.Property;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
@@ -97,11 +99,35 @@ public class PrototypeConfig {
 	@Setter
 	private ThreadPoolTaskExecutor secondThreadPool;
 
+	/**
+	 * 是否复用执行链、方法链及原型状态（默认false）. <br>
+	 * 开启后每个线程回收并复用这些对象以减少对象分配. 作为消息内容发布的原型状态（如{@link org.prototype.annotation.Message#EXECUTE}）不回收，
+	 * 异步订阅可以在业务结束后读取
+	 */
+	@Getter
+	@Setter
+	private boolean pooled;
+
+	/**
+	 * 异步消息订阅（{@link org.prototype.annotation.Subscribe#async()}为true）的配置
+	 */
+	@Getter
+	@Setter
+	private AsyncSubscribe asyncSubscribe = new AsyncSubscribe();
+
+	/**
+	 * 属性读写（参数绑定、结果映射等）使用的访问器类型，默认{@link Property.AccessorType#LAMBDA}
+	 */
+	@Getter
+	@Setter
+	private Property.AccessorType propertyAccessor = Property.AccessorType.LAMBDA;
+
 	@Autowired(required = false)
 	private ThreadPoolExecutor threadPoolExecutor;
 
 	@PostConstruct
 	void init() {
+		Property.setAccessorType(propertyAccessor);
 		if (threadPoolExecutor == null && threadPool == null) {
 			threadPool = createThreadPoolTaskExecutor(true);
 		}
@@ -147,6 +173,51 @@ public class PrototypeConfig {
 		return threadPool == null ? threadPoolExecutor : threadPool.getThreadPoolExecutor();
 	}
 
+	/**
+	 * 异步消息订阅的配置. <br>
+	 * 
+	 * <pre>
+	 * 每个异步订阅者有独立的有界队列，由专用的线程池批量处理，同一订阅者的消息按发布顺序处理。
+	 * 属性{@link #threads}：处理消息的线程数，默认为CPU核数。
+	 * 属性{@link #queueCapacity}：每个订阅者的队列容量（向上取2的幂），默认1024。
+	 * 属性{@link #batchSize}：每批处理的最大消息数，默认64。
+	 * 属性{@link #overflow}：队列满时的溢出策略，默认DROP（丢弃新消息并计数，不阻塞发布消息的业务线程；不能丢失消息时设置为BLOCK）。
+	 * 属性{@link #shutdownTimeout}：关闭时等待队列中消息处理完成的最长时间（秒），默认10。
+	 * </pre>
+	 * 
+	 * @author lj
+	 *
+	 */
+	@Getter
+	@Setter
+	public static class AsyncSubscribe {
+
+		/**
+		 * 处理消息的线程数
+		 */
+		private int threads = Runtime.getRuntime().availableProcessors();
+
+		/**
+		 * 每个订阅者的队列容量
+		 */
+		private int queueCapacity = 1024;
+
+		/**
+		 * 每批处理的最大消息数
+		 */
+		private int batchSize = 64;
+
+		/**
+		 * 队列满时的溢出策略
+		 */
+		private MessageBus.OverflowPolicy overflow = MessageBus.OverflowPolicy.DROP;
+
+		/**
+		 * 关闭时等待消息处理完成的最长时间（秒）
+		 */
+		private int shutdownTimeout = 10;
+	}
+
 	/**
 	 * 给API生成提供的配置. <br>
 	 * 
@@ -120,7 +120,7 @@ public class CatchMethodAdvisor implements MethodAdvisor {
 		 */
 		@Override
 		public Object doFilter(Object[] args, MethodChain chain) throws Exception {
-			log.debug("Business {} catch exception for method : {}", PrototypeStatus.getStatus().getId(),
+			log.debug("Business {} catch exception for method : {}", PrototypeStatus.getStatus(),
 					chain.getMethod());
 			try {
 				return chain.doFilter(args);
@@ -155,8 +155,8 @@ public class CatchMethodAdvisor implements MethodAdvisor {
 			if (method == null) {// 未匹配到处理异常的方法，则将原异常抛出
 				throw e;
 			}
-			log.debug("Business {} catch exception to method : {}", PrototypeStatus.getStatus().getId(), method);
-			Message.getSubject().onNext(new Message(Message.CATCH, source.getDeclaringClass().getName(),
+			log.debug("Business {} catch exception to method : {}", PrototypeStatus.getStatus(), method);
+			Message.getBus().publish(new Message(Message.CATCH, source.getDeclaringClass().getName(),
 					new Message.ExceptionMessage(chain, e)));
 			return method.invoke(chain.getTarget(),helper.getInjectParameters(method,e));// 调用匹配的异常处理方法进行处理
 		}
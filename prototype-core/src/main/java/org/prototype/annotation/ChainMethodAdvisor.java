@@ -134,7 +134,7 @@ public class ChainMethodAdvisor implements MethodAdvisor {
 
 		@Override
 		public Object doFilter(Object[] args, MethodChain methodChain) throws Exception {
-			log.debug("Business {} doing chain : {} {} {}", PrototypeStatus.getStatus().getId(), chain,
+			log.debug("Business {} doing chain : {} {} {}", PrototypeStatus.getStatus(), chain,
 					chain.after() ? "after" : "before", methodChain.getMethod());
 			if (debug) {
 				long nano = System.nanoTime();
@@ -142,7 +142,7 @@ public class ChainMethodAdvisor implements MethodAdvisor {
 					return doFilterInner(args, methodChain);
 				} finally {
 					log.debug("Business {} done chain : {} {} {} use time {} nanoseconds",
-							PrototypeStatus.getStatus().getId(), chain, chain.after() ? "after" : "before",
+							PrototypeStatus.getStatus(), chain, chain.after() ? "after" : "before",
 							methodChain.getMethod(), System.nanoTime() - nano);
 				}
 			} else {
@@ -183,17 +183,17 @@ public class ChainMethodAdvisor implements MethodAdvisor {
 			for (String methodName : chain.value()) {
 				Method method = methodChain.findUniqueMethod(methodName, !chain.dynamic());
 				if (method == null) {
-					log.debug("Business {} chain method '{}' ignore in '{}'",status.getId(), methodName, sourceMethod);
+					log.debug("Business {} chain method '{}' ignore in '{}'",status, methodName, sourceMethod);
 					continue;
 				}
 				Object[] parameters = helper.getInjectParameters(method, sourceMethod, args);
 				try {
 					Object rs = method.invoke(methodChain.getTarget(), parameters);
 					if (Boolean.FALSE.equals(rs)) {
-						log.debug("Business {} chain method '{}' return false in '{}'",status.getId(), methodName, sourceMethod);
+						log.debug("Business {} chain method '{}' return false in '{}'",status, methodName, sourceMethod);
 						return false;
 					}
-					log.debug("Business {} chain method '{}' executed in '{}'",status.getId(), methodName, sourceMethod);
+					log.debug("Business {} chain method '{}' executed in '{}'",status, methodName, sourceMethod);
 				} finally {
 					helper.release(method, sourceMethod, parameters);
 				}
@@ -120,11 +120,11 @@ public class DecisionMethodAdvisor implements MethodAdvisor {
 		public Object doFilter(Object[] args, MethodChain chain) throws Exception {
 			Method source = chain.getMethod();
 			PrototypeStatus status=PrototypeStatus.getStatus();
-			log.debug("Business {} decision beging for method '{}'",status.getId(), source);
+			log.debug("Business {} decision beging for method '{}'",status, source);
 			Object rs = chain.doFilter(args);
 			String methodName = doDecision(rs);// 获取决策目标方法
 			if (methodName != null) {// 决策成功
-				log.debug("Business {} decision to method '{}' after method '{}'",status.getId(), methodName, source);
+				log.debug("Business {} decision to method '{}' after method '{}'",status, methodName, source);
 				Method method = chain.findUniqueMethod(methodName, true);
 				Object[] parameters=helper.getInjectParameters(method, source, args);
 				try{
@@ -133,7 +133,7 @@ public class DecisionMethodAdvisor implements MethodAdvisor {
 					helper.release(method, source, parameters);
 				}
 			} else {// 无决策
-				log.debug("Business {} decision is do nothing after method {}",status.getId(), source);
+				log.debug("Business {} decision is do nothing after method {}",status, source);
 			}
 			return rs;
 		}
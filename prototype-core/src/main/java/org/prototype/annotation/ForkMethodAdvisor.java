@@ -19,6 +19,8 @@ import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.annotation.Resource;
 
@@ -41,6 +43,7 @@ import lombok.extern.slf4j.Slf4j;
  * 允许并发执行的方法有自己的异常处理（不会使用业务类的异常处理）.
  * 与责任链/异常处理/决策等方法不同的是，并行方法不允许直接引用定义注解Fork的方法的参数，方法参数只能是Spring
  * bean或通过BeanInjecter接口注入的对象。
+ * 业务有截止时间时，最多等待到截止时间，仍未完成的抛出TimeoutException（未开始执行的方法不再执行）。
  * 
  * @author lj
  *
@@ -173,11 +176,13 @@ public class ForkMethodAdvisor implements MethodAdvisor {
 		 *            方法访问
 		 * @param fork
 		 * @throws InterruptedException
+		 * @throws TimeoutException
+		 *             超过截止时间
 		 */
-		private void doFork(MethodChain chain) throws InterruptedException {
+		private void doFork(MethodChain chain) throws InterruptedException, TimeoutException {
 			Method source = chain.getMethod();
 			PrototypeStatus status=PrototypeStatus.getStatus();
-			log.debug("Business {} start fork : {} in {}",status.getId(), Arrays.asList(fork.value()), source);
+			log.debug("Business {} start fork : {} in {}",status, Arrays.asList(fork.value()), source);
 			CountDownLatch latch = new CountDownLatch(fork.value().length);
 			Executor executor=findExecutor(chain.getTarget(),fork.executor());
 			if(executor==null){
@@ -192,8 +197,13 @@ public class ForkMethodAdvisor implements MethodAdvisor {
 					executor.execute(worker);
 				}
 			}
-			latch.await();
-			log.debug("Business {} end fork in {}",status.getId(), executor);
+			if (status == null || !status.hasDeadline()) {
+				latch.await();
+			} else if (!latch.await(status.getRemainingNanos(), TimeUnit.NANOSECONDS)) {
+				throw new TimeoutException("Business " + status + " fork " + Arrays.asList(fork.value()) + " in "
+						+ source + " exceeded deadline , " + latch.getCount() + " unfinished");
+			}
+			log.debug("Business {} end fork in {}",status, executor);
 		}
 
 	}
@@ -24,6 +24,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.annotation.Resource;
 
@@ -61,6 +65,8 @@ import lombok.extern.slf4j.Slf4j;
 	  b)、能通过接口{@link org.prototype.core.BeanInjecter}注入。
 	  c)、来源于Spring applicationContext中的bean.
  * 4、可以在启动类中加入注解DefaultProperties作为全局配置
+ * 5、业务有截止时间时，最多等待到截止时间（与Hystrix的执行超时取较早者），超时后取消命令并执行fallback方法；已超过截止时间时直接执行fallback方法.
+ *    Hystrix的命令属性按commandKey全局缓存，不能按每次调用设置执行超时，因此截止时间在调用方等待结果时控制.
  * </pre>
  * 
  * @author lj
@@ -134,7 +140,12 @@ public class HystrixCommandMethodAdvisor implements MethodAdvisor {
 		@Override
 		public Object doFilter(Object[] args, MethodChain chain) throws Exception {
 			fallbackMethod = getFallbackMethod(chain);
-			return new ServiceCommand(getSetter(chain), chain, args, getIgnoreExceptions()).execute();
+			ServiceCommand command = new ServiceCommand(getSetter(chain), chain, args, getIgnoreExceptions());
+			PrototypeStatus status = PrototypeStatus.getStatus();
+			if (status == null || !status.hasDeadline()) {
+				return command.execute();
+			}
+			return command.execute(status.getRemainingNanos());
 		}
 
 		/**
@@ -237,7 +248,7 @@ public class HystrixCommandMethodAdvisor implements MethodAdvisor {
 
 			private Exception exception;// 捕获的异常
 			
-			private String id;
+			private long id;
 
 			/**
 			 * 构造
@@ -252,9 +263,10 @@ public class HystrixCommandMethodAdvisor implements MethodAdvisor {
 			public ServiceCommand(Setter setter, MethodChain chain, Object[] args, Set<Class<?>> ignoreExceptions) {
 				super(setter);
 				this.chain = chain;
+				chain.retain();// 可能在Hystrix线程中执行，不能被回收复用
 				this.args = args;
 				this.ignoreExceptions = ignoreExceptions;
-				this.id=PrototypeStatus.getStatus().getId();
+				this.id=PrototypeStatus.getStatus().getSeq();
 			}
 
 			@Override
@@ -264,8 +276,8 @@ public class HystrixCommandMethodAdvisor implements MethodAdvisor {
 				} catch (InvocationTargetException e) {
 					Throwable throwable = e.getTargetException();
 					if (isIgonre(throwable)) {// 抛出忽略的异常消息
-						Message.getSubject()
-								.onNext(new Message(Message.IGNORE_EXCEPTION, chain.getTarget().getClass().toString(),
+						Message.getBus()
+								.publish(new Message(Message.IGNORE_EXCEPTION, chain.getTarget().getClass().toString(),
 										new Message.ExceptionMessage(chain, exception)));
 						throw new HystrixBadRequestException(throwable.getMessage(), throwable);
 					}
@@ -275,6 +287,32 @@ public class HystrixCommandMethodAdvisor implements MethodAdvisor {
 				}
 			}
 
+			/**
+			 * 在剩余时间内执行，超时后取消执行并调用fallback方法
+			 * 
+			 * @param remainingNanos
+			 *            到截止时间的剩余时间（纳秒）
+			 * @return 执行结果
+			 * @throws Exception
+			 *             与{@link #execute()}相同的异常
+			 */
+			Object execute(long remainingNanos) throws Exception {
+				if (remainingNanos <= 0) {
+					log.warn("Business {} , method {} deadline exceeded before execute", id, chain.getMethod());
+					return getFallback();
+				}
+				Future<Object> future = queue();
+				try {
+					return future.get(remainingNanos, TimeUnit.NANOSECONDS);
+				} catch (TimeoutException e) {
+					future.cancel(true);
+					log.warn("Business {} , method {} deadline exceeded", id, chain.getMethod());
+					return getFallback();
+				} catch (ExecutionException e) {
+					throw decomposeException(e);
+				}
+			}
+
 			/**
 			 * 检查异常是否需要忽略
 			 * 
@@ -298,7 +336,7 @@ public class HystrixCommandMethodAdvisor implements MethodAdvisor {
 			protected Object getFallback() {
 				Method method = chain.getMethod();
 				if (exception != null) {// 抛出Fallback消息
-					Message.getSubject().onNext(new Message(Message.FALLBACK, chain.getTarget().getClass().getName(),
+					Message.getBus().publish(new Message(Message.FALLBACK, chain.getTarget().getClass().getName(),
 							new Message.ExceptionMessage(chain, exception)));
 				}
 				log.debug("Business {} , method {} fallback",id, method);
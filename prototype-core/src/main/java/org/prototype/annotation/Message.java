@@ -81,8 +81,8 @@ public class Message implements java.io.Serializable {
 	 */
 	public static final String LIMIT = "limit";
 
-	// 消息主题
-	private static final PublishSubject<Message> SUBJECT = PublishSubject.create();
+	// 消息总线
+	private static final MessageBus BUS = new MessageBus();
 
 	@Getter
 	private String type;
@@ -108,12 +108,24 @@ public class Message implements java.io.Serializable {
 	}
 
 	/**
-	 * 获取消息主题
+	 * 获取消息总线
+	 * 
+	 * @return 消息总线
+	 */
+	public static MessageBus getBus() {
+		return BUS;
+	}
+
+	/**
+	 * 获取消息主题. <br>
+	 * 发出的消息同时由消息总线分派，订阅者会收到全部类型的消息（在发布消息的线程中）.
+	 * 首次调用后每条消息都会经过消息主题，新代码发布消息使用{@link MessageBus#publish(Message)}，
+	 * 订阅使用{@link MessageBus#subscribe(MessageBus.Handler, String...)}.
 	 * 
 	 * @return 消息主题
 	 */
 	public static PublishSubject<Message> getSubject() {
-		return SUBJECT;
+		return BUS.getLegacy();
 	}
 
 	/**
@@ -138,6 +150,10 @@ public class Message implements java.io.Serializable {
 				status = new PrototypeStatus();
 				status.setTarget(chain.getTarget());
 			}
+			status.retain();// 消息持有状态及方法链，不能被回收复用
+			if (chain != null) {
+				chain.retain();
+			}
 			this.chain = chain;
 		}
 		
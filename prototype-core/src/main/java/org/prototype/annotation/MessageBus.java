@@ -0,0 +1,518 @@
+package org.prototype.annotation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import rx.Subscriber;
+import rx.subjects.PublishSubject;
+
+/**
+ * 消息总线. <br>
+ *
+ * <pre>
+ * 按消息类型路由：发布消息时只分派给订阅了该类型（及订阅全部类型）的订阅者，不再由每个订阅者过滤全部消息。
+ * 订阅分为两种：
+ * 1、同步订阅：在发布消息的线程中直接处理。
+ * 2、缓冲订阅：每个订阅者有一个有界无锁环形队列，由指定的Executor批量取出处理，同一订阅者的消息按发布顺序处理。
+ *    队列满时按溢出策略处理：{@link OverflowPolicy#DROP}丢弃新消息，{@link OverflowPolicy#LATEST}丢弃最旧的消息，{@link OverflowPolicy#BLOCK}阻塞发布者直到队列有空间。
+ * 订阅者处理消息的异常只记录日志，不影响发布者及其它订阅者。
+ * </pre>
+ *
+ * @author lj
+ *
+ */
+@Slf4j
+public final class MessageBus {
+
+	private static final Subscription[] EMPTY = new Subscription[0];
+
+	/**
+	 * 消息类型与订阅者的映射（写时复制）
+	 */
+	private final Map<String, Subscription[]> topics = new ConcurrentHashMap<>();
+
+	/**
+	 * 订阅全部类型的订阅者（写时复制）
+	 */
+	private volatile Subscription[] all = EMPTY;
+
+	/**
+	 * 兼容{@link Message#getSubject()}的订阅者（只在有订阅者时分派）
+	 */
+	private final PublishSubject<Message> legacy = PublishSubject.create();
+
+	/**
+	 * 是否已将消息主题中发出的消息转发到消息总线
+	 */
+	private final AtomicBoolean bridged = new AtomicBoolean();
+
+	/**
+	 * 当前线程中由消息总线发给消息主题的消息（转发时跳过，避免重复分派）
+	 */
+	private final ThreadLocal<Message> publishing = new ThreadLocal<>();
+
+	MessageBus() {
+		// 由Message创建唯一实例
+	}
+
+	/**
+	 * 发布消息
+	 *
+	 * @param message
+	 *            消息
+	 */
+	public void publish(Message message) {
+		dispatch(message);
+		if (legacy.hasObservers()) {
+			Message previous = publishing.get();
+			publishing.set(message);
+			try {
+				legacy.onNext(message);
+			} finally {
+				if (previous == null) {
+					publishing.remove();
+				} else {
+					publishing.set(previous);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 分派给订阅者
+	 */
+	private void dispatch(Message message) {
+		Subscription[] subscriptions = topics.get(message.getType());
+		if (subscriptions != null) {
+			for (Subscription subscription : subscriptions) {
+				subscription.offer(message);
+			}
+		}
+		for (Subscription subscription : all) {
+			subscription.offer(message);
+		}
+	}
+
+	/**
+	 * 是否有订阅者处理指定类型的消息（用于在没有订阅者时避免创建消息）
+	 *
+	 * @param type
+	 *            消息类型
+	 * @return 有订阅者时返回true
+	 */
+	public boolean hasSubscribers(String type) {
+		return all.length > 0 || topics.containsKey(type) || legacy.hasObservers();
+	}
+
+	/**
+	 * 获取兼容的消息主题，首次获取时将其中直接发出的消息转发到消息总线
+	 *
+	 * @return 消息主题
+	 */
+	PublishSubject<Message> getLegacy() {
+		if (bridged.compareAndSet(false, true)) {
+			legacy.unsafeSubscribe(new Subscriber<Message>() {
+
+				@Override
+				public void onNext(Message message) {
+					if (publishing.get() != message) {
+						dispatch(message);
+					}
+				}
+
+				@Override
+				public void onError(Throwable e) {
+					// do nothing
+				}
+
+				@Override
+				public void onCompleted() {
+					// do nothing
+				}
+			});
+		}
+		return legacy;
+	}
+
+	/**
+	 * 同步订阅（在发布消息的线程中处理）
+	 *
+	 * @param handler
+	 *            消息处理
+	 * @param types
+	 *            消息类型，为空时订阅全部类型
+	 * @return 订阅
+	 */
+	public Subscription subscribe(Handler handler, String... types) {
+		return register(new Subscription(this, handler, types, null, 0, null, 1));
+	}
+
+	/**
+	 * 缓冲订阅（由指定的Executor批量处理）
+	 *
+	 * @param handler
+	 *            消息处理
+	 * @param executor
+	 *            处理消息的Executor
+	 * @param capacity
+	 *            队列容量（向上取2的幂）
+	 * @param policy
+	 *            队列满时的溢出策略
+	 * @param batchSize
+	 *            每批处理的最大消息数
+	 * @param types
+	 *            消息类型，为空时订阅全部类型
+	 * @return 订阅
+	 */
+	public Subscription subscribe(Handler handler, Executor executor, int capacity, OverflowPolicy policy,
+			int batchSize, String... types) {
+		if (executor == null || policy == null || capacity <= 0 || batchSize <= 0) {
+			throw new IllegalArgumentException("Executor and policy are required , capacity and batch size must be positive");
+		}
+		return register(new Subscription(this, handler, types, executor, capacity, policy, batchSize));
+	}
+
+	private synchronized Subscription register(Subscription subscription) {
+		if (subscription.types.length == 0) {
+			all = add(all, subscription);
+		} else {
+			for (String type : subscription.types) {
+				topics.put(type, add(topics.getOrDefault(type, EMPTY), subscription));
+			}
+		}
+		log.debug("Subscribe {}", subscription);
+		return subscription;
+	}
+
+	private synchronized void unregister(Subscription subscription) {
+		if (subscription.types.length == 0) {
+			all = remove(all, subscription);
+			return;
+		}
+		for (String type : subscription.types) {
+			Subscription[] subscriptions = topics.get(type);
+			if (subscriptions == null) {
+				continue;
+			}
+			subscriptions = remove(subscriptions, subscription);
+			if (subscriptions.length == 0) {
+				topics.remove(type);
+			} else {
+				topics.put(type, subscriptions);
+			}
+		}
+	}
+
+	private static Subscription[] add(Subscription[] subscriptions, Subscription subscription) {
+		Subscription[] rs = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+		rs[subscriptions.length] = subscription;
+		return rs;
+	}
+
+	private static Subscription[] remove(Subscription[] subscriptions, Subscription subscription) {
+		List<Subscription> list = new ArrayList<>(Arrays.asList(subscriptions));
+		list.remove(subscription);
+		return list.toArray(new Subscription[list.size()]);
+	}
+
+	/**
+	 * 消息处理
+	 *
+	 * @author lj
+	 *
+	 */
+	@FunctionalInterface
+	public interface Handler {
+
+		/**
+		 * 处理一条消息
+		 *
+		 * @param message
+		 *            消息
+		 */
+		void onMessage(Message message);
+
+		/**
+		 * 批量处理消息（缓冲订阅时调用），默认逐条处理
+		 *
+		 * @param messages
+		 *            按发布顺序的消息
+		 */
+		default void onMessages(List<Message> messages) {
+			for (Message message : messages) {
+				onMessage(message);
+			}
+		}
+	}
+
+	/**
+	 * 队列满时的溢出策略
+	 *
+	 * @author lj
+	 *
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * 丢弃新消息
+		 */
+		DROP,
+		/**
+		 * 丢弃最旧的消息，保留最新的
+		 */
+		LATEST,
+		/**
+		 * 阻塞发布者直到队列有空间（一个处理慢的订阅者会阻塞发布消息的业务线程）
+		 */
+		BLOCK
+	}
+
+	/**
+	 * 订阅. <br>
+	 * 缓冲订阅同一时刻最多只有一个处理任务，保证消息按发布顺序处理.
+	 *
+	 * @author lj
+	 *
+	 */
+	public static final class Subscription {
+
+		private final MessageBus bus;
+
+		private final Handler handler;
+
+		/**
+		 * 订阅的消息类型（为空时订阅全部）
+		 */
+		private final String[] types;
+
+		private final Executor executor;
+
+		private final MessageRingBuffer<Message> queue;
+
+		@Getter
+		private final OverflowPolicy policy;
+
+		@Getter
+		private final int batchSize;
+
+		private final AtomicBoolean scheduled = new AtomicBoolean();// 是否已提交处理任务
+
+		private final AtomicLong dropped = new AtomicLong();// 丢弃的消息数
+
+		private final AtomicLong delivered = new AtomicLong();// 已处理的消息数
+
+		private final Runnable drainTask = this::drain;
+
+		private volatile Thread drainThread;// 正在处理消息的线程
+
+		private Subscription(MessageBus bus, Handler handler, String[] types, Executor executor, int capacity,
+				OverflowPolicy policy, int batchSize) {
+			if (handler == null) {
+				throw new IllegalArgumentException("Handler is required");
+			}
+			this.bus = bus;
+			this.handler = handler;
+			this.types = types == null ? new String[0] : types.clone();
+			this.executor = executor;
+			this.queue = executor == null ? null : new MessageRingBuffer<>(capacity);
+			this.policy = policy;
+			this.batchSize = batchSize;
+		}
+
+		/**
+		 * 取消订阅（已进入队列的消息仍会被处理）
+		 */
+		public void unsubscribe() {
+			bus.unregister(this);
+		}
+
+		/**
+		 * 是否缓冲订阅
+		 *
+		 * @return 是否缓冲订阅
+		 */
+		public boolean isBuffered() {
+			return queue != null;
+		}
+
+		/**
+		 * 订阅的消息类型
+		 *
+		 * @return 消息类型，为空时订阅全部类型
+		 */
+		public String[] getTypes() {
+			return types.clone();
+		}
+
+		/**
+		 * 队列中等待处理的消息数（近似值）
+		 *
+		 * @return 消息数
+		 */
+		public int getQueueSize() {
+			return queue == null ? 0 : queue.size();
+		}
+
+		/**
+		 * 队列容量
+		 *
+		 * @return 队列容量，同步订阅为0
+		 */
+		public int getCapacity() {
+			return queue == null ? 0 : queue.capacity();
+		}
+
+		/**
+		 * 因队列满而丢弃的消息数
+		 *
+		 * @return 消息数
+		 */
+		public long getDropped() {
+			return dropped.get();
+		}
+
+		/**
+		 * 已处理的消息数
+		 *
+		 * @return 消息数
+		 */
+		public long getDelivered() {
+			return delivered.get();
+		}
+
+		/**
+		 * 队列中的消息是否已全部处理完成（同步订阅总是返回true）
+		 *
+		 * @return 没有等待及正在处理的消息时返回true
+		 */
+		public boolean isIdle() {
+			return queue == null || (!scheduled.get() && queue.size() == 0);
+		}
+
+		/**
+		 * 接收消息
+		 *
+		 * @param message
+		 *            消息
+		 */
+		void offer(Message message) {
+			if (queue == null) {
+				deliver(message);
+				return;
+			}
+			if (!queue.offer(message) && !overflow(message)) {
+				dropped.incrementAndGet();
+				return;
+			}
+			schedule();
+		}
+
+		/**
+		 * 队列满时的处理
+		 *
+		 * @return 消息是否已进入队列
+		 */
+		private boolean overflow(Message message) {
+			switch (policy) {
+			case LATEST:
+				while (!queue.offer(message)) {
+					if (queue.poll() != null) {
+						dropped.incrementAndGet();
+					}
+				}
+				return true;
+			case BLOCK:
+				if (drainThread == Thread.currentThread()) {// 处理消息时发布给自己，阻塞会死锁
+					return false;
+				}
+				while (!queue.offer(message)) {
+					schedule();
+					LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+				}
+				return true;
+			default:
+				return false;
+			}
+		}
+
+		/**
+		 * 提交处理任务（已提交时不重复提交）
+		 */
+		private void schedule() {
+			if (scheduled.compareAndSet(false, true)) {
+				try {
+					executor.execute(drainTask);
+				} catch (RejectedExecutionException e) {
+					log.warn("Message executor rejected , deliver in current thread", e);
+					drain();
+				}
+			}
+		}
+
+		/**
+		 * 批量取出并处理队列中的消息
+		 */
+		private void drain() {
+			drainThread = Thread.currentThread();
+			boolean completed = false;
+			try {
+				List<Message> batch = new ArrayList<>(batchSize);
+				do {
+					Message message;
+					while ((message = queue.poll()) != null) {
+						batch.add(message);
+						if (batch.size() == batchSize) {
+							deliver(batch);
+						}
+					}
+					if (!batch.isEmpty()) {
+						deliver(batch);
+					}
+					scheduled.set(false);
+				} while (queue.size() > 0 && scheduled.compareAndSet(false, true));// 避免在设置标志前放入的消息无人处理
+				completed = true;
+			} finally {
+				drainThread = null;
+				if (!completed) {// 处理消息时抛出Error，清除标志使下次发布时重新提交处理任务
+					scheduled.set(false);
+				}
+			}
+		}
+
+		private void deliver(List<Message> batch) {
+			try {
+				handler.onMessages(batch);
+			} catch (RuntimeException e) {
+				log.warn("Subscription " + this + " process messages error", e);
+			}
+			delivered.addAndGet(batch.size());
+			batch.clear();
+		}
+
+		private void deliver(Message message) {
+			try {
+				handler.onMessage(message);
+			} catch (RuntimeException e) {
+				log.warn("Subscription " + this + " process message error", e);
+			}
+			delivered.incrementAndGet();
+		}
+
+		@Override
+		public String toString() {
+			return handler + " " + (types.length == 0 ? "*" : Arrays.toString(types))
+					+ (queue == null ? "" : (" " + policy + " " + queue.capacity()));
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package org.prototype.annotation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界无锁环形队列. <br>
+ * 多生产者多消费者（溢出策略为保留最新时，生产者也会取出最旧的数据），每个槽位以序号标记是否可写/可读，容量为2的幂.
+ *
+ * @author lj
+ *
+ * @param <E>
+ *            元素类型
+ */
+final class MessageRingBuffer<E> {
+
+	private final int mask;
+
+	private final AtomicReferenceArray<E> buffer;
+
+	/**
+	 * 每个槽位的序号：等于写位置时可写，等于写位置+1时可读
+	 */
+	private final AtomicLongArray sequences;
+
+	private final AtomicLong head = new AtomicLong();// 读位置
+
+	private final AtomicLong tail = new AtomicLong();// 写位置
+
+	/**
+	 * 构造
+	 *
+	 * @param capacity
+	 *            容量（向上取2的幂）
+	 */
+	MessageRingBuffer(int capacity) {
+		int size = capacity < 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+		mask = size - 1;
+		buffer = new AtomicReferenceArray<>(size);
+		sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * 放入数据
+	 *
+	 * @param element
+	 *            数据
+	 * @return 队列已满时返回false
+	 */
+	boolean offer(E element) {
+		while (true) {
+			long pos = tail.get();
+			int index = (int) pos & mask;
+			long diff = sequences.get(index) - pos;
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					buffer.lazySet(index, element);
+					sequences.set(index, pos + 1);
+					return true;
+				}
+			} else if (diff < 0) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * 取出最早的数据
+	 *
+	 * @return 队列为空时返回null
+	 */
+	E poll() {
+		while (true) {
+			long pos = head.get();
+			int index = (int) pos & mask;
+			long diff = sequences.get(index) - (pos + 1);
+			if (diff == 0) {
+				if (head.compareAndSet(pos, pos + 1)) {
+					E rs = buffer.get(index);
+					buffer.lazySet(index, null);
+					sequences.set(index, pos + mask + 1);
+					return rs;
+				}
+			} else if (diff < 0) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * 当前数据量（近似值）
+	 *
+	 * @return 数据量
+	 */
+	int size() {
+		long rs = tail.get() - head.get();
+		return rs < 0 ? 0 : (int) Math.min(rs, mask + 1);
+	}
+
+	/**
+	 * 容量
+	 *
+	 * @return 容量
+	 */
+	int capacity() {
+		return mask + 1;
+	}
+
+}
@@ -29,6 +29,7 @@ import lombok.extern.slf4j.Slf4j;
 /**
  * 方法异步调用Runnable实现. <br>
  * 支持引种池使用PriorityBlockingQueue，以分别给予不同类型的异步线程不同的优先级。
+ * 异步线程继承业务的截止时间（见{@link PrototypeStatus#setDeadline(long, java.util.concurrent.TimeUnit)}），开始执行时已超过截止时间则不再调用方法。
  * 
  * @author lj
  *
@@ -60,6 +61,7 @@ public class MethodInvokerRunnable implements Runnable, Comparable<MethodInvoker
 	public MethodInvokerRunnable(InjectHelper helper, MethodChain chain, int priority) {
 		this.helper = helper;
 		this.chain = chain;
+		chain.retain();// 在异步线程中继续使用，不能被回收复用
 		this.target = chain.getTarget();
 		this.priority = priority;
 		sequence = SEQ.incrementAndGet();
@@ -105,15 +107,17 @@ public class MethodInvokerRunnable implements Runnable, Comparable<MethodInvoker
 	public void run() {
 		PrototypeStatus.setStatus(status);
 		Method m=method == null ? chain.getMethod() : method;
-		log.debug("Business {} , Async method : {}", status.getId(), m);
+		log.debug("Business {} , Async method : {}", status, m);
 		long nano = log.isDebugEnabled() ? 0 : System.nanoTime();
 		if (status != null) {
 			PrototypeStatus.setStatus(status);
-			Message.getSubject().onNext(new Message(Message.ASYNC,m.toString(), status));
+			Message.getBus().publish(new Message(Message.ASYNC,m.toString(), status));
 		}
 		Object[] args = null;
 		try {// 调用
-			if (chain != null) {
+			if (status != null && status.isExpired()) {// 等待执行时已超过截止时间
+				log.warn("Business {} , Async method {} skipped , deadline exceeded", status, m);
+			} else if (chain != null) {
 				chain.doFilter(args);
 			} else {
 				args = helper.getInjectParameters(m);
@@ -132,7 +136,7 @@ public class MethodInvokerRunnable implements Runnable, Comparable<MethodInvoker
 				PrototypeStatus.setStatus(null);
 			}
 			if (nano > 0) {
-				log.debug("Business {} , Async end : {} , use time {} nanoseconds", status.getId(),
+				log.debug("Business {} , Async end : {} , use time {} nanoseconds", status,
 						m, System.nanoTime() - nano);
 			}
 		}
@@ -146,7 +150,7 @@ public class MethodInvokerRunnable implements Runnable, Comparable<MethodInvoker
 	 */
 	private void onThrowable(Throwable throwable) {
 		if (status != null) {
-			Message.getSubject().onNext(new Message(Message.ASYNC_EXCEPTION, method.toString(), throwable));
+			Message.getBus().publish(new Message(Message.ASYNC_EXCEPTION, method.toString(), throwable));
 		}
 		if (throwable instanceof RuntimeException) {
 			throw (RuntimeException) throwable;
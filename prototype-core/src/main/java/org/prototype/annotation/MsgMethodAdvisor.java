@@ -26,7 +26,6 @@ import org.prototype.core.PrototypeStatus;
 import org.springframework.stereotype.Component;
 
 import lombok.extern.slf4j.Slf4j;
-import rx.subjects.PublishSubject;
 
 /**
  * 消息注解处理.
@@ -75,18 +74,18 @@ public class MsgMethodAdvisor implements MethodAdvisor {
 		public Object doFilter(Object[] args, MethodChain chain) throws Exception {
 			Object rs = chain.doFilter(args);
 			if (rs != null) {
-				PublishSubject<Message> subject = Message.getSubject();
+				MessageBus bus = Message.getBus();
 				String className = chain.getTarget().getClass().getName();
 				PrototypeStatus status=PrototypeStatus.getStatus();
 				if (rs instanceof Collection) {// 集合数据以单一形式发出
 					Collection<?> collection = (Collection<?>) rs;
-					log.debug("Business {} , Pulish msg in {}, number is : {}",status.getId(), chain.getMethod(), collection.size());
+					log.debug("Business {} , Pulish msg in {}, number is : {}",status, chain.getMethod(), collection.size());
 					for (Object obj : collection) {
-						subject.onNext(new Message(msg.type(), className, obj));
+						bus.publish(new Message(msg.type(), className, obj));
 					}
 				} else {// 单一数据
-					log.debug("Business {} , Pulish msg in {}, number is : 1",status.getId(), chain.getMethod());
-					subject.onNext(new Message(msg.type(), className, rs));
+					log.debug("Business {} , Pulish msg in {}, number is : 1",status, chain.getMethod());
+					bus.publish(new Message(msg.type(), className, rs));
 				}
 			}
 			return rs;
@@ -159,7 +159,7 @@ public class OverloadAsyncMethodAdvisor implements MethodAdvisor {
 		 * @param chain
 		 */
 		private void doAsync(MethodChain chain) throws Exception {
-			log.debug("Business {} , OverloadAsync in : {}",PrototypeStatus.getStatus().getId(), chain.getMethod());
+			log.debug("Business {} , OverloadAsync in : {}",PrototypeStatus.getStatus(), chain.getMethod());
 			Executor executor = findExecutor(chain.getTarget(), async.executor());
 			if (executor == null) {
 				log.warn("OverloadAsync is need " + Executor.class.getName());
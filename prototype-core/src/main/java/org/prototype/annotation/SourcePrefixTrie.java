@@ -0,0 +1,97 @@
+package org.prototype.annotation;
+
+import java.util.Arrays;
+
+/**
+ * 消息来源前缀树. <br>
+ * 用于判断消息来源是否以任意一个指定前缀开头，匹配代价只与来源字符串长度有关，与前缀数量无关.
+ *
+ * @author lj
+ *
+ */
+final class SourcePrefixTrie {
+
+	private final Node root = new Node();
+
+	private final boolean empty;
+
+	/**
+	 * 构造
+	 *
+	 * @param prefixes
+	 *            前缀
+	 */
+	SourcePrefixTrie(String[] prefixes) {
+		for (String prefix : prefixes) {
+			Node node = root;
+			for (int i = 0, k = prefix.length(); i < k; i++) {
+				node = node.child(prefix.charAt(i), true);
+			}
+			node.terminal = true;
+		}
+		empty = prefixes.length == 0;
+	}
+
+	/**
+	 * 是否没有前缀
+	 *
+	 * @return 没有前缀时返回true
+	 */
+	boolean isEmpty() {
+		return empty;
+	}
+
+	/**
+	 * 来源是否以任意一个前缀开头
+	 *
+	 * @param source
+	 *            消息来源
+	 * @return 匹配时返回true
+	 */
+	boolean matches(String source) {
+		if (empty || source == null) {
+			return false;
+		}
+		Node node = root;
+		for (int i = 0, k = source.length(); i < k; i++) {
+			if (node.terminal) {
+				return true;
+			}
+			node = node.child(source.charAt(i), false);
+			if (node == null) {
+				return false;
+			}
+		}
+		return node.terminal;
+	}
+
+	/**
+	 * 树节点（子节点数量通常很少，使用数组顺序查找）
+	 */
+	private static final class Node {
+
+		private char[] keys = new char[0];
+
+		private Node[] children = new Node[0];
+
+		private boolean terminal;
+
+		Node child(char c, boolean create) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] == c) {
+					return children[i];
+				}
+			}
+			if (!create) {
+				return null;
+			}
+			Node rs = new Node();
+			keys = Arrays.copyOf(keys, keys.length + 1);
+			keys[keys.length - 1] = c;
+			children = Arrays.copyOf(children, children.length + 1);
+			children[children.length - 1] = rs;
+			return rs;
+		}
+	}
+
+}
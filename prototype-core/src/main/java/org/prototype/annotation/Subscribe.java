@@ -59,7 +59,8 @@ public @interface Subscribe {
 	 */
 	String onMessage() default "onMessage";
 	/**
-	 * 是否在异步线程中处理(默认为true)
+	 * 是否在异步线程中处理(默认为true). <br>
+	 * 异步处理时每个订阅者有独立的有界队列，由专用线程池按发布顺序批量处理，参见{@link org.prototype.PrototypeConfig.AsyncSubscribe}
 	 * @return 是否在异步线程中处理
 	 */
 	boolean async() default true;
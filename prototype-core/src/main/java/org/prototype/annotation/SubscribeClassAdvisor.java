@@ -19,11 +19,17 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 
+import org.prototype.PrototypeConfig;
 import org.prototype.core.ChainOrder;
 import org.prototype.core.ClassBuilder;
 import org.prototype.core.ClassFactory;
@@ -32,13 +38,10 @@ import org.prototype.core.MethodBuilder;
 import org.prototype.inject.InjectHelper;
 import org.prototype.reflect.MethodUtils;
 import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
 import lombok.extern.slf4j.Slf4j;
-import rx.Observable;
-import rx.functions.Action1;
-import rx.functions.Func1;
-import rx.schedulers.Schedulers;
 
 /**
  * 消息订阅类的处理. <br>
@@ -51,9 +54,87 @@ import rx.schedulers.Schedulers;
 @Order(ChainOrder.VERY_LOWER)
 public class SubscribeClassAdvisor extends AbstractClassAdvisor {
 
+	private static final Method NONE;// 不能处理的消息内容类型的缓存标记
+
+	static {
+		try {
+			NONE = Object.class.getMethod("toString");
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	@Resource
 	private InjectHelper helper;
 
+	@Resource
+	private PrototypeConfig config;
+
+	private ThreadPoolTaskExecutor executor;// 处理异步订阅的线程池（有异步订阅时创建）
+
+	private Map<String, MessageBus.Subscription> subscriptions = new LinkedHashMap<>();// 订阅类名与订阅
+
+	/**
+	 * 获取全部订阅（可用于监控异步订阅的队列长度及丢弃的消息数）
+	 * 
+	 * @return 订阅类名与订阅的映射
+	 */
+	public synchronized Map<String, MessageBus.Subscription> getSubscriptions() {
+		return new LinkedHashMap<>(subscriptions);
+	}
+
+	/**
+	 * 关闭时取消订阅，并等待异步订阅队列中的消息处理完成（最长等待配置的时间）
+	 */
+	@PreDestroy
+	synchronized void destroy() {
+		for (MessageBus.Subscription subscription : subscriptions.values()) {
+			subscription.unsubscribe();
+		}
+		if (executor == null) {
+			subscriptions.clear();
+			return;
+		}
+		long deadline = System.nanoTime()
+				+ TimeUnit.SECONDS.toNanos(config.getAsyncSubscribe().getShutdownTimeout());
+		for (Map.Entry<String, MessageBus.Subscription> entry : subscriptions.entrySet()) {
+			MessageBus.Subscription subscription = entry.getValue();
+			while (!subscription.isIdle() && System.nanoTime() < deadline) {
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+			}
+			if (!subscription.isIdle()) {
+				log.warn("Subscribe {} not drained in time , {} messages left", entry.getKey(),
+						subscription.getQueueSize());
+			}
+			if (subscription.getDropped() > 0) {
+				log.warn("Subscribe {} dropped {} messages", entry.getKey(), subscription.getDropped());
+			}
+		}
+		subscriptions.clear();
+		executor.shutdown();
+		executor = null;
+	}
+
+	/**
+	 * 获取处理异步订阅的线程池
+	 * 
+	 * @return 线程池
+	 */
+	private ThreadPoolTaskExecutor getExecutor() {
+		if (executor == null) {
+			PrototypeConfig.AsyncSubscribe async = config.getAsyncSubscribe();
+			executor = new ThreadPoolTaskExecutor();
+			executor.setThreadNamePrefix("Prototype subscribe ");
+			executor.setCorePoolSize(async.getThreads());
+			executor.setMaxPoolSize(async.getThreads());
+			executor.setDaemon(true);
+			executor.afterPropertiesSet();
+			log.info("Create subscribe executor , threads : {} , queue capacity : {} , batch size : {} , overflow : {}",
+					async.getThreads(), async.getQueueCapacity(), async.getBatchSize(), async.getOverflow());
+		}
+		return executor;
+	}
+
 	/**
 	 * 对方法进行检查：方法必须只有一个参数，返回值类型必须是void
 	 * 
@@ -86,16 +167,21 @@ public class SubscribeClassAdvisor extends AbstractClassAdvisor {
 	}
 
 	/**
-	 * 消息订阅
+	 * 消息订阅. <br>
+	 * 消息类型由消息总线路由，来源的包含与排除使用前缀树匹配，消息内容类型与处理方法的对应关系在首次收到该类型内容时解析并缓存.
 	 * 
 	 * @author flyxxxxx@163.com
 	 *
 	 */
-	private class MessageSubscribe implements Action1<Message> {
+	private class MessageSubscriber implements MessageBus.Handler {
 
 		private Class<?> clazz;
 		private Subscribe subscribe;
 		private Object target;
+		private SourcePrefixTrie includes;// 包括的
+		private SourcePrefixTrie excludes;// 排除的
+		private List<Class<?>> msgTypes = new ArrayList<>();// 消息内容数据类型匹配的
+		private Map<Class<?>, Method> handlers = new ConcurrentHashMap<>();// 消息内容类型与处理方法
 
 		/**
 		 * 消息订阅构造
@@ -105,9 +191,14 @@ public class SubscribeClassAdvisor extends AbstractClassAdvisor {
 		 * @param subscribe
 		 *            注解
 		 */
-		public MessageSubscribe(Class<?> clazz, Subscribe subscribe) {
+		public MessageSubscriber(Class<?> clazz, Subscribe subscribe) {
 			this.clazz = clazz;
 			this.subscribe = subscribe;
+			includes = new SourcePrefixTrie(subscribe.incloudSource());
+			excludes = new SourcePrefixTrie(subscribe.excloudSource());
+			for (Method method : MethodUtils.findMethods(clazz, subscribe.onMessage())) {
+				msgTypes.add(MethodUtils.getWrapperClass(method.getParameterTypes()[0]));
+			}
 			try {
 				Constructor<?>[] constructors = clazz.getConstructors();
 				if (constructors[0].getParameterCount() == 0) {
@@ -122,9 +213,16 @@ public class SubscribeClassAdvisor extends AbstractClassAdvisor {
 		}
 
 		@Override
-		public void call(Message message) {
+		public void onMessage(Message message) {
+			String source = message.getSource();
+			if (excludes.matches(source) || (!includes.isEmpty() && !includes.matches(source))) {
+				return;
+			}
 			Object content = message.getContent();
-			Method method = MethodUtils.findOverloadMethod(clazz, subscribe.onMessage(), content.getClass());
+			Method method = content == null ? null : getHandler(content.getClass());
+			if (method == null) {// 消息内容数据类型不匹配
+				return;
+			}
 			try {
 				method.invoke(target, helper.getInjectParameters(method, content));
 			} catch (Exception e) {
@@ -136,70 +234,34 @@ public class SubscribeClassAdvisor extends AbstractClassAdvisor {
 			}
 		}
 
-	}
-
-	/**
-	 * 消息过滤
-	 * 
-	 * @author flyxxxxx@163.com
-	 *
-	 */
-	private class MessageFilter implements Func1<Message, Boolean> {
-
-		private List<String> types;// 消息类别
-		private List<String> includes;// 包括的
-		private List<String> excludes;// 排除的
-		private List<Class<?>> msgTypes = new ArrayList<>();// 消息内容数据类型匹配的
-
 		/**
-		 * 消息过滤器构造
+		 * 获取消息内容类型对应的处理方法（缓存）
 		 * 
-		 * @param clazz
-		 *            消息处理类
-		 * @param subscribe
-		 *            注解
+		 * @param contentType
+		 *            消息内容类型
+		 * @return 处理方法，不能处理时返回null
 		 */
-		public MessageFilter(Class<?> clazz, Subscribe subscribe) {
-			types = Arrays.asList(subscribe.type());
-			includes = Arrays.asList(subscribe.incloudSource());
-			excludes = Arrays.asList(subscribe.excloudSource());
-			List<Method> methods = MethodUtils.findMethods(clazz, subscribe.onMessage());
-			for (Method method : methods) {
-				Class<?> type = method.getParameterTypes()[0];
-				msgTypes.add(MethodUtils.getWrapperClass(type));
+		private Method getHandler(Class<?> contentType) {
+			Method rs = handlers.get(contentType);
+			if (rs == null) {
+				rs = NONE;
+				for (Class<?> cls : msgTypes) {
+					if (cls.isAssignableFrom(contentType)) {
+						Method method = MethodUtils.findOverloadMethod(clazz, subscribe.onMessage(), contentType);
+						if (method != null) {
+							rs = method;
+						}
+						break;
+					}
+				}
+				handlers.put(contentType, rs);
 			}
+			return rs == NONE ? null : rs;
 		}
 
 		@Override
-		public Boolean call(Message message) {
-			if (types.indexOf(message.getType()) == -1) {// 类别不匹配
-				return Boolean.FALSE;
-			}
-			String source = message.getSource();
-			for (String exclude : excludes) {// 排除
-				if (source.startsWith(exclude)) {
-					return Boolean.FALSE;
-				}
-			}
-			Boolean rs = Boolean.FALSE;
-			for (Class<?> cls : msgTypes) {// 消息内容数据类型匹配的
-				if (cls.isInstance(message.getContent())) {
-					rs = Boolean.TRUE;
-					break;
-				}
-			}
-			if (Boolean.FALSE.equals(rs)) {
-				return rs;
-			}
-			if (includes.isEmpty()) {
-				return Boolean.TRUE;
-			}
-			for (String include : includes) {// 包含
-				if (source.startsWith(include)) {
-					return Boolean.TRUE;
-				}
-			}
-			return Boolean.FALSE;
+		public String toString() {
+			return clazz.getName();
 		}
 
 	}
@@ -238,11 +300,18 @@ public class SubscribeClassAdvisor extends AbstractClassAdvisor {
 	protected void register(ClassFactory factory, Class<?> clazz) {
 		log.debug("Subscibe for {}", clazz);
 		Subscribe subscribe = clazz.getAnnotation(Subscribe.class);
-		Observable<Message> observable = Message.getSubject().filter(new MessageFilter(clazz, subscribe));
-		if (subscribe.async()) {
-			observable.subscribeOn(Schedulers.io());
+		MessageSubscriber subscriber = new MessageSubscriber(clazz, subscribe);
+		MessageBus.Subscription subscription;
+		synchronized (this) {
+			if (subscribe.async()) {// 独立的有界队列，由线程池按发布顺序批量处理
+				PrototypeConfig.AsyncSubscribe async = config.getAsyncSubscribe();
+				subscription = Message.getBus().subscribe(subscriber, getExecutor(), async.getQueueCapacity(),
+						async.getOverflow(), async.getBatchSize(), subscribe.type());
+			} else {
+				subscription = Message.getBus().subscribe(subscriber, subscribe.type());
+			}
+			subscriptions.put(clazz.getName(), subscription);
 		}
-		observable.subscribe(new MessageSubscribe(clazz, subscribe));
 	}
 
 }
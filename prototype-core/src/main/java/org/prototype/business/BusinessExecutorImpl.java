@@ -2,6 +2,7 @@ package org.prototype.business;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -18,6 +19,7 @@ import java.util.regex.Pattern;
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 
+import org.prototype.PrototypeConfig;
 import org.prototype.PrototypeInitializer;
 import org.prototype.annotation.Message;
 import org.prototype.core.AnnotationsChainComparator;
@@ -49,6 +51,8 @@ import lombok.extern.slf4j.Slf4j;
 @Component
 public class BusinessExecutorImpl implements BusinessExecutor {
 
+	private static final int POOL_SIZE = 4;// 每个线程最多缓存的执行链数量（业务嵌套的深度）
+
 	@Resource
 	private PrototypeInitializer initializer;// 初始化
 
@@ -67,6 +71,18 @@ public class BusinessExecutorImpl implements BusinessExecutor {
 	@Resource
 	private GetResultExecuteFilter getResultExecuteFilter;// 获取结果过滤器
 
+	@Resource
+	private PrototypeConfig config;// 配置
+
+	private boolean pooled;// 是否复用执行链及原型状态
+
+	private ThreadLocal<ArrayDeque<ExecuteChainImpl>> chainPool = new ThreadLocal<ArrayDeque<ExecuteChainImpl>>() {
+		@Override
+		protected ArrayDeque<ExecuteChainImpl> initialValue() {
+			return new ArrayDeque<>(POOL_SIZE);
+		}
+	};// 每个线程回收的执行链
+
 	private Map<Class<?>, Annotation> globalAnnotations = new HashMap<>();// 全局注解（启动类）被Executor注解过的注解类型与注解的映射
 
 	private Map<Class<?>, Service> services = new HashMap<>();// 所有的服务
@@ -79,6 +95,7 @@ public class BusinessExecutorImpl implements BusinessExecutor {
 
 	@PostConstruct
 	void init() {
+		pooled = config.isPooled();
 		initFilters();
 		Class<?> clazz = initializer.getBootClass();// 获取启动类
 		if (clazz != null) {
@@ -95,6 +112,9 @@ public class BusinessExecutorImpl implements BusinessExecutor {
 		for (ApiCreator<?> creator : container.getComponents(ApiCreator.class)) {
 			creators.put(creator.getType(), creator);// API创建接口
 		}
+		for (Service service : services.values()) {// 初始化之前注册的服务
+			service.setPipeline(compile(service.getType()));
+		}
 	}
 
 	/**
@@ -143,14 +163,14 @@ public class BusinessExecutorImpl implements BusinessExecutor {
 	 * @return
 	 */
 	private Object executeInner(boolean async, Class<?> type, Object[] params) {
-		ExecuteChain chain = new ExecuteChainImpl(async, type, params, findFilters(type));
+		ExecuteChainImpl chain = pooled ? acquire(async, type, params) : new ExecuteChainImpl(async, type, params);
 		boolean create = initStatus();
 		try {
 			chain.doChain();
 			Object rs = chain.getResult();
-			return rs == null ? getResult(chain, ExecuteChain.ERROR) : rs;
+			return rs == null ? getResult(chain, chain.resultType < 0 ? chain.resultType : ExecuteChain.ERROR) : rs;
 		} catch (Exception e) {
-			Message.getSubject().onNext(new Message(Message.EXCEPTION, getClass().getName(), e));
+			Message.getBus().publish(new Message(Message.EXCEPTION, getClass().getName(), e));
 			log.warn("Execute " + type + " error", e);
 			return getResult(chain, ExecuteChain.EXCEPTION);
 		} finally {
@@ -158,10 +178,39 @@ public class BusinessExecutorImpl implements BusinessExecutor {
 			if (create) {
 				ps.end();
 			}
-			Message.getSubject().onNext(new Message(Message.EXECUTE, type.getName(), ps));
+			if (Message.getBus().hasSubscribers(Message.EXECUTE)) {
+				ps.retain();// 异步订阅在业务结束后才读取，不能回收复用
+				Message.getBus().publish(new Message(Message.EXECUTE, type.getName(), ps));
+			}
+			if (pooled) {
+				if (create) {
+					ps.recycle();
+				}
+				chain.release();
+			}
 		}
 	}
 
+	/**
+	 * 从当前线程的池中获取执行链
+	 * 
+	 * @param async
+	 *            是否异步
+	 * @param type
+	 *            业务类
+	 * @param params
+	 *            参数
+	 * @return 执行链
+	 */
+	private ExecuteChainImpl acquire(boolean async, Class<?> type, Object[] params) {
+		ExecuteChainImpl rs = chainPool.get().pollFirst();
+		if (rs == null) {
+			return new ExecuteChainImpl(async, type, params);
+		}
+		rs.reset(async, type, params);
+		return rs;
+	}
+
 	private Object getResult(ExecuteChain chain, int resultType) {
 		Service service = chain.getService();
 		Object rs = chain.getResult();
@@ -184,23 +233,40 @@ public class BusinessExecutorImpl implements BusinessExecutor {
 	private boolean initStatus() {
 		PrototypeStatus status = PrototypeStatus.getStatus();
 		if (status == null) {
-			status = new PrototypeStatus();
+			status = pooled ? PrototypeStatus.obtain() : new PrototypeStatus();
 			PrototypeStatus.setStatus(status);
 			return true;
 		}
 		return false;
 	}
 
-	private List<ExecuteFilter<?>> findFilters(Class<?> type) {
+	/**
+	 * 编译业务类的执行管道（排序后的执行过滤器、业务定义及入口方法）
+	 * 
+	 * @param type
+	 *            业务类
+	 * @return 执行管道
+	 */
+	private ExecutePipeline compile(Class<?> type) {
+		BusinessDefine define = type.getAnnotation(BusinessDefine.class);
+		if (define == null) {
+			throw new IllegalArgumentException(
+					"Class " + type.getName() + " is not a service , it's need '@ServiceDefine'");
+		}
 		Annotation[] annotations = AnnotationUtils.getAnnotationByMeta(type.getAnnotations(), Executor.class);
 		List<ExecuteFilter<?>> list = new ArrayList<>(defaultFilters);
 		if (annotations.length > 0 || !globalAnnotations.isEmpty()) {
 			for (Annotation annotation : merge(annotations)) {
-				list.add(filters.get(annotation.annotationType()));
+				ExecuteFilter<?> filter = filters.get(annotation.annotationType());
+				if (filter != null) {
+					list.add(filter);
+				}
 			}
 		}
 		Collections.sort(list, new AnnotationsChainComparator<>(ExecuteFilter.class, annotations));
-		return list;
+		log.debug("Compile execute filters of {} : {}", type, list);
+		return new ExecutePipeline(list.toArray(new ExecuteFilter<?>[list.size()]), define,
+				MethodUtils.findMethod(type, define.execute()));
 	}
 
 	/**
@@ -218,7 +284,7 @@ public class BusinessExecutorImpl implements BusinessExecutor {
 	}
 
 	private class ExecuteChainImpl implements ExecuteChain {
-		private List<ExecuteFilter<?>> filters;
+		private ExecutePipeline pipeline;
 
 		private int index;
 
@@ -241,11 +307,13 @@ public class BusinessExecutorImpl implements BusinessExecutor {
 		@Getter
 		private Service service;
 
-		private BusinessDefine define;
-
 		@Getter
 		private boolean validated = true;
 
+		private boolean retained;// 业务结束后是否仍被引用
+
+		private volatile int resultType;// 最后设置的结果类型（业务对象创建前设置的如拒绝、超时在没有结果时使用）
+
 		public void setTarget(Object target) {
 			this.target = target;
 			PrototypeStatus.getStatus().setTarget(target);
@@ -261,20 +329,72 @@ public class BusinessExecutorImpl implements BusinessExecutor {
 			PrototypeStatus.getStatus().setResult(result);
 		}
 
-		public ExecuteChainImpl(boolean async, Class<?> type, Object[] params, List<ExecuteFilter<?>> filters) {
+		public ExecuteChainImpl(boolean async, Class<?> type, Object[] params) {
+			reset(async, type, params);
+		}
+
+		/**
+		 * 复制：从指定执行链的当前位置继续执行，目标对象及结果为复制前的值
+		 */
+		private ExecuteChainImpl(ExecuteChainImpl source) {
+			this.async = source.async;
+			this.type = source.type;
+			this.params = source.params;
+			this.service = source.service;
+			this.pipeline = source.pipeline;
+			this.max = source.max;
+			this.index = source.index;
+			this.target = source.target;
+			this.result = source.result;
+			this.validated = source.validated;
+			this.resultType = source.resultType;
+			this.retained = true;// 复制的不回收
+		}
+
+		/**
+		 * 重置为新的业务执行
+		 */
+		private void reset(boolean async, Class<?> type, Object[] params) {
 			this.async = async;
 			this.type = type;
 			this.params = params;
-			this.filters = filters;
-			this.max = filters.size();
 			service = services.get(type);
-			define = type.getAnnotation(BusinessDefine.class);
-			if (define == null) {
-				throw new IllegalArgumentException(
-						"Class " + type.getName() + " is not a service , it's need '@ServiceDefine'");
+			pipeline = service == null || service.getPipeline() == null ? compile(type) : service.getPipeline();
+			this.max = pipeline.size();
+			index = 0;
+			target = null;
+			result = null;
+			validated = true;
+			retained = false;
+			resultType = ERROR;
+		}
+
+		/**
+		 * 回收到当前线程的池中（被标记为仍被引用的不回收）
+		 */
+		private void release() {
+			if (retained) {
+				return;
+			}
+			params = null;
+			target = null;
+			result = null;
+			ArrayDeque<ExecuteChainImpl> queue = chainPool.get();
+			if (queue.size() < POOL_SIZE) {
+				queue.offerFirst(this);
 			}
 		}
 
+		@Override
+		public void retain() {
+			retained = true;
+		}
+
+		@Override
+		public ExecuteChain copy() {
+			return new ExecuteChainImpl(this);
+		}
+
 		@Override
 		public void doChain() throws Exception {
 			boolean debug = log.isDebugEnabled();
@@ -286,11 +406,11 @@ public class BusinessExecutorImpl implements BusinessExecutor {
 					doChainInner(status);
 				} finally {
 					if (filterIndex < max) {
-						log.debug("Businiss {} , {} execute filter : {} use time {} nanoseconds", status.getId(), type,
-								filters.get(filterIndex), System.nanoTime() - nano);
+						log.debug("Businiss {} , {} execute filter : {} use time {} nanoseconds", status, type,
+								pipeline.get(filterIndex), System.nanoTime() - nano);
 					} else {
-						log.debug("Businiss {} , {} execute method : {} use time {} nanoseconds", status.getId(), type,
-								define.execute(), System.nanoTime() - nano);
+						log.debug("Businiss {} , {} execute method : {} use time {} nanoseconds", status, type,
+								pipeline.getDefine().execute(), System.nanoTime() - nano);
 					}
 				}
 			} else {
@@ -300,19 +420,25 @@ public class BusinessExecutorImpl implements BusinessExecutor {
 
 		private void doChainInner(PrototypeStatus status) throws Exception {
 			if (index < max) {
-				log.debug("Businiss {} , {} execute filter {}", status.getId(), type, filters.get(index));
-				filters.get(index++).doFilter(this);
+				ExecuteFilter<?> filter = pipeline.get(index++);
+				log.debug("Businiss {} , {} execute filter {}", status, type, filter);
+				filter.doFilter(this);
 			} else {
-				log.debug("Businiss {} , {} execute method : {}", status.getId(), type, define.execute());
-				MethodUtils.findMethod(type, define.execute()).invoke(target);
+				log.debug("Businiss {} , {} execute method : {}", status, type, pipeline.getDefine().execute());
+				pipeline.getExecute().invoke(target);
 			}
 		}
 
 		@Override
 		public void setResultType(int resultType) {
+			this.resultType = resultType;
+			if (target == null) {
+				log.debug("Business {} set result {} before {} created", PrototypeStatus.getStatus(), resultType, type);
+				return;
+			}
 			try {
 				service.getSetResult().invoke(target,resultType);
-				log.debug("Business {} set result {} to {}", PrototypeStatus.getStatus().getId(), resultType, type);
+				log.debug("Business {} set result {} to {}", PrototypeStatus.getStatus(), resultType, type);
 			} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
 				throw new RuntimeException(e);
 			}
@@ -351,6 +477,7 @@ public class BusinessExecutorImpl implements BusinessExecutor {
 	 */
 	@Override
 	public void registerService(Service service) {
+		service.setPipeline(compile(service.getType()));// 重新注册时重新编译
 		services.put(service.getType(), service);
 	}
 
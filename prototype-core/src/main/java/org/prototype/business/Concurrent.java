@@ -6,14 +6,21 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * 业务在线程池中执行，超时后返回结果类型{@link ExecuteChain#TIMEOUT}. <br>
+ * 实现见ConcurrentExecuteFilter
+ * 
+ * @author lj
+ *
+ */
 @Target({ ElementType.TYPE })
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
 @Executor
-@interface Concurrent {
+public @interface Concurrent {
 
 	/**
-	 * 是否中断操作
+	 * 超时时是否中断执行线程
 	 * 
 	 * @return 是否中断操作
 	 */
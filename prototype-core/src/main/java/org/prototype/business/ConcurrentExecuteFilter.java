@@ -1,40 +1,174 @@
 package org.prototype.business;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 
 import org.prototype.core.ComponentContainer;
 import org.prototype.core.ExecutorManager;
+import org.prototype.core.PrototypeStatus;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 并发执行过滤. <br>
+ *
+ * <pre>
+ * 执行链的其余部分（初始化、业务方法及获取结果）以复制的执行链（见{@link ExecuteChain#copy()}）在线程池中执行，
+ * 当前线程最多等待注解指定的超时时间（业务已有更早的截止时间时到截止时间为止）：
+ * 成功时将复制的执行链的目标对象及结果设置到当前执行链；
+ * 超时后取消执行（{@link Concurrent#interrupt()}为true时中断执行线程），结果类型为{@link ExecuteChain#TIMEOUT}，执行线程的结果被丢弃；
+ * 线程池拒绝执行时结果类型为{@link ExecuteChain#REJECT}；执行中的异常在当前线程抛出.
+ * 执行线程使用复制的原型状态（见{@link PrototypeStatus#copyToAsync()}），结束时清除.
+ * 超时时间作为执行线程中原型状态的截止时间（见{@link PrototypeStatus#setDeadline(long, TimeUnit)}），由其中的异步调用、并发方法及SQL继承，不影响当前线程的原型状态.
+ * 线程池为Spring中的Executor，没有时使用内部有界的线程池（线程及队列已满时拒绝）.
+ * 注意：Executor在调用线程中执行任务（如拒绝策略为CallerRunsPolicy或同步的Executor）时超时无效，
+ * 丢弃任务（如DiscardPolicy）时总是等待到超时.
+ * </pre>
+ *
+ * @author lj
+ *
+ */
 @Order(ExecuteFilter.POOL)
 @Component
+@Slf4j
 class ConcurrentExecuteFilter implements ExecuteFilter<Concurrent>,ExecutorManager {
 
+	/**
+	 * 内部线程池的最大线程数
+	 */
+	private static final int MAX_THREADS = Math.max(8, Runtime.getRuntime().availableProcessors() * 4);
+
+	/**
+	 * 内部线程池的等待队列长度
+	 */
+	private static final int QUEUE_SIZE = 1000;
+
 	@Resource
 	private ApplicationContext applicationContext;
-	
+
 	@Resource
 	private ComponentContainer container;
 
+	/**
+	 * 没有Executor时使用的线程池
+	 */
+	private volatile ThreadPoolExecutor defaultExecutor;
+
 	@Override
 	public void doFilter(ExecuteChain chain) throws Exception {
 		Concurrent concurrent=chain.getAnnotation(Concurrent.class);
-		
+		PrototypeStatus status = PrototypeStatus.getStatus();
+		long timeout = Math.min(TimeUnit.MILLISECONDS.toNanos(concurrent.timeout()), status.getRemainingNanos());
+		if (timeout <= 0) {
+			log.warn("Business {} , {} deadline exceeded before execute", status, chain.getType());
+			chain.setResultType(ExecuteChain.TIMEOUT);
+			return;
+		}
+		PrototypeStatus async = status.copyToAsync();
+		async.setDeadline(timeout, TimeUnit.NANOSECONDS);
+		ExecuteChain worker = chain.copy();
+		FutureTask<Void> task = new FutureTask<>(() -> {
+			PrototypeStatus.setStatus(async);
+			try {
+				worker.doChain();
+				return null;
+			} finally {
+				PrototypeStatus.setStatus(null);
+			}
+		});
+		try {
+			findExecutor(chain.getTarget()).execute(task);
+		} catch (RejectedExecutionException e) {
+			log.warn("Business {} rejected by executor : {}", status, e.getMessage());
+			chain.setResultType(ExecuteChain.REJECT);
+			return;
+		}
+		try {
+			task.get(timeout, TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			task.cancel(concurrent.interrupt());
+			log.warn("Business {} , {} timeout after {} ms", status, chain.getType(),
+					TimeUnit.NANOSECONDS.toMillis(timeout));
+			chain.setResultType(ExecuteChain.TIMEOUT);
+			return;
+		} catch (InterruptedException e) {
+			task.cancel(concurrent.interrupt());
+			Thread.currentThread().interrupt();
+			throw e;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw (Error) cause;
+		}
+		if (worker.getTarget() != null) {// 执行完成后才发布到当前线程
+			chain.setTarget(worker.getTarget());
+		}
+		if (worker.getResult() != null) {
+			chain.setResult(worker.getResult());
+		}
+	}
+
+	/**
+	 * 查找执行的线程池
+	 */
+	private Executor findExecutor(Object target) {
+		Executor rs = getExecutor(target);
+		if (rs != null) {
+			return rs;
+		} else if (defaultExecutor == null) {
+			synchronized (this) {
+				if (defaultExecutor == null) {
+					defaultExecutor = createExecutor();
+				}
+			}
+		}
+		return defaultExecutor;
+	}
+
+	/**
+	 * 创建内部线程池：线程空闲60秒后结束，线程及队列已满时抛出RejectedExecutionException
+	 */
+	private ThreadPoolExecutor createExecutor() {
+		AtomicInteger seq = new AtomicInteger();
+		ThreadPoolExecutor rs = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(QUEUE_SIZE), runnable -> {
+					Thread thread = new Thread(runnable, "prototype-concurrent-" + seq.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+		rs.allowCoreThreadTimeOut(true);
+		return rs;
 	}
 
 	@Override
 	public Executor getExecutor(Object object) {
-		// TODO Auto-generated method stub
 		return container.containsBean(Executor.class)?applicationContext.getBean(Executor.class):null;
 	}
 
 	@Override
 	public Executor getAsyncExecutor(Object object) {
-		// TODO Auto-generated method stub
 		return container.containsBean(Executor.class)?applicationContext.getBean(Executor.class):null;
 	}
+
+	@PreDestroy
+	public void destroy() {
+		if (defaultExecutor != null) {
+			defaultExecutor.shutdownNow();
+		}
+	}
 }
@@ -121,4 +121,20 @@ public interface ExecuteChain {
 	 */
 	<T extends Annotation> T getAnnotation(Class<T> annotationType);
 
+	/**
+	 * 标记执行链在本次业务执行结束后仍被引用（如在其它线程中继续执行），使其不被回收复用
+	 */
+	default void retain() {
+		// 不复用的实现不需要处理
+	}
+
+	/**
+	 * 复制执行链（用于在其它线程中执行）. <br>
+	 * 复制的执行链从当前位置继续执行其余的过滤器及业务方法，有独立的目标对象及结果，不影响当前执行链
+	 * @return 复制的执行链
+	 */
+	default ExecuteChain copy() {
+		throw new UnsupportedOperationException("Copy of " + getClass().getName() + " is not supported");
+	}
+
 }
@@ -0,0 +1,74 @@
+package org.prototype.business;
+
+import java.lang.reflect.Method;
+
+/**
+ * 业务执行管道. <br>
+ * 业务类注册时预先计算好的执行过滤器（已排序）、业务定义及入口方法，执行时只需按数组索引依次调用，不再重复读取注解及排序.
+ * 业务类重新注册时会重新生成.
+ *
+ * @author lj
+ *
+ */
+final class ExecutePipeline {
+
+	/**
+	 * 已排序的执行过滤器
+	 */
+	private final ExecuteFilter<?>[] filters;
+
+	/**
+	 * 业务定义
+	 */
+	private final BusinessDefine define;
+
+	/**
+	 * 业务入口方法
+	 */
+	private final Method execute;
+
+	/**
+	 * 构造
+	 *
+	 * @param filters
+	 *            已排序的执行过滤器
+	 * @param define
+	 *            业务定义
+	 * @param execute
+	 *            业务入口方法
+	 */
+	ExecutePipeline(ExecuteFilter<?>[] filters, BusinessDefine define, Method execute) {
+		this.filters = filters;
+		this.define = define;
+		this.execute = execute;
+	}
+
+	/**
+	 * 过滤器数量
+	 *
+	 * @return 过滤器数量
+	 */
+	int size() {
+		return filters.length;
+	}
+
+	/**
+	 * 获取指定位置的过滤器
+	 *
+	 * @param index
+	 *            位置
+	 * @return 过滤器
+	 */
+	ExecuteFilter<?> get(int index) {
+		return filters[index];
+	}
+
+	BusinessDefine getDefine() {
+		return define;
+	}
+
+	Method getExecute() {
+		return execute;
+	}
+
+}
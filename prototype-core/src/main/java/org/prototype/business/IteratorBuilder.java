@@ -14,10 +14,12 @@ import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.BaseStream;
 
 import org.prototype.reflect.ClassUtils;
 import org.prototype.reflect.Property;
@@ -61,6 +63,22 @@ public abstract class IteratorBuilder {
 		return null;
 	}
 
+	/**
+	 * 获取流式输出的成员变量（数组、Iterable、Iterator或Stream）的元素类型
+	 * @param field 成员变量
+	 * @return 元素类型，不是上述类型或没有Class的范型值时返回null
+	 */
+	public static Class<?> getElementType(Field field) {
+		Class<?> type = field.getType();
+		if (type.isArray()) {
+			return type.getComponentType();
+		} else if (Iterable.class.isAssignableFrom(type) || Iterator.class.isAssignableFrom(type)
+				|| BaseStream.class.isAssignableFrom(type)) {
+			return field.getGenericType() instanceof ParameterizedType ? getGeneric(field, 0) : null;
+		}
+		return null;
+	}
+
 	public static List<Property> getProperties(Class<?> clazz,boolean isInput) {
 		return isInput?getParameterProperties(clazz):getResultProperties(clazz);
 	}
@@ -42,6 +42,13 @@ public @interface Output {
 	 * @return 是否必须
 	 */
 	boolean required() default true;
+
+	/**
+	 * 是否流式输出（只用于数组、Iterable、Iterator及Stream类型的成员变量）. <br>
+	 * 结果类的对应属性为Iterable，序列化为JSON时逐个元素转换后直接写出，不创建转换后的数组或集合
+	 * @return 是否流式输出
+	 */
+	boolean stream() default false;
 	/**
 	 * 属性列表
 	 * @return 属性列表
@@ -0,0 +1,896 @@
+package org.prototype.business;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.prototype.reflect.ClassUtils;
+import org.prototype.reflect.MethodUtils;
+import org.prototype.reflect.Property;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 业务类的输入参数绑定器. <br>
+ *
+ * <pre>
+ * 每个业务类一个绑定器（首次使用或服务注册时创建），为每个输入属性预先编译转换器：
+ * 按数据类型选定的转换方式、Prop注解的验证规则（正则表达式、错误关键字等）、日期/数值格式化类及pattern指定的方法，
+ * 绑定参数时直接调用转换器，不再按数据类型反射build方法，也不再在每次请求时查找注解、创建格式化类。
+ * 日期格式只包含年(yyyy)、月、日、时、分、秒、毫秒(SSS)时使用不可变的DateTimeFormatter，严格解析失败或其它格式使用线程内的SimpleDateFormat，结果与SimpleDateFormat一致.
+ * 绑定器以{@link ClassValue}与业务类关联，强引用了业务类的属性及方法，会使业务类的类加载器不能被卸载（见{@link org.prototype.reflect.ClassUtils}的类元数据），
+ * 业务类与框架在同一类加载器中的一般场景不受影响.
+ * </pre>
+ *
+ * @author lj
+ *
+ */
+@Slf4j
+final class ParamBinder {
+
+	private static final ClassValue<ParamBinder> BINDERS = new ClassValue<ParamBinder>() {
+		@Override
+		protected ParamBinder computeValue(Class<?> type) {
+			return new ParamBinder(type);
+		}
+	};
+
+	private static final MethodType CONVERT_TYPE = MethodType.methodType(Object.class, Object.class, Object.class);
+
+	private static final Class<?>[] NUMBER_TYPES = { int.class, Integer.class, byte.class, Byte.class, short.class,
+			Short.class, long.class, Long.class, float.class, Float.class, double.class, Double.class };
+
+	/**
+	 * 业务类
+	 */
+	private final Class<?> type;
+
+	/**
+	 * 业务类的属性
+	 */
+	private final Map<String, Property> properties;
+
+	/**
+	 * 属性名与属性绑定的映射
+	 */
+	private final Map<String, FieldBinder> binders = new ConcurrentHashMap<>();
+
+	/**
+	 * 最近使用的参数类对应的属性及绑定
+	 */
+	private volatile ParamSources sources;
+
+	private ParamBinder(Class<?> type) {
+		this.type = type;
+		this.properties = ClassUtils.properties(type);
+		for (Property property : IteratorBuilder.getProperties(type, true)) {
+			binders.put(property.getName(), compile(property));
+		}
+	}
+
+	/**
+	 * 获取业务类的参数绑定器
+	 *
+	 * @param type
+	 *            业务类
+	 * @return 参数绑定器
+	 */
+	static ParamBinder of(Class<?> type) {
+		return BINDERS.get(type);
+	}
+
+	/**
+	 * 预先编译参数类的绑定（服务注册时调用）
+	 *
+	 * @param paramType
+	 *            参数类
+	 */
+	void prepare(Class<?> paramType) {
+		getSources(paramType);
+	}
+
+	/**
+	 * 绑定参数类实例或按参数类属性名顺序排列的参数
+	 *
+	 * @param chain
+	 *            执行链
+	 * @param target
+	 *            业务对象
+	 * @param paramType
+	 *            参数类
+	 * @param parameter
+	 *            参数
+	 * @throws Exception
+	 *             异常
+	 */
+	void bind(ExecuteChain chain, Object target, Class<?> paramType, Object[] parameter) throws Exception {
+		ParamSources rs = getSources(paramType);
+		Property[] props = rs.properties;
+		FieldBinder[] fields = rs.binders;
+		if (parameter.length == 1 && paramType.isInstance(parameter[0])) {
+			Object param = parameter[0];
+			for (int i = 0; i < props.length; i++) {
+				Object value = props[i].getValue(param);
+				if (value != null) {
+					fields[i].bind(chain, target, value);
+				}
+			}
+		} else {
+			for (int i = 0; i < props.length; i++) {
+				if (parameter[i] != null) {
+					fields[i].bind(chain, target, parameter[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 绑定一个属性的值
+	 *
+	 * @param chain
+	 *            执行链
+	 * @param target
+	 *            业务对象
+	 * @param name
+	 *            属性名
+	 * @param value
+	 *            输入值
+	 * @throws Exception
+	 *             异常
+	 */
+	void bind(ExecuteChain chain, Object target, String name, Object value) throws Exception {
+		getBinder(name).bind(chain, target, value);
+	}
+
+	private FieldBinder getBinder(String name) {
+		FieldBinder rs = binders.get(name);
+		if (rs == null) {
+			Property property = properties.get(name);
+			if (property == null) {
+				throw new NullPointerException("Property '" + name + "' not found in " + type.getName());
+			}
+			rs = compile(property);
+			binders.put(name, rs);
+		}
+		return rs;
+	}
+
+	private ParamSources getSources(Class<?> paramType) {
+		ParamSources rs = sources;
+		if (rs == null || rs.paramType != paramType) {
+			Map<String, Property> props = new TreeMap<>(ClassUtils.properties(paramType));// 按参数名排序，与参数顺序一致
+			Property[] array = props.values().toArray(new Property[props.size()]);
+			FieldBinder[] fields = new FieldBinder[array.length];
+			for (int i = 0; i < array.length; i++) {
+				fields[i] = getBinder(array[i].getName());
+			}
+			rs = new ParamSources(paramType, array, fields);
+			sources = rs;
+		}
+		return rs;
+	}
+
+	/**
+	 * 编译业务类的一个输入属性
+	 */
+	private FieldBinder compile(Property property) {
+		Field field = property.getField();
+		Map<Class<?>, Annotation> inputOutputs = new HashMap<>(2);
+		InputOutput io = field == null ? null : field.getAnnotation(InputOutput.class);
+		if (io != null) {
+			for (Input input : io.input()) {
+				inputOutputs.put(input.type(), input);
+			}
+		}
+		Converter converter = field == null ? fail(new NullPointerException("Field of " + property.getName()))
+				: compile(field.getType(), property, field.getAnnotation(Input.class), inputOutputs);
+		return new FieldBinder(property, converter);
+	}
+
+	/**
+	 * 按数据类型编译转换器（与IteratorBuilder的build方法对应），编译失败时返回在转换时抛出异常的转换器
+	 */
+	private Converter compile(Class<?> dataType, Property property, Annotation annotation,
+			Map<Class<?>, Annotation> inputOutputs) {
+		try {
+			switch (ClassUtils.getDataType(dataType)) {
+			case ClassUtils.PRIMITIVE:
+			case ClassUtils.NUMBER:
+				return new NumberConverter(dataType, property, getProp(annotation));
+			case ClassUtils.BOOLEAN:
+				return new SimpleConverter(new Rule(dataType, property, getProp(annotation)), 0);
+			case ClassUtils.BYTES:
+				return new SimpleConverter(new Rule(dataType, property, getProp(annotation)), 1);
+			case ClassUtils.CHARACTER:
+				return new SimpleConverter(new Rule(dataType, property, getProp(annotation)), 2);
+			case ClassUtils.DATE:
+				return new DateConverter(dataType, property, getProp(annotation));
+			case ClassUtils.ENUM:
+				return new EnumConverter(dataType, property, getProp(annotation));
+			case ClassUtils.STRING:
+				return new StringConverter(dataType, property, getProp(annotation));
+			case ClassUtils.ARRAY:
+				return new ArrayConverter(dataType.getComponentType(),
+						compile(dataType.getComponentType(), property, annotation, inputOutputs));
+			case ClassUtils.LIST:
+			case ClassUtils.SET:
+				return new CollectionConverter(dataType, property, annotation, inputOutputs);
+			case ClassUtils.MAP:
+				return new MapConverter(dataType, property, annotation, inputOutputs);
+			default:
+				return new PojoConverter(dataType, annotation, inputOutputs);
+			}
+		} catch (Exception | LinkageError e) {
+			log.debug("Compile input " + property.getName() + " of " + type.getName() + " failed", e);
+			return fail(e);
+		}
+	}
+
+	private static Converter fail(Throwable e) {
+		return (chain, target, owner, value) -> {
+			if (e instanceof Exception) {
+				throw (Exception) e;
+			}
+			throw (Error) e;
+		};
+	}
+
+	/**
+	 * 输入注解或属性注解对应的属性注解
+	 */
+	private static Prop getProp(Annotation annotation) {
+		if (annotation == null) {
+			throw new NullPointerException("Input annotation is required");
+		}
+		return Input.class.equals(annotation.annotationType()) ? ((Input) annotation).value()[0] : (Prop) annotation;
+	}
+
+	/**
+	 * pattern指定的转换方法（业务类的方法，参数为String）
+	 */
+	private MethodHandle findConverter(Prop prop) throws IllegalAccessException {
+		String name = prop.pattern().substring(ServiceClassAdvisor.METHOD_PREFIX.length());
+		Method method = MethodUtils.findMethod(type, name, String.class);
+		if (method == null) {
+			throw new NullPointerException("Method '" + name + "' not found in " + type.getName());
+		}
+		return MethodHandles.lookup().unreflect(method).asType(CONVERT_TYPE);
+	}
+
+	private static Object invoke(MethodHandle handle, Object target, Object value) throws InvocationTargetException {
+		try {
+			return (Object) handle.invokeExact(target, value);
+		} catch (Throwable e) {
+			throw new InvocationTargetException(e);
+		}
+	}
+
+	/**
+	 * 参数类的属性（按名称排序）及对应的绑定
+	 */
+	private static final class ParamSources {
+
+		final Class<?> paramType;
+
+		final Property[] properties;
+
+		final FieldBinder[] binders;
+
+		ParamSources(Class<?> paramType, Property[] properties, FieldBinder[] binders) {
+			this.paramType = paramType;
+			this.properties = properties;
+			this.binders = binders;
+		}
+	}
+
+	/**
+	 * 业务类一个输入属性的绑定
+	 */
+	private static final class FieldBinder {
+
+		private final Property property;
+
+		private final Converter converter;
+
+		FieldBinder(Property property, Converter converter) {
+			this.property = property;
+			this.converter = converter;
+		}
+
+		void bind(ExecuteChain chain, Object target, Object value) throws Exception {
+			Object rs = converter.convert(chain, target, target, value);
+			if (rs != null) {
+				property.setValue(target, rs);
+			}
+		}
+	}
+
+	/**
+	 * 输入值转换
+	 */
+	@FunctionalInterface
+	private interface Converter {
+
+		/**
+		 * 转换
+		 *
+		 * @param chain
+		 *            执行链（记录验证错误）
+		 * @param target
+		 *            业务对象
+		 * @param owner
+		 *            属性所在的对象（业务对象或POJO）
+		 * @param value
+		 *            输入值
+		 * @return 属性值，为null时不设置属性
+		 * @throws Exception
+		 *             异常
+		 */
+		Object convert(ExecuteChain chain, Object target, Object owner, Object value) throws Exception;
+	}
+
+	/**
+	 * Prop注解的验证规则（创建时计算好错误关键字及正则表达式）
+	 */
+	private static final class Rule {
+
+		private final boolean required;
+
+		private final boolean number;// 是否检查数值范围
+
+		private final int min;
+
+		private final int max;
+
+		private final int minLength;
+
+		private final int maxLength;
+
+		private final Pattern regex;
+
+		private final String requiredError;
+
+		private final String minError;
+
+		private final String maxError;
+
+		private final String numberError;
+
+		private final String minLengthError;
+
+		private final String maxLengthError;
+
+		private final String patternError;
+
+		Rule(Class<?> targetType, Property property, Prop prop) {
+			String fieldName = property.getName();
+			String pattern = prop.pattern();
+			boolean method = pattern.startsWith(ServiceClassAdvisor.METHOD_PREFIX);
+			required = prop.required();
+			number = !method && (Number.class.isAssignableFrom(targetType) || targetType.isPrimitive())
+					&& !char.class.equals(targetType);
+			min = prop.min();
+			max = prop.max();
+			minLength = prop.minLength();
+			maxLength = prop.maxLength();
+			regex = pattern.length() > 0 && !method && !targetType.isPrimitive()
+					&& !Number.class.isAssignableFrom(targetType) && !Date.class.isAssignableFrom(targetType)
+							? Pattern.compile(pattern) : null;
+			requiredError = fieldName + ".required";
+			minError = fieldName + ".min";
+			maxError = fieldName + ".max";
+			numberError = fieldName + ".number";
+			minLengthError = fieldName + ".minLength";
+			maxLengthError = fieldName + ".maxLength";
+			patternError = fieldName + ".pattern";
+		}
+
+		boolean validate(ExecuteChain chain, Object value) {
+			if (value == null) {
+				if (required) {
+					chain.addValidateError(requiredError);
+					return false;
+				}
+				return true;
+			} else if (!String.class.isInstance(value)) {
+				return true;
+			}
+			String str = (String) value;
+			if (str.length() == 0) {
+				if (required) {
+					chain.addValidateError(requiredError);
+					return false;
+				}
+				return true;
+			}
+			if (number) {
+				try {
+					int v = new BigDecimal(str).intValue();
+					if (v < min) {
+						chain.addValidateError(minError);
+						return false;
+					} else if (v > max) {
+						chain.addValidateError(maxError);
+						return false;
+					}
+				} catch (NumberFormatException e) {
+					chain.addValidateError(numberError);
+					return false;
+				}
+			}
+			if (maxLength > 0 && str.length() > maxLength) {
+				chain.addValidateError(maxLengthError);
+				return false;
+			} else if (minLength > 0 && str.length() < minLength) {
+				chain.addValidateError(minLengthError);
+				return false;
+			} else if (regex != null && !regex.matcher(str).matches()) {
+				chain.addValidateError(patternError);
+				return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * 布尔、字节数组、字符的转换
+	 */
+	private static final class SimpleConverter implements Converter {
+
+		private final Rule rule;
+
+		private final int kind;// 0：布尔，1：字节数组，2：字符
+
+		SimpleConverter(Rule rule, int kind) {
+			this.rule = rule;
+			this.kind = kind;
+		}
+
+		@Override
+		public Object convert(ExecuteChain chain, Object target, Object owner, Object value) {
+			if (!rule.validate(chain, value)) {
+				return null;
+			}
+			switch (kind) {
+			case 1:
+				return ((String) value).getBytes();
+			case 2:
+				return ((String) value).charAt(0);
+			default:
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * 基本数值类型及Number的转换
+	 */
+	private final class NumberConverter implements Converter {
+
+		private final Rule rule;
+
+		private final int index;// 基本数值类型的序号，其它数值类型为-1
+
+		private final Constructor<?> constructor;// 其它数值类型的构造方法
+
+		private final MethodHandle method;// pattern指定的转换方法
+
+		private final ThreadLocal<DecimalFormat> formats;
+
+		NumberConverter(Class<?> dataType, Property property, Prop prop) throws Exception {
+			rule = new Rule(dataType, property, prop);
+			index = Arrays.asList(NUMBER_TYPES).indexOf(dataType);
+			constructor = index == -1 ? dataType.getConstructor(String.class) : null;
+			if (prop.pattern().startsWith(ServiceClassAdvisor.METHOD_PREFIX)) {
+				method = findConverter(prop);
+				formats = null;
+			} else {
+				DecimalFormat format = new DecimalFormat(prop.pattern());
+				method = null;
+				formats = ThreadLocal.withInitial(() -> (DecimalFormat) format.clone());
+			}
+		}
+
+		@Override
+		public Object convert(ExecuteChain chain, Object target, Object owner, Object value) throws Exception {
+			if (!rule.validate(chain, value)) {
+				return null;
+			}
+			if (value instanceof Number) {
+				return value;
+			}
+			if (method != null) {
+				return invoke(method, target, value);
+			}
+			Number number = formats.get().parse((String) value);
+			switch (index) {
+			case 0:
+			case 1:
+				return number.intValue();
+			case 2:
+			case 3:
+				return number.byteValue();
+			case 4:
+			case 5:
+				return number.shortValue();
+			case 6:
+			case 7:
+				return number.longValue();
+			case 8:
+			case 9:
+				return number.floatValue();
+			case 10:
+			case 11:
+				return number.doubleValue();
+			default:
+				return constructor.newInstance(number.toString());
+			}
+		}
+	}
+
+	/**
+	 * 日期的转换
+	 */
+	private static final class DateConverter implements Converter {
+
+		private final Rule rule;
+
+		private final Class<?> type;
+
+		private final Constructor<?> constructor;// 参数为long的构造方法
+
+		private final DateTimeFormatter formatter;
+
+		private final ThreadLocal<SimpleDateFormat> formats;
+
+		DateConverter(Class<?> dataType, Property property, Prop prop) throws Exception {
+			rule = new Rule(dataType, property, prop);
+			type = dataType;
+			constructor = dataType.getConstructor(long.class);
+			String pattern = prop.pattern();
+			if (pattern.length() == 0) {
+				formatter = null;
+				formats = null;
+				return;
+			}
+			SimpleDateFormat format = new SimpleDateFormat(pattern);
+			formats = ThreadLocal.withInitial(() -> (SimpleDateFormat) format.clone());
+			formatter = isStrict(pattern)
+					? DateTimeFormatter.ofPattern(pattern.replace('y', 'u')).withResolverStyle(ResolverStyle.STRICT)
+					: null;
+		}
+
+		/**
+		 * 格式是否只包含含义与SimpleDateFormat相同的字段：yyyy、M/MM、d/dd、H/HH、m/mm、s/ss、SSS及非字母的分隔符
+		 */
+		private static boolean isStrict(String pattern) {
+			for (int i = 0, k = pattern.length(); i < k;) {
+				char c = pattern.charAt(i);
+				int j = i + 1;
+				while (j < k && pattern.charAt(j) == c) {
+					j++;
+				}
+				int count = j - i;
+				switch (c) {
+				case 'y':
+					if (count != 4) {
+						return false;
+					}
+					break;
+				case 'S':
+					if (count != 3) {
+						return false;
+					}
+					break;
+				case 'M':
+				case 'd':
+				case 'H':
+				case 'm':
+				case 's':
+					if (count > 2) {
+						return false;
+					}
+					break;
+				default:
+					if (c == '\'' || Character.isLetter(c)) {
+						return false;
+					}
+				}
+				i = j;
+			}
+			return true;
+		}
+
+		@Override
+		public Object convert(ExecuteChain chain, Object target, Object owner, Object value) throws Exception {
+			if (!rule.validate(chain, value)) {
+				return null;
+			}
+			if (formats != null) {
+				return parse((String) value);
+			} else if (type.isInstance(value)) {
+				return value;
+			}
+			return constructor.newInstance(((Date) value).getTime());
+		}
+
+		private Date parse(String value) throws Exception {
+			if (formatter != null) {
+				try {
+					TemporalAccessor accessor = formatter.parse(value);
+					LocalDate date = accessor.query(TemporalQueries.localDate());
+					if (date != null) {
+						LocalTime time = accessor.query(TemporalQueries.localTime());
+						return Date.from((time == null ? date.atStartOfDay() : date.atTime(time))
+								.atZone(ZoneId.systemDefault()).toInstant());
+					}
+				} catch (DateTimeException e) {
+					// 严格解析失败时由SimpleDateFormat宽松解析
+				}
+			}
+			return formats.get().parse(value);
+		}
+	}
+
+	/**
+	 * 枚举的转换
+	 */
+	private static final class EnumConverter implements Converter {
+
+		private final Rule rule;
+
+		@SuppressWarnings("rawtypes")
+		private final Class<? extends Enum> type;
+
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		EnumConverter(Class<?> dataType, Property property, Prop prop) {
+			rule = new Rule(dataType, property, prop);
+			type = (Class<? extends Enum>) dataType;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Object convert(ExecuteChain chain, Object target, Object owner, Object value) {
+			if (rule.validate(chain, value)) {
+				return Enum.valueOf(type, (String) value);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * 字符串的转换
+	 */
+	private final class StringConverter implements Converter {
+
+		private final Rule rule;
+
+		private final MethodHandle method;// pattern指定的转换方法
+
+		StringConverter(Class<?> dataType, Property property, Prop prop) throws Exception {
+			rule = new Rule(dataType, property, prop);
+			method = prop.pattern().length() > 0 ? findConverter(prop) : null;
+		}
+
+		@Override
+		public Object convert(ExecuteChain chain, Object target, Object owner, Object value) throws Exception {
+			if (!rule.validate(chain, value)) {
+				return null;
+			}
+			return method == null ? value : invoke(method, target, value);
+		}
+	}
+
+	/**
+	 * 数组的转换
+	 */
+	private static final class ArrayConverter implements Converter {
+
+		private final Class<?> componentType;
+
+		private final Converter component;
+
+		ArrayConverter(Class<?> componentType, Converter component) {
+			this.componentType = componentType;
+			this.component = component;
+		}
+
+		@Override
+		public Object convert(ExecuteChain chain, Object target, Object owner, Object value) throws Exception {
+			int length = Array.getLength(value);
+			Object array = Array.newInstance(componentType, length);
+			for (int i = 0; i < length; i++) {
+				Array.set(array, i, component.convert(chain, target, owner, Array.get(value, i)));
+			}
+			return array;
+		}
+	}
+
+	/**
+	 * 集合的转换（属性已有集合时加入已有集合）
+	 */
+	private final class CollectionConverter implements Converter {
+
+		private final Class<?> type;
+
+		private final Property property;
+
+		private final ArrayConverter elements;
+
+		CollectionConverter(Class<?> dataType, Property property, Annotation annotation,
+				Map<Class<?>, Annotation> inputOutputs) {
+			Class<?> generic = IteratorBuilder.getGeneric(property.getField(), 0);
+			this.type = dataType;
+			this.property = property;
+			this.elements = new ArrayConverter(generic, compile(generic, property, annotation, inputOutputs));
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		@Override
+		public Object convert(ExecuteChain chain, Object target, Object owner, Object value) throws Exception {
+			Object[] array = (Object[]) elements.convert(chain, target, owner, ((Collection) value).toArray());
+			Collection collection = (Collection) property.getValue(owner);
+			if (collection == null) {
+				return IteratorBuilder.initCollection(type, array);
+			}
+			collection.addAll(Arrays.asList(array));
+			return null;
+		}
+	}
+
+	/**
+	 * 映射的转换（属性已有映射时加入已有映射）
+	 */
+	private final class MapConverter implements Converter {
+
+		private final Class<?> type;
+
+		private final Property property;
+
+		private final Converter values;
+
+		MapConverter(Class<?> dataType, Property property, Annotation annotation,
+				Map<Class<?>, Annotation> inputOutputs) {
+			Class<?> generic = IteratorBuilder.getGeneric(property.getField(), 1);
+			this.type = dataType;
+			this.property = property;
+			this.values = compile(generic, property, annotation, inputOutputs);
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		@Override
+		public Object convert(ExecuteChain chain, Object target, Object owner, Object value) throws Exception {
+			Map<String, Object> map = new HashMap<>((Map<String, Object>) value);
+			for (Map.Entry<String, Object> entry : map.entrySet()) {
+				entry.setValue(values.convert(chain, target, owner, entry.getValue()));
+			}
+			Map existing = (Map) property.getValue(owner);
+			if (existing == null) {
+				return IteratorBuilder.initMap(type, map);
+			}
+			existing.putAll(map);
+			return null;
+		}
+	}
+
+	/**
+	 * POJO的转换. <br>
+	 * 输入注解为Prop且没有对应类型的输入时，输入值为ID；否则按输入注解的属性逐个转换（属性的转换在首次使用时编译，避免类型循环引用）.
+	 */
+	private final class PojoConverter implements Converter {
+
+		private final Constructor<?> constructor;
+
+		private final Property idProperty;// 输入值为ID时的ID属性
+
+		private final Prop[] props;
+
+		private final Property[] targets;// 与props对应的POJO属性
+
+		private final Map<Class<?>, Annotation> inputOutputs;
+
+		private volatile Converter[] converters;
+
+		private volatile Object[] sources;// 最近使用的输入值类型及其属性：{Class, Property[]}
+
+		PojoConverter(Class<?> dataType, Annotation annotation, Map<Class<?>, Annotation> inputOutputs)
+				throws Exception {
+			Annotation anno = annotation == null ? inputOutputs.get(dataType) : annotation;
+			if (anno == null) {
+				throw new NullPointerException("Input of " + dataType.getName() + " not found");
+			}
+			this.constructor = dataType.getConstructor();
+			this.inputOutputs = inputOutputs;
+			if (Prop.class.equals(anno.annotationType())) {
+				Annotation input = inputOutputs.get(dataType);
+				if (input == null) {
+					idProperty = ClassUtils.findIdProperty(dataType);
+					props = null;
+					targets = null;
+					return;
+				}
+				anno = input;
+			}
+			idProperty = null;
+			props = ((Input) anno).value();
+			Map<String, Property> properties = ClassUtils.properties(dataType);
+			targets = new Property[props.length];
+			for (int i = 0; i < props.length; i++) {
+				targets[i] = properties.get(props[i].name());
+			}
+		}
+
+		@Override
+		public Object convert(ExecuteChain chain, Object target, Object owner, Object value) throws Exception {
+			Object rs = constructor.newInstance();
+			if (props == null) {
+				idProperty.setValue(rs, value);
+				return rs;
+			}
+			Converter[] children = getConverters();
+			Property[] values = getSources(value.getClass());
+			for (int i = 0; i < props.length; i++) {
+				Object v = values[i].getValue(value);
+				targets[i].setValue(rs, children[i].convert(chain, target, rs, v));
+			}
+			return rs;
+		}
+
+		private Converter[] getConverters() {
+			Converter[] rs = converters;
+			if (rs == null) {
+				rs = new Converter[props.length];
+				for (int i = 0; i < props.length; i++) {
+					Property p = targets[i];
+					rs[i] = p == null ? fail(new NullPointerException("Property " + props[i].name()))
+							: compile(p.getField().getType(), p, props[i], inputOutputs);
+				}
+				converters = rs;
+			}
+			return rs;
+		}
+
+		private Property[] getSources(Class<?> valueType) {
+			Object[] cache = sources;
+			if (cache != null && cache[0] == valueType) {
+				return (Property[]) cache[1];
+			}
+			Map<String, Property> properties = ClassUtils.properties(valueType);
+			Property[] rs = new Property[props.length];
+			for (int i = 0; i < props.length; i++) {
+				rs[i] = properties.get(props[i].name());
+				if (rs[i] == null) {
+					throw new NullPointerException("Property " + props[i].name() + " not found in " + valueType);
+				}
+			}
+			sources = new Object[] { valueType, rs };
+			return rs;
+		}
+	}
+
+}
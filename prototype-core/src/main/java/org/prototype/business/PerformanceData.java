@@ -27,4 +27,9 @@ public class PerformanceData {
 	 */
 	private long useTime;
 
+	/**
+	 * 用时(纳秒)
+	 */
+	private long useNanos;
+
 }
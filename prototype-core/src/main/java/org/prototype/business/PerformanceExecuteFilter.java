@@ -1,5 +1,7 @@
 package org.prototype.business;
 
+import java.util.concurrent.TimeUnit;
+
 import org.prototype.annotation.Message;
 import org.prototype.core.PrototypeStatus;
 import org.springframework.core.annotation.Order;
@@ -22,7 +24,8 @@ public class PerformanceExecuteFilter implements ExecuteFilter<Performance> {
 		} finally {
 			Performance performance = chain.getAnnotation(Performance.class);
 			PrototypeStatus status = PrototypeStatus.getStatus();
-			long useTime = System.currentTimeMillis() - status.getStartTime();
+			long useNanos = status.getElapsedNanos();
+			long useTime = TimeUnit.NANOSECONDS.toMillis(useNanos);
 			if (useTime < performance.value()) {
 				return;
 			}
@@ -30,8 +33,9 @@ public class PerformanceExecuteFilter implements ExecuteFilter<Performance> {
 			data.setBusinessType(chain.getType());
 			data.setParameters(chain.getParams());
 			data.setUseTime(useTime);
-			Message.getSubject()
-					.onNext(new Message(PerformanceData.TYPE, PerformanceExecuteFilter.class.getName(), data));
+			data.setUseNanos(useNanos);
+			Message.getBus()
+					.publish(new Message(PerformanceData.TYPE, PerformanceExecuteFilter.class.getName(), data));
 		}
 	}
 
@@ -0,0 +1,595 @@
+package org.prototype.business;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.prototype.reflect.ClassUtils;
+import org.prototype.reflect.MethodUtils;
+import org.prototype.reflect.Property;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 业务类的结果映射器. <br>
+ *
+ * <pre>
+ * 每个业务类一个映射器（首次使用或服务注册时创建），为结果类的每个属性预先编译转换器：
+ * 按数据类型选定的转换方式、Output注解的属性及格式、日期/数值格式化类及pattern指定的方法，
+ * 输出结果时由业务对象直接转换一次到结果对象，不再按数据类型反射build方法，也不再在每次请求时查找注解、创建格式化类。
+ * POJO按声明的类型编译，属性的转换中有Output注解的POJO转换时，每次输出该属性以equals记录已转换的POJO（与原ResultSetter相同），
+ * 再次遇到相等的对象时输出其ID（循环引用及重复的对象）；没有POJO转换的属性不记录.
+ * 流式输出的属性（Output注解的stream为true）输出为{@link StreamOutput}，在序列化或迭代时才逐个转换元素.
+ * 注意：映射器以ClassValue缓存（与{@link org.prototype.reflect.ClassMetadata}相同），其中的Property及MethodHandle强引用业务类，
+ * 业务类的类加载器在进程内不会被回收（JDK-8136353），不适用于热部署的类加载器.
+ * </pre>
+ *
+ * @author lj
+ *
+ */
+@Slf4j
+final class ResultMapper {
+
+	private static final ClassValue<ResultMapper> MAPPERS = new ClassValue<ResultMapper>() {
+		@Override
+		protected ResultMapper computeValue(Class<?> type) {
+			return new ResultMapper(type);
+		}
+	};
+
+	private static final MethodType CONVERT_TYPE = MethodType.methodType(Object.class, Object.class, Object.class);
+
+	private static final Converter SAME = (value, visited) -> value;
+
+	/**
+	 * 业务类
+	 */
+	private final Class<?> type;
+
+	/**
+	 * 业务类的属性
+	 */
+	private final Map<String, Property> properties;
+
+	/**
+	 * 最近使用的结果类对应的属性映射
+	 */
+	private volatile ResultTargets targets;
+
+	private ResultMapper(Class<?> type) {
+		this.type = type;
+		this.properties = ClassUtils.properties(type);
+	}
+
+	/**
+	 * 获取业务类的结果映射器
+	 *
+	 * @param type
+	 *            业务类
+	 * @return 结果映射器
+	 */
+	static ResultMapper of(Class<?> type) {
+		return MAPPERS.get(type);
+	}
+
+	/**
+	 * 预先编译结果类的映射（服务注册时调用）
+	 *
+	 * @param resultType
+	 *            结果类
+	 */
+	void prepare(Class<?> resultType) {
+		getTargets(resultType);
+	}
+
+	/**
+	 * 创建结果对象并输出业务对象的结果
+	 *
+	 * @param source
+	 *            业务对象
+	 * @param resultType
+	 *            结果类
+	 * @return 结果对象
+	 * @throws Exception
+	 *             异常
+	 */
+	<T> T map(Object source, Class<T> resultType) throws Exception {
+		T rs = resultType.newInstance();
+		copy(source, rs);
+		return rs;
+	}
+
+	/**
+	 * 输出业务对象的结果到结果对象
+	 *
+	 * @param source
+	 *            业务对象
+	 * @param result
+	 *            结果对象
+	 * @throws Exception
+	 *             异常
+	 */
+	void copy(Object source, Object result) throws Exception {
+		for (FieldMapper mapper : getTargets(result.getClass()).mappers) {
+			mapper.map(source, result);
+		}
+	}
+
+	private ResultTargets getTargets(Class<?> resultType) {
+		ResultTargets rs = targets;
+		if (rs == null || rs.resultType != resultType) {
+			Collection<Property> props = ClassUtils.properties(resultType).values();
+			List<FieldMapper> list = new ArrayList<>(props.size());
+			for (Property property : props) {
+				list.add(compile(property));
+			}
+			rs = new ResultTargets(resultType, list.toArray(new FieldMapper[list.size()]));
+			targets = rs;
+		}
+		return rs;
+	}
+
+	/**
+	 * 编译结果类的一个属性
+	 */
+	private FieldMapper compile(Property target) {
+		Property source = properties.get(target.getName());
+		Field field = source == null ? null : source.getField();
+		if (field == null) {
+			return new FieldMapper(source, target,
+					fail(new NullPointerException("Field " + target.getName() + " not found in " + type.getName())),
+					null, false);
+		}
+		Context context = new Context(field);
+		Output output = field.getAnnotation(Output.class);
+		String pattern = null;
+		if (output != null && output.value().length == 1) {
+			pattern = output.value()[0].pattern();
+			if (pattern.startsWith(ServiceClassAdvisor.METHOD_PREFIX)) {
+				return new FieldMapper(source, target, null, findConverter(pattern, field.getType()), false);
+			}
+		}
+		if (output != null && output.stream()) {
+			return new FieldMapper(source, target, compileStream(output, field, context), null, false);
+		}
+		Converter converter = compile(field.getType(), target.getType(), output, pattern, field, context);
+		return new FieldMapper(source, target, converter, null, context.pojo);
+	}
+
+	/**
+	 * 按数据类型编译转换器（与原ResultSetter的build方法对应），编译失败时返回在转换时抛出异常的转换器
+	 *
+	 * @param dataType
+	 *            属性值的数据类型
+	 * @param type
+	 *            输出的类型（数组的组件类型及POJO的类型由此决定）
+	 * @param output
+	 *            当前的输出注解
+	 * @param pattern
+	 *            当前的格式
+	 * @param field
+	 *            属性的成员变量（集合及映射的泛型）
+	 * @param context
+	 *            编译上下文
+	 */
+	private Converter compile(Class<?> dataType, Class<?> type, Output output, String pattern, Field field,
+			Context context) {
+		try {
+			switch (ClassUtils.getDataType(dataType)) {
+			case ClassUtils.PRIMITIVE:
+			case ClassUtils.NUMBER:
+				return pattern == null || pattern.length() == 0 ? SAME : new NumberConverter(pattern);
+			case ClassUtils.DATE:
+				return pattern == null || pattern.length() == 0 ? SAME : new DateConverter(pattern);
+			case ClassUtils.BYTES:
+				return (value, visited) -> new String((byte[]) value);
+			case ClassUtils.CHARACTER:
+				return (value, visited) -> value.toString();
+			case ClassUtils.STRING:
+			case ClassUtils.ENUM:
+			case ClassUtils.BOOLEAN:
+				return SAME;
+			case ClassUtils.ARRAY:
+				return compileArray(type.getComponentType(), output, field, context);
+			case ClassUtils.LIST:
+			case ClassUtils.SET:
+				Class<?> generic = IteratorBuilder.getGeneric(field, 0);
+				Output put = output == null ? (Output) context.outputs.get(generic) : output;
+				return new CollectionConverter(compileArray(generic, put, field, context),
+						ClassUtils.SET.equals(ClassUtils.getDataType(dataType)));
+			case ClassUtils.MAP:
+				return compileMap(output, field, context);
+			default:
+				return compilePojo(dataType, type, output, context);
+			}
+		} catch (Exception | LinkageError e) {
+			log.debug("Compile output " + field.getName() + " of " + this.type.getName() + " failed", e);
+			return fail(e);
+		}
+	}
+
+	private ArrayConverter compileArray(Class<?> componentType, Output output, Field field, Context context) {
+		String pattern = output.value()[0].pattern();
+		return new ArrayConverter(pattern.length() > 0 ? String.class : componentType,
+				compile(componentType, componentType, output, pattern, field, context));
+	}
+
+	/**
+	 * 编译流式输出（元素的转换与数组相同）
+	 */
+	private Converter compileStream(Output output, Field field, Context context) {
+		Class<?> component = IteratorBuilder.getElementType(field);
+		if (component == null) {
+			return fail(new IllegalArgumentException(
+					"Stream output " + field + " must be array , Iterable , Iterator or Stream"));
+		}
+		Converter element = compile(component, component, output, output.value()[0].pattern(), field, context);
+		boolean pojo = context.pojo;
+		return (value, visited) -> new StreamOutput<>(value, element, pojo);
+	}
+
+	private Converter compileMap(Output output, Field field, Context context) {
+		Class<?> generic = IteratorBuilder.getGeneric(field, 1);
+		Output put = output == null ? (Output) context.outputs.get(generic) : output;
+		Converter values = compile(generic, generic, output, put.value()[0].pattern(), field, context);
+		return (value, visited) -> {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> map = (Map<String, Object>) value;
+			Map<String, Object> rs = new LinkedHashMap<>(map.size() * 4 / 3 + 1);
+			for (Map.Entry<String, Object> entry : map.entrySet()) {
+				rs.put(entry.getKey(), values.convert(entry.getValue(), visited));
+			}
+			return rs;
+		};
+	}
+
+	private Converter compilePojo(Class<?> dataType, Class<?> type, Output output, Context context)
+			throws Exception {
+		Output put = output == null || (output.type() != void.class && output.type() != type)
+				? (Output) context.outputs.get(type) : output;
+		if (put == null) {
+			return (value, visited) -> ClassUtils.findIdProperty(value.getClass()).getValue(value);
+		}
+		for (PojoConverter converter : context.path) {
+			if (converter.dataType == dataType && converter.type == type && converter.output == put) {
+				return converter;
+			}
+		}
+		context.pojo = true;// 需要记录已转换的对象
+		PojoConverter rs = new PojoConverter(dataType, type, put);
+		context.path.add(rs);
+		try {
+			rs.compile(this, context);
+		} finally {
+			context.path.remove(context.path.size() - 1);
+		}
+		return rs;
+	}
+
+	/**
+	 * pattern指定的转换方法（业务类的方法，参数为属性类型）
+	 */
+	private Object findConverter(String pattern, Class<?> parameterType) {
+		String name = pattern.substring(ServiceClassAdvisor.METHOD_PREFIX.length());
+		Method method = MethodUtils.findMethod(type, name, parameterType);
+		if (method == null) {
+			return fail(new NullPointerException("Method '" + name + "' not found in " + type.getName()));
+		}
+		try {
+			return MethodHandles.lookup().unreflect(method).asType(CONVERT_TYPE);
+		} catch (IllegalAccessException e) {
+			return fail(e);
+		}
+	}
+
+	private static Converter fail(Throwable e) {
+		return (value, visited) -> {
+			if (e instanceof Exception) {
+				throw (Exception) e;
+			}
+			throw (Error) e;
+		};
+	}
+
+	/**
+	 * 结果类及其属性映射
+	 */
+	private static final class ResultTargets {
+
+		final Class<?> resultType;
+
+		final FieldMapper[] mappers;
+
+		ResultTargets(Class<?> resultType, FieldMapper[] mappers) {
+			this.resultType = resultType;
+			this.mappers = mappers;
+		}
+	}
+
+	/**
+	 * 编译一个结果属性时的上下文
+	 */
+	private static final class Context {
+
+		/**
+		 * 属性的InputOutput注解中的输出
+		 */
+		final Map<Class<?>, Annotation> outputs = new HashMap<>(2);
+
+		/**
+		 * 正在编译的POJO转换（用于发现类型循环）
+		 */
+		final List<PojoConverter> path = new ArrayList<>(2);
+
+		/**
+		 * 是否有POJO转换
+		 */
+		boolean pojo;
+
+		Context(Field field) {
+			InputOutput io = field.getAnnotation(InputOutput.class);
+			if (io != null) {
+				for (Output output : io.output()) {
+					outputs.put(output.type(), output);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 结果类一个属性的映射
+	 */
+	private static final class FieldMapper {
+
+		private final Property source;
+
+		private final Property target;
+
+		private final Converter converter;
+
+		private final Object method;// pattern指定的方法（MethodHandle或查找失败时的转换器）
+
+		private final boolean pojo;
+
+		FieldMapper(Property source, Property target, Converter converter, Object method, boolean pojo) {
+			this.source = source;
+			this.target = target;
+			this.converter = converter;
+			this.method = method;
+			this.pojo = pojo;
+		}
+
+		void map(Object object, Object result) throws Exception {
+			if (source == null) {
+				converter.convert(null, null);
+			}
+			Object value = source.getValue(object);
+			if (value == null) {
+				return;
+			}
+			Object rs;
+			if (method instanceof MethodHandle) {
+				try {
+					rs = (Object) ((MethodHandle) method).invokeExact(object, value);
+				} catch (Throwable e) {
+					throw new InvocationTargetException(e);
+				}
+			} else if (method != null) {
+				rs = ((Converter) method).convert(value, null);
+			} else {
+				rs = converter.convert(value, pojo ? new HashSet<>() : null);
+			}
+			target.setValue(result, rs);
+		}
+	}
+
+	/**
+	 * 输出值转换
+	 */
+	@FunctionalInterface
+	interface Converter {
+
+		/**
+		 * 转换
+		 *
+		 * @param value
+		 *            属性值（不为null）
+		 * @param visited
+		 *            已转换的POJO（没有POJO转换时为null）
+		 * @return 输出值
+		 * @throws Exception
+		 *             异常
+		 */
+		Object convert(Object value, Set<Object> visited) throws Exception;
+	}
+
+	/**
+	 * 有格式的数值转换
+	 */
+	private static final class NumberConverter implements Converter {
+
+		private final ThreadLocal<DecimalFormat> formats;
+
+		NumberConverter(String pattern) {
+			DecimalFormat format = new DecimalFormat(pattern);
+			formats = ThreadLocal.withInitial(() -> (DecimalFormat) format.clone());
+		}
+
+		@Override
+		public Object convert(Object value, Set<Object> visited) {
+			return formats.get().format(value);
+		}
+	}
+
+	/**
+	 * 有格式的日期转换
+	 */
+	private static final class DateConverter implements Converter {
+
+		private final ThreadLocal<SimpleDateFormat> formats;
+
+		DateConverter(String pattern) {
+			SimpleDateFormat format = new SimpleDateFormat(pattern);
+			formats = ThreadLocal.withInitial(() -> (SimpleDateFormat) format.clone());
+		}
+
+		@Override
+		public Object convert(Object value, Set<Object> visited) {
+			return formats.get().format((Date) value);
+		}
+	}
+
+	/**
+	 * 数组的转换
+	 */
+	private static final class ArrayConverter implements Converter {
+
+		private final Class<?> componentType;
+
+		private final Converter component;
+
+		ArrayConverter(Class<?> componentType, Converter component) {
+			this.componentType = componentType;
+			this.component = component;
+		}
+
+		@Override
+		public Object convert(Object value, Set<Object> visited) throws Exception {
+			int length = Array.getLength(value);
+			Object array = Array.newInstance(componentType, length);
+			for (int i = 0; i < length; i++) {
+				Object v = Array.get(value, i);
+				Array.set(array, i, v == null ? null : component.convert(v, visited));
+			}
+			return array;
+		}
+	}
+
+	/**
+	 * List及Set的转换
+	 */
+	private static final class CollectionConverter implements Converter {
+
+		private final ArrayConverter elements;
+
+		private final boolean set;
+
+		CollectionConverter(ArrayConverter elements, boolean set) {
+			this.elements = elements;
+			this.set = set;
+		}
+
+		@Override
+		public Object convert(Object value, Set<Object> visited) throws Exception {
+			Object[] array = (Object[]) elements.convert(((Collection<?>) value).toArray(), visited);
+			return set ? new HashSet<>(Arrays.asList(array)) : Arrays.asList(array);
+		}
+	}
+
+	/**
+	 * POJO的转换. <br>
+	 * 按输出注解的属性逐个转换，属性的转换按声明的类型编译，读取属性值时使用属性值的实际类型.
+	 */
+	private static final class PojoConverter implements Converter {
+
+		private final Class<?> dataType;
+
+		private final Class<?> type;
+
+		private final Output output;
+
+		private final Constructor<?> constructor;
+
+		private final Property[] targets;// 与输出注解的属性对应的结果属性
+
+		private Converter[] converters;
+
+		private volatile Object[] sources;// 最近使用的属性值类型及其属性：{Class, Property[]}
+
+		PojoConverter(Class<?> dataType, Class<?> type, Output output) throws Exception {
+			this.dataType = dataType;
+			this.type = type;
+			this.output = output;
+			this.constructor = type.getDeclaredConstructor();
+			this.constructor.setAccessible(true);
+			Map<String, Property> properties = ClassUtils.properties(type);
+			Prop[] props = output.value();
+			targets = new Property[props.length];
+			for (int i = 0; i < props.length; i++) {
+				targets[i] = properties.get(props[i].name());
+			}
+		}
+
+		/**
+		 * 编译属性的转换（在加入编译路径后调用，属性转换回到本转换时形成循环）
+		 */
+		void compile(ResultMapper mapper, Context context) {
+			Map<String, Property> properties = ClassUtils.properties(dataType);
+			Prop[] props = output.value();
+			Converter[] rs = new Converter[props.length];
+			for (int i = 0; i < props.length; i++) {
+				Property p = properties.get(props[i].name());
+				if (p == null || p.getField() == null || targets[i] == null) {
+					rs[i] = fail(new NullPointerException("Property " + props[i].name()));
+				} else {
+					rs[i] = mapper.compile(p.getType(), p.getType(), output, props[i].pattern(), p.getField(),
+							context);
+				}
+			}
+			converters = rs;
+		}
+
+		@Override
+		public Object convert(Object value, Set<Object> visited) throws Exception {
+			if (visited != null && !visited.add(value)) {// 已转换过的对象输出ID
+				return ClassUtils.findIdProperty(value.getClass()).getValue(value);
+			}
+			Object rs = constructor.newInstance();
+			Property[] values = getSources(value.getClass());
+			for (int i = 0; i < values.length; i++) {
+				Object v = values[i].getValue(value);
+				if (v != null) {
+					targets[i].setValue(rs, converters[i].convert(v, visited));
+				}
+			}
+			return rs;
+		}
+
+		private Property[] getSources(Class<?> valueType) {
+			Object[] cache = sources;
+			if (cache != null && cache[0] == valueType) {
+				return (Property[]) cache[1];
+			}
+			Map<String, Property> properties = ClassUtils.properties(valueType);
+			Prop[] props = output.value();
+			Property[] rs = new Property[props.length];
+			for (int i = 0; i < props.length; i++) {
+				rs[i] = properties.get(props[i].name());
+				if (rs[i] == null) {
+					throw new NullPointerException("Property " + props[i].name() + " not found in " + valueType);
+				}
+			}
+			sources = new Object[] { valueType, rs };
+			return rs;
+		}
+	}
+
+}
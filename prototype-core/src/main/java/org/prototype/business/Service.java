@@ -55,7 +55,13 @@ public class Service{
 	private Method setResult;
 	@Getter(lombok.AccessLevel.PACKAGE)@Setter(lombok.AccessLevel.PACKAGE)
 	private Method addValidateError;
-	
+
+	/**
+	 * 注册时预编译的执行管道
+	 */
+	@Getter(lombok.AccessLevel.PACKAGE)@Setter(lombok.AccessLevel.PACKAGE)
+	private ExecutePipeline pipeline;
+
 
 	/**
 	 * 对服务按包名分组
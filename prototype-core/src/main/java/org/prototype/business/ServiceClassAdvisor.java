@@ -223,7 +223,13 @@ public class ServiceClassAdvisor implements ClassAdvisor {
 		service.setType(clazz);
 		setBaseType(service, baseTypes, clazz, errors);
 		service.setParamType(createClass(factory, clazz, IteratorBuilder.getProperties(clazz, true), true, errors));
+		if (service.getParamType() != null) {
+			ParamBinder.of(clazz).prepare(service.getParamType());// 预先编译参数绑定
+		}
 		service.setResultType(createClass(factory, clazz, IteratorBuilder.getProperties(clazz, false), false, errors));
+		if (service.getResultType() != null) {
+			ResultMapper.of(clazz).prepare(service.getResultType());// 预先编译结果映射
+		}
 		executor.registerService(service);
 		return service;
 	}
@@ -357,11 +363,45 @@ public class ServiceClassAdvisor implements ClassAdvisor {
 				initInputOutput(property.getField(), isInput);
 				Field field = property.getField();
 				Object inputOutput = isInput ? field.getAnnotation(Input.class) : field.getAnnotation(Output.class);
+				if (!isInput && inputOutput != null && ((Output) inputOutput).stream()) {
+					createStream(builder, field, (Output) inputOutput);
+					continue;
+				}
 				ServiceClassBuilder.this.build(field.getType(), this, field.getType(), builder, field, inputOutput);// 此方法反射时，最后一个参数可能是Input/Output/Prop三种
 			}
 			return builder.create();
 		}
 
+		/**
+		 * 构建流式输出的成员变量（类型为Iterable）. <br>
+		 * 元素类型不能确定或不能转换时不构建成员变量，错误记录到errors中（启动时报告）
+		 * 
+		 * @param builder
+		 *            类构建器
+		 * @param field
+		 *            成员变量
+		 * @param output
+		 *            输出注解
+		 * @throws Exception
+		 *             异常
+		 */
+		private void createStream(ClassBuilder builder, Field field, Output output) throws Exception {
+			Class<?> component = getElementType(field);
+			if (component == null) {
+				addError("service.output.stream", field.toString());
+				return;
+			}
+			Class<?> clazz = createComponent(field, component, output);
+			if (clazz == null) {// createComponent已记录错误
+				return;
+			}
+			log.debug("Build {} to type : java.lang.Iterable<{}>", field, clazz.getName());
+			FieldBuilder fb = builder.newField(Modifier.PRIVATE, field.getName(), Iterable.class,
+					new Class<?>[] { clazz }, true);
+			addAnnotation(fb, clazz, true, output);
+			fb.create();
+		}
+
 		/**
 		 * 添加属性的输入输出注解映射数据时，加入类型判断
 		 */
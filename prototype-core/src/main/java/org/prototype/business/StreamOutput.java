@@ -0,0 +1,252 @@
+package org.prototype.business;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.BaseStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+/**
+ * 流式输出的结果属性. <br>
+ *
+ * <pre>
+ * 由Output注解的stream属性开启，结果类的属性为Iterable，值为本类的实例。
+ * 序列化为JSON时（见{@link JsonSerializable}）从业务对象的数组、Iterable、Iterator或Stream中逐个取出元素，
+ * 按Prop注解转换后直接写入JsonGenerator，不创建转换后的数组或集合；迭代时同样逐个转换.
+ * 数组及Iterable可重复输出（每次输出重新转换）；Iterator及Stream只能输出一次（序列化或迭代），输出完成后关闭（实现了AutoCloseable时），
+ * 再次输出时抛出IllegalStateException.
+ * 迭代时在hasNext()首次返回false或转换元素出错时关闭，返回的迭代器实现了AutoCloseable，未迭代完时可提前关闭.
+ * 元素中有POJO转换时，只在一个元素内记录已转换的对象（不在整个输出中保留），元素内再次遇到相等的对象时输出其ID.
+ * </pre>
+ *
+ * @author lj
+ *
+ * @param <T>
+ *            输出的元素类型
+ */
+public final class StreamOutput<T> implements Iterable<T>, JsonSerializable {
+
+	/**
+	 * 业务对象的属性值（数组、Iterable、Iterator或Stream），只能输出一次的值输出后为null
+	 */
+	private Object source;
+
+	private final ResultMapper.Converter converter;
+
+	private final boolean pojo;
+
+	StreamOutput(Object source, ResultMapper.Converter converter, boolean pojo) {
+		this.source = source;
+		this.converter = converter;
+		this.pojo = pojo;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new OutputIterator(open());
+	}
+
+	@Override
+	public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+		Iterator<?> iterator = open();
+		gen.writeStartArray();
+		try {
+			while (iterator.hasNext()) {
+				serializers.defaultSerializeValue(convert(iterator.next()), gen);
+			}
+		} catch (IOException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw JsonMappingException.from(gen, "Convert stream output error", e);
+		} finally {
+			close(iterator);
+		}
+		gen.writeEndArray();
+	}
+
+	@Override
+	public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+			throws IOException {
+		serialize(gen, serializers);
+	}
+
+	private Object convert(Object value) throws Exception {
+		if (value == null) {
+			return null;
+		}
+		return converter.convert(value, pojo ? new HashSet<>() : null);
+	}
+
+	/**
+	 * 开始输出
+	 */
+	private synchronized Iterator<?> open() {
+		Object value = source;
+		if (value == null) {
+			throw new IllegalStateException("Stream output can only be consumed once");
+		} else if (value.getClass().isArray()) {
+			return new ArrayIterator(value);
+		} else if (value instanceof Iterable) {
+			return ((Iterable<?>) value).iterator();
+		}
+		source = null;
+		if (value instanceof BaseStream) {
+			return new StreamIterator((BaseStream<?, ?>) value);
+		}
+		return (Iterator<?>) value;
+	}
+
+	/**
+	 * 输出完成后关闭Iterator或Stream
+	 */
+	private static void close(Iterator<?> iterator) throws IOException {
+		if (iterator instanceof AutoCloseable) {
+			try {
+				((AutoCloseable) iterator).close();
+			} catch (IOException | RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException(e);
+			}
+		}
+	}
+
+	/**
+	 * 逐个转换元素的迭代，结束或出错时关闭数据来源
+	 */
+	private final class OutputIterator implements Iterator<T>, AutoCloseable {
+
+		private final Iterator<?> iterator;
+
+		private boolean closed;
+
+		OutputIterator(Iterator<?> iterator) {
+			this.iterator = iterator;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (closed) {
+				return false;
+			}
+			boolean rs;
+			try {
+				rs = iterator.hasNext();
+			} catch (RuntimeException e) {
+				closeOnError(e);
+				throw e;
+			}
+			if (!rs) {
+				close();
+			}
+			return rs;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T next() {
+			if (closed) {
+				throw new NoSuchElementException();
+			}
+			try {
+				return (T) convert(iterator.next());
+			} catch (RuntimeException e) {
+				closeOnError(e);
+				throw e;
+			} catch (Exception e) {
+				closeOnError(e);
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				StreamOutput.close(iterator);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void closeOnError(Exception error) {
+			try {
+				close();
+			} catch (RuntimeException e) {
+				error.addSuppressed(e);
+			}
+		}
+	}
+
+	/**
+	 * 数组（包括基本类型数组）的迭代
+	 */
+	private static final class ArrayIterator implements Iterator<Object> {
+
+		private final Object array;
+
+		private final int length;
+
+		private int index;
+
+		ArrayIterator(Object array) {
+			this.array = array;
+			this.length = Array.getLength(array);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return index < length;
+		}
+
+		@Override
+		public Object next() {
+			if (index >= length) {
+				throw new NoSuchElementException();
+			}
+			return Array.get(array, index++);
+		}
+	}
+
+	/**
+	 * Stream的迭代（关闭时关闭Stream）
+	 */
+	private static final class StreamIterator implements Iterator<Object>, AutoCloseable {
+
+		private final BaseStream<?, ?> stream;
+
+		private final Iterator<?> iterator;
+
+		StreamIterator(BaseStream<?, ?> stream) {
+			this.stream = stream;
+			this.iterator = stream.iterator();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return iterator.hasNext();
+		}
+
+		@Override
+		public Object next() {
+			return iterator.next();
+		}
+
+		@Override
+		public void close() {
+			stream.close();
+		}
+	}
+
+}
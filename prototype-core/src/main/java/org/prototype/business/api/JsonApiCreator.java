@@ -213,7 +213,9 @@ public class JsonApiCreator implements ApiCreator<JsonApiCreator.JsonApi> {
 				Property prop = map.get(property.getField().getName());
 				Annotation annotation = isInput ? property.getField().getAnnotation(Input.class)
 						: property.getField().getAnnotation(Output.class);
-				Type pt = (Type) build(prop.getType(), this, prop, property.getField(), annotation);
+				Type pt = !isInput && annotation != null && ((Output) annotation).stream()
+						? createStream(prop, property.getField(), annotation)
+						: (Type) build(prop.getType(), this, prop, property.getField(), annotation);
 				list.add(pt);
 			}
 			return list;
@@ -308,6 +310,21 @@ public class JsonApiCreator implements ApiCreator<JsonApiCreator.JsonApi> {
 			return type;
 		}
 
+		/**
+		 * 流式输出的属性（结果类中为Iterable）
+		 */
+		private Type createStream(Property property, Field field, Annotation annotation) throws Exception {
+			Class<?> generic = getGeneric(property.getField(), 0);
+			Type type = null;
+			if (ClassUtils.POJO.equals(ClassUtils.getDataType(generic))) {
+				type = createPojo(field.getName(), generic, getElementType(field), annotation);
+			} else {
+				type = createSimple(generic, field, annotation);
+			}
+			type.setType("Iterable<" + generic.getName() + ">");
+			return type;
+		}
+
 		protected Type buildMap(Property property, Field field, Annotation annotation) throws Exception {
 			Class<?> generic = getGeneric(property.getField(), 1);
 			Type type = null;
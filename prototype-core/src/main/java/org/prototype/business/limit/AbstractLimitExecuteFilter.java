@@ -4,14 +4,21 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
 
 import org.prototype.business.ExecuteChain;
 import org.prototype.business.ExecuteFilter;
+import org.prototype.inject.InjectHelper;
 import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.util.Assert;
 
 /**
- * 访问限制的抽象实现
+ * 访问限制的抽象实现. <br>
+ * 注解有属性key（键的表达式，见{@link LimitKey}）且不为空时，按每次执行的键分别限制（见{@link KeyedLimiters}），
+ * 键的最大数量及过期时间（秒）由注解属性maxKeys、keyExpire指定.
  * 
  * @author flyxxxxx@163.com
  *
@@ -26,6 +33,14 @@ public abstract class AbstractLimitExecuteFilter<T extends Annotation, L> implem
 	 * 注解与限流实现的映射
 	 */
 	private Map<T, L> limiters = new ConcurrentHashMap<>();
+
+	/**
+	 * 注解与按键区分的限制器的映射
+	 */
+	private Map<T, KeyedLimit> keyedLimits = new ConcurrentHashMap<>();
+
+	@Resource
+	private InjectHelper helper;
 	
 	private Class<T> type;
 	
@@ -39,18 +54,32 @@ public abstract class AbstractLimitExecuteFilter<T extends Annotation, L> implem
 	@Override
 	public final void doFilter(ExecuteChain chain) throws Exception {
 		T limit = chain.getAnnotation(type);
-		L limiter = getLimiter(limit);
+		L limiter = getLimiter(chain, limit);
+		boolean acquired = false;
+		long start = 0;
 		try {
-			if (acquire(limit, limiter)) {
+			acquired = acquire(limit, limiter);
+			if (acquired) {
+				start = System.nanoTime();
 				chain.doChain();
 			} else {
 				chain.setResultType(ExecuteChain.REJECT);
 			}
 		} finally {
-			countdown(limiter);
+			release(limiter, acquired, acquired ? System.nanoTime() - start : 0);
 		}
 	}
 
+	/**
+	 * 执行完成（默认调用{@link #countdown(Object)}）
+	 * @param limiter 限制器实现
+	 * @param acquired 是否请求成功
+	 * @param elapsedNanos 执行时间（纳秒），请求失败时为0
+	 */
+	protected void release(L limiter, boolean acquired, long elapsedNanos) {
+		countdown(limiter);
+	}
+
 	/**
 	 * 请求令牌
 	 * @param limit 限制注解
@@ -67,18 +96,26 @@ public abstract class AbstractLimitExecuteFilter<T extends Annotation, L> implem
 
 	/**
 	 * 从缓存查找限制器实现，没有则创建一个
+	 * @param chain 执行链
 	 * @param limit 限制注解
 	 * @return 限制器实现
+	 * @throws Exception 读取键异常
 	 */
-	private L getLimiter(T limit) {
+	private L getLimiter(ExecuteChain chain, T limit) throws Exception {
 		L limiter = limiters.get(limit);
-		if (limiter == null) {
-			synchronized (limit) {
-				limiter = createLimiter(limit);
-				limiters.put(limit, limiter);
+		if (limiter != null) {
+			return limiter;
+		}
+		KeyedLimit keyed = keyedLimits.get(limit);
+		if (keyed == null) {
+			Object key = AnnotationUtils.getValue(limit, "key");
+			if (!(key instanceof String) || ((String) key).isEmpty()) {
+				return limiters.computeIfAbsent(limit, this::createLimiter);
 			}
+			keyed = keyedLimits.computeIfAbsent(limit, l -> new KeyedLimit(l, (String) key));
 		}
-		return limiter;
+		Object key = keyed.key.resolve(chain, helper);
+		return keyed.limiters.get(key, () -> createLimiter(limit, key));
 	}
 
 	/**
@@ -88,4 +125,32 @@ public abstract class AbstractLimitExecuteFilter<T extends Annotation, L> implem
 	 */
 	protected abstract  L createLimiter(T limit);
 
+	/**
+	 * 创建按键区分的限制器实现（默认与{@link #createLimiter(Annotation)}相同）
+	 * @param limit 限制注解
+	 * @param key 键（可能为null）
+	 * @return 限制器实现
+	 */
+	protected L createLimiter(T limit, Object key) {
+		return createLimiter(limit);
+	}
+
+	/**
+	 * 一个注解的按键区分的限制器
+	 */
+	private class KeyedLimit {
+
+		private final LimitKey key;
+
+		private final KeyedLimiters<L> limiters;
+
+		KeyedLimit(T limit, String key) {
+			Object maxKeys = AnnotationUtils.getValue(limit, "maxKeys");
+			Object expire = AnnotationUtils.getValue(limit, "keyExpire");
+			this.key = new LimitKey(key);
+			this.limiters = new KeyedLimiters<>(maxKeys instanceof Integer ? (Integer) maxKeys : 10000,
+					expire instanceof Integer ? (Integer) expire : 600, TimeUnit.SECONDS);
+		}
+	}
+
 }
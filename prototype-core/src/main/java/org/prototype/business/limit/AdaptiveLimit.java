@@ -0,0 +1,100 @@
+package org.prototype.business.limit;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+import org.prototype.business.Executor;
+
+/**
+ * 自适应并发数限制. <br>
+ * 
+ * <pre>
+ * 并发数上限按执行时间自动调整（见{@link AdaptiveLimiter}）：执行时间接近无负载时的最小值时逐步增加，执行时间增长（请求排队）时成倍减少.
+ * 达到上限时最多等待waitTimeout，等待的请求超出queueSize或超时后拒绝.
+ * </pre>
+ * 
+ * @author lj
+ *
+ */
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Executor
+public @interface AdaptiveLimit {
+
+	/**
+	 * 初始的并发数上限
+	 * 
+	 * @return 初始的并发数上限
+	 */
+	int value() default 20;
+
+	/**
+	 * 并发数上限的最小值
+	 * 
+	 * @return 最小值
+	 */
+	int min() default 1;
+
+	/**
+	 * 并发数上限的最大值
+	 * 
+	 * @return 最大值
+	 */
+	int max() default 200;
+
+	/**
+	 * 达到上限时的最大等待时间（注意默认时间单位）. <br>
+	 * 默认为0：达到上限时立即拒绝，不进入等待队列（queueSize无效），适合调用方有重试或降级的场景；
+	 * 需要削峰时设置为调用方可接受的额外延迟（如100毫秒），等待占用请求线程
+	 * 
+	 * @return 最大等待时间
+	 */
+	int waitTimeout() default 0;
+
+	/**
+	 * 最多等待的请求数（waitTimeout大于0时有效）
+	 * 
+	 * @return 最多等待的请求数
+	 */
+	int queueSize() default 100;
+
+	/**
+	 * 调整上限的采样时间，为0时只按样本数（每10个）调整
+	 * 
+	 * @return 采样时间
+	 */
+	int window() default 100;
+
+	/**
+	 * 时间单位（默认为毫秒）
+	 * 
+	 * @return 时间单位
+	 */
+	TimeUnit unit() default TimeUnit.MILLISECONDS;
+
+	/**
+	 * 按键分别限制时键的表达式（如userId为输入参数的属性，&#064;CurrentUser.id为注入参数的属性），默认不区分
+	 * 
+	 * @return 键的表达式
+	 */
+	String key() default "";
+
+	/**
+	 * 按键分别限制时键的最大数量（超出时删除最久未访问的）
+	 * 
+	 * @return 键的最大数量
+	 */
+	int maxKeys() default 10000;
+
+	/**
+	 * 按键分别限制时键未访问的过期时间（秒）
+	 * 
+	 * @return 过期时间
+	 */
+	int keyExpire() default 600;
+}
@@ -0,0 +1,39 @@
+package org.prototype.business.limit;
+
+import org.prototype.business.ExecuteFilter;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 自适应并发数限制实现. <br>
+ * 
+ * @author lj
+ *
+ */
+@Component
+@Order(ExecuteFilter.REQUEST)
+public class AdaptiveLimitExecuteFilter extends AbstractLimitExecuteFilter<AdaptiveLimit, AdaptiveLimiter> {
+
+	@Override
+	protected boolean acquire(AdaptiveLimit limit, AdaptiveLimiter limiter) {
+		return limiter.tryAcquire();
+	}
+
+	@Override
+	protected void release(AdaptiveLimiter limiter, boolean acquired, long elapsedNanos) {
+		if (acquired) {
+			limiter.release(elapsedNanos);
+		}
+	}
+
+	@Override
+	protected void countdown(AdaptiveLimiter limiter) {
+		// do nothing
+	}
+
+	@Override
+	protected AdaptiveLimiter createLimiter(AdaptiveLimit limit) {
+		return new AdaptiveLimiter(limit);
+	}
+
+}
@@ -0,0 +1,218 @@
+package org.prototype.business.limit;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应并发数限制器. <br>
+ *
+ * <pre>
+ * 并发数由CAS计数，未达到上限时才增加（被拒绝的请求不影响计数）；达到上限时在有界的等待队列中等待释放.
+ * 上限的调整（Vegas方式）：每个采样时间取执行时间的最小值rtt，与历史最小值（无负载时的执行时间）比较估算排队的请求数
+ * queue = limit * (1 - minRtt / rtt)：
+ * queue小于3*log10(limit)且并发数达到上限的一半时加法增加log10(limit)；queue大于6*log10(limit)时乘法减少（乘以0.9）.
+ * 每隔一定的采样次数以当前的rtt重新作为历史最小值，以适应下游服务的变化.
+ * 采样不加锁：执行时间的最小值、并发数的最大值及样本数由LongAccumulator/LongAdder累计，
+ * 采样时间结束（且样本数足够）时由一个线程（CAS）取出并重置累计值、调整上限，其它线程不等待；窗口切换时的少量样本可能计入下一个采样时间.
+ * 采样时间为0时每MIN_SAMPLES个样本调整一次.
+ * </pre>
+ *
+ * @author lj
+ *
+ */
+final class AdaptiveLimiter {
+
+	/**
+	 * 每次调整至少需要的样本数
+	 */
+	private static final int MIN_SAMPLES = 10;
+
+	/**
+	 * 重新探测无负载执行时间的采样次数
+	 */
+	private static final int PROBE_WINDOWS = 100;
+
+	private static final double BACKOFF = 0.9;
+
+	private final int min;
+
+	private final int max;
+
+	private final int queueSize;
+
+	private final long waitNanos;
+
+	private final long windowNanos;
+
+	private volatile int limit;
+
+	private final AtomicInteger inflight = new AtomicInteger();
+
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition released = lock.newCondition();
+
+	/**
+	 * 当前采样时间的开始
+	 */
+	private volatile long windowStart = System.nanoTime();
+
+	private final LongAccumulator windowRtt = new LongAccumulator(Math::min, Long.MAX_VALUE);
+
+	private final LongAccumulator windowInflight = new LongAccumulator(Math::max, 0);
+
+	private final LongAdder windowSamples = new LongAdder();
+
+	/**
+	 * 是否有线程正在调整上限
+	 */
+	private final AtomicBoolean adjusting = new AtomicBoolean();
+
+	/**
+	 * 以下数据只由调整上限的线程（取得adjusting）访问
+	 */
+	private long noLoadRtt = Long.MAX_VALUE;
+
+	private int windows;
+
+	AdaptiveLimiter(AdaptiveLimit limit) {
+		this.min = Math.max(limit.min(), 1);
+		this.max = Math.max(limit.max(), min);
+		this.limit = Math.min(Math.max(limit.value(), min), max);
+		this.queueSize = limit.queueSize();
+		this.waitNanos = limit.unit().toNanos(limit.waitTimeout());
+		this.windowNanos = limit.unit().toNanos(limit.window());
+	}
+
+	/**
+	 * 请求执行
+	 *
+	 * @return 是否请求成功
+	 */
+	boolean tryAcquire() {
+		if (tryIncrement()) {
+			return true;
+		} else if (waitNanos <= 0) {
+			return false;
+		}
+		if (waiting.incrementAndGet() > queueSize) {
+			waiting.decrementAndGet();
+			return false;
+		}
+		lock.lock();
+		try {
+			long remaining = waitNanos;
+			while (!tryIncrement()) {
+				if (remaining <= 0) {
+					return false;
+				}
+				remaining = released.awaitNanos(remaining);
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			lock.unlock();
+			waiting.decrementAndGet();
+		}
+	}
+
+	private boolean tryIncrement() {
+		for (;;) {
+			int n = inflight.get();
+			if (n >= limit) {
+				return false;
+			} else if (inflight.compareAndSet(n, n + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * 执行完成
+	 *
+	 * @param rttNanos
+	 *            执行时间（纳秒）
+	 */
+	void release(long rttNanos) {
+		int n = inflight.getAndDecrement();
+		boolean increased = sample(rttNanos, n);
+		if (waiting.get() > 0) {
+			lock.lock();
+			try {
+				if (increased) {
+					released.signalAll();
+				} else {
+					released.signal();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * 记录一次执行时间，采样时间结束时调整上限
+	 *
+	 * @return 上限是否增加
+	 */
+	private boolean sample(long rtt, int concurrent) {
+		windowRtt.accumulate(Math.max(rtt, 1));
+		windowInflight.accumulate(concurrent);
+		windowSamples.increment();
+		if (!isWindowEnd() || !adjusting.compareAndSet(false, true)) {
+			return false;
+		}
+		try {
+			if (!isWindowEnd()) {// 其它线程已调整
+				return false;
+			}
+			windowSamples.reset();
+			long rs = windowRtt.getThenReset();
+			int maxInflight = (int) windowInflight.getThenReset();
+			windowStart = System.nanoTime();
+			return adjust(rs, maxInflight);
+		} finally {
+			adjusting.set(false);
+		}
+	}
+
+	/**
+	 * 采样时间是否结束且样本数足够
+	 */
+	private boolean isWindowEnd() {
+		return System.nanoTime() - windowStart >= windowNanos && windowSamples.sum() >= MIN_SAMPLES;
+	}
+
+	/**
+	 * 按采样时间的执行时间调整上限
+	 *
+	 * @param rs
+	 *            采样时间内执行时间的最小值
+	 * @param maxInflight
+	 *            采样时间内并发数的最大值
+	 * @return 上限是否增加
+	 */
+	private boolean adjust(long rs, int maxInflight) {
+		if (++windows % PROBE_WINDOWS == 0 || rs < noLoadRtt) {
+			noLoadRtt = rs;
+		}
+		int current = limit;
+		double queue = current * (1 - (double) noLoadRtt / rs);
+		double log = Math.max(1, Math.log10(current));
+		if (queue > 6 * log) {
+			limit = Math.max(min, Math.min(current - 1, (int) (current * BACKOFF)));
+		} else if (queue < 3 * log && maxInflight * 2 >= current) {
+			limit = Math.min(max, current + (int) log);
+		}
+		return limit > current;
+	}
+
+}
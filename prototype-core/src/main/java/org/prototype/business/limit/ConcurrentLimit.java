@@ -19,5 +19,31 @@ import org.prototype.business.Executor;
 @Documented
 @Executor
 public @interface ConcurrentLimit {
+	/**
+	 * 最大并发数
+	 * 
+	 * @return 最大并发数
+	 */
 	int value();
+
+	/**
+	 * 按键分别限制时键的表达式（如userId为输入参数的属性，&#064;CurrentUser.id为注入参数的属性），默认不区分
+	 * 
+	 * @return 键的表达式
+	 */
+	String key() default "";
+
+	/**
+	 * 按键分别限制时键的最大数量（超出时删除最久未访问的）
+	 * 
+	 * @return 键的最大数量
+	 */
+	int maxKeys() default 10000;
+
+	/**
+	 * 按键分别限制时键未访问的过期时间（秒）
+	 * 
+	 * @return 过期时间
+	 */
+	int keyExpire() default 600;
 }
@@ -0,0 +1,155 @@
+package org.prototype.business.limit;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 按键区分的限制器. <br>
+ *
+ * <pre>
+ * 每个键一个限制器，保存在并发映射中，记录最后访问时间（精度为过期时间的1/10，最多1秒，避免热点键的频繁写入）.
+ * 超出最大数量或距上次清理超过过期时间时，由一个线程清理：先删除过期的，仍超出最大数量时抽样访问时间，
+ * 删除最久未访问的部分（近似LRU），使数量减少到最大数量的3/4.
+ * 被删除的键再次访问时创建新的限制器.
+ * </pre>
+ *
+ * @author lj
+ *
+ * @param <L>
+ *            限制器类型
+ */
+final class KeyedLimiters<L> {
+
+	/**
+	 * 键为null时使用的键
+	 */
+	private static final Object NULL_KEY = new Object();
+
+	/**
+	 * 近似LRU的抽样数
+	 */
+	private static final int SAMPLES = 64;
+
+	private final int capacity;
+
+	private final long expireNanos;
+
+	private final long precisionNanos;
+
+	private final Map<Object, Entry<L>> entries = new ConcurrentHashMap<>();
+
+	private final AtomicBoolean sweeping = new AtomicBoolean();
+
+	private volatile long lastSweep = System.nanoTime();
+
+	/**
+	 * 构造
+	 *
+	 * @param capacity
+	 *            最大数量
+	 * @param expire
+	 *            未访问的过期时间
+	 * @param unit
+	 *            时间单位
+	 */
+	KeyedLimiters(int capacity, long expire, TimeUnit unit) {
+		this.capacity = Math.max(capacity, 1);
+		this.expireNanos = Math.max(unit.toNanos(expire), 1);
+		this.precisionNanos = Math.min(expireNanos / 10, TimeUnit.SECONDS.toNanos(1));
+	}
+
+	/**
+	 * 获取键对应的限制器，没有则创建
+	 *
+	 * @param key
+	 *            键
+	 * @param factory
+	 *            限制器的创建
+	 * @return 限制器
+	 */
+	L get(Object key, Supplier<L> factory) {
+		long now = System.nanoTime();
+		Object k = key == null ? NULL_KEY : key;
+		Entry<L> entry = entries.get(k);
+		if (entry == null) {
+			entry = entries.computeIfAbsent(k, x -> new Entry<>(factory.get(), now));
+		} else if (now - entry.access > precisionNanos) {
+			entry.access = now;
+		}
+		if (entries.size() > capacity || now - lastSweep > expireNanos) {
+			sweep(now);
+		}
+		return entry.limiter;
+	}
+
+	/**
+	 * 当前的键数
+	 *
+	 * @return 键数
+	 */
+	int size() {
+		return entries.size();
+	}
+
+	private void sweep(long now) {
+		if (!sweeping.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			lastSweep = now;
+			entries.values().removeIf(entry -> now - entry.access > expireNanos);
+			int size = entries.size();
+			if (size <= capacity) {
+				return;
+			}
+			long threshold = sampleAge(now, size, size - capacity * 3 / 4);
+			entries.values().removeIf(entry -> now - entry.access >= threshold);
+		} finally {
+			sweeping.set(false);
+		}
+	}
+
+	/**
+	 * 抽样估算需要删除的键的最小未访问时间
+	 *
+	 * @param size
+	 *            当前键数
+	 * @param excess
+	 *            需要删除的键数
+	 * @return 未访问时间
+	 */
+	private long sampleAge(long now, int size, int excess) {
+		long[] ages = new long[Math.min(SAMPLES, size)];
+		int step = Math.max(size / ages.length, 1);
+		int n = 0;
+		int i = 0;
+		for (Iterator<Entry<L>> it = entries.values().iterator(); it.hasNext() && n < ages.length; i++) {
+			Entry<L> entry = it.next();
+			if (i % step == 0) {
+				ages[n++] = now - entry.access;
+			}
+		}
+		Arrays.sort(ages, 0, n);
+		// 从大到小第excess/size比例处的值
+		int index = n - 1 - (int) ((long) (n - 1) * excess / size);
+		return ages[Math.max(index, 0)];
+	}
+
+	private static final class Entry<L> {
+
+		private final L limiter;
+
+		private volatile long access;
+
+		Entry(L limiter, long access) {
+			this.limiter = limiter;
+			this.access = access;
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package org.prototype.business.limit;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.prototype.business.ExecuteChain;
+import org.prototype.core.ParameterInject;
+import org.prototype.inject.InjectHelper;
+import org.prototype.reflect.AnnotationUtils;
+import org.prototype.reflect.ClassUtils;
+import org.prototype.reflect.Property;
+
+/**
+ * 访问限制的键. <br>
+ *
+ * <pre>
+ * 键的表达式为属性路径：
+ * 1、如userId、user.id，从业务的输入参数（第一个有此属性的参数，参数为Map时按键取值）开始读取；
+ * 2、如&#064;CurrentUser.id，从业务类构造方法中有注解CurrentUser（须有元注解{@link ParameterInject}）的参数的注入值开始读取.
+ * 表达式在创建时拆分，构造方法中注入参数的查找按业务类缓存.
+ * </pre>
+ *
+ * @author lj
+ *
+ */
+final class LimitKey {
+
+	/**
+	 * 业务类没有对应的注入参数
+	 */
+	private static final Object[] NONE = new Object[0];
+
+	/**
+	 * 注入参数的注解名称，从输入参数读取时为null
+	 */
+	private final String injected;
+
+	private final String[] path;
+
+	/**
+	 * 业务类与注入参数（参数类型及注解）的映射
+	 */
+	private final Map<Class<?>, Object[]> injectParameters = new ConcurrentHashMap<>();
+
+	LimitKey(String expression) {
+		String[] parts = expression.trim().split("\\.");
+		if (parts[0].startsWith("@")) {
+			this.injected = parts[0].substring(1);
+			this.path = Arrays.copyOfRange(parts, 1, parts.length);
+		} else {
+			this.injected = null;
+			this.path = parts;
+		}
+	}
+
+	/**
+	 * 获取本次执行的键
+	 *
+	 * @param chain
+	 *            执行链
+	 * @param helper
+	 *            注入帮助类
+	 * @return 键，不能确定时为null
+	 * @throws Exception
+	 *             读取属性异常
+	 */
+	Object resolve(ExecuteChain chain, InjectHelper helper) throws Exception {
+		if (injected != null) {
+			if (chain.getType() == null) {
+				return null;
+			}
+			Object[] parameter = injectParameters.computeIfAbsent(chain.getType(), this::findInjectParameter);
+			return parameter == NONE ? null
+					: read(helper.getInjectParameter((Class<?>) parameter[0], (Annotation) parameter[1]), 0);
+		}
+		Object[] params = chain.getParams();
+		if (params == null) {
+			return null;
+		}
+		for (Object param : params) {
+			if (param instanceof Map && ((Map<?, ?>) param).containsKey(path[0])) {
+				return read(((Map<?, ?>) param).get(path[0]), 1);
+			}
+			Property property = param == null ? null : ClassUtils.properties(param.getClass()).get(path[0]);
+			if (property != null) {
+				return read(property.getValue(param), 1);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 按属性路径读取
+	 */
+	private Object read(Object value, int from) throws Exception {
+		for (int i = from; i < path.length && value != null; i++) {
+			if (value instanceof Map) {
+				value = ((Map<?, ?>) value).get(path[i]);
+				continue;
+			}
+			Property property = ClassUtils.properties(value.getClass()).get(path[i]);
+			value = property == null ? null : property.getValue(value);
+		}
+		return value;
+	}
+
+	private Object[] findInjectParameter(Class<?> type) {
+		for (Constructor<?> constructor : type.getConstructors()) {
+			for (Parameter parameter : constructor.getParameters()) {
+				for (Annotation annotation : AnnotationUtils.getAnnotationByMeta(parameter.getAnnotations(),
+						ParameterInject.class)) {
+					if (annotation.annotationType().getSimpleName().equals(injected)) {
+						return new Object[] { parameter.getType(), annotation };
+					}
+				}
+			}
+		}
+		return NONE;
+	}
+
+}
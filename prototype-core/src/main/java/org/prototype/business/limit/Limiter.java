@@ -0,0 +1,25 @@
+package org.prototype.business.limit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限制器. <br>
+ * 本地实现（如Guava RateLimiter、{@link SlidingWindowCounter}）及Redis实现（{@link RedisLimiter}）的统一接口.
+ * 
+ * @author lj
+ *
+ */
+@FunctionalInterface
+interface Limiter {
+
+	/**
+	 * 请求一次
+	 * 
+	 * @param timeout
+	 *            最大等待时间（0为不等待）
+	 * @param unit
+	 *            时间单位
+	 * @return 是否请求成功
+	 */
+	boolean tryAcquire(long timeout, TimeUnit unit);
+}
@@ -1,6 +1,12 @@
 package org.prototype.business.limit;
 
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+
 import org.prototype.business.ExecuteFilter;
+import org.springframework.context.ApplicationContext;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
@@ -8,34 +14,48 @@ import com.google.common.util.concurrent.RateLimiter;
 
 /**
  * 速率限制执行过滤实现. <br>
+ * 注解指定了redis时使用Redis中的令牌桶（见{@link RedisLimiter}），桶容量为每秒的令牌数.
  * @author flyxxxxx@163.com
  *
  */
 @Component
 @Order(ExecuteFilter.REQUEST)
-public class RateLimitExecuteFilter extends AbstractLimitExecuteFilter<RateLimit,RateLimiter> {
+public class RateLimitExecuteFilter extends AbstractLimitExecuteFilter<RateLimit, Limiter> {
+
+	@Resource
+	private ApplicationContext applicationContext;
 
 	@Override
-	protected boolean acquire(RateLimit limit, RateLimiter limiter) {
-		if (limit.waitTimeout() > 0) {
-			return limiter.tryAcquire(limit.waitTimeout(), limit.unit());
-		} else {
-			return limiter.tryAcquire();
-		}
+	protected boolean acquire(RateLimit limit, Limiter limiter) {
+		return limiter.tryAcquire(Math.max(limit.waitTimeout(), 0), limit.unit());
 	}
 
 	@Override
-	protected void countdown(RateLimiter limiter) {
+	protected void countdown(Limiter limiter) {
 		// do nothing
 	}
 
 	@Override
-	protected RateLimiter createLimiter(RateLimit limit) {
+	protected Limiter createLimiter(RateLimit limit) {
+		return createLimiter(limit, null);
+	}
+
+	@Override
+	protected Limiter createLimiter(RateLimit limit, Object key) {
+		RateLimiter local;
 		if (limit.warmupPeriod() > 0) {
-			return RateLimiter.create(limit.value(), limit.warmupPeriod(), limit.unit());
+			local = RateLimiter.create(limit.value(), limit.warmupPeriod(), limit.unit());
 		} else {
-			return RateLimiter.create(limit.value());
+			local = RateLimiter.create(limit.value());
+		}
+		if (limit.redis().isEmpty()) {
+			return local::tryAcquire;
 		}
+		String value = String.valueOf(limit.value());
+		int batch = RedisLimiter.batch(limit.prefetch(), limit.value());
+		return RedisLimiter.create(applicationContext, key == null ? limit.redis() : limit.redis() + ":" + key,
+				RedisLimiter.TOKEN_BUCKET, Arrays.asList(value, value), batch,
+				TimeUnit.SECONDS.toNanos(batch) / limit.value(), local::tryAcquire);
 	}
 	
 	public static void main(String[] args){
@@ -0,0 +1,48 @@
+package org.prototype.business.limit;
+
+import org.prototype.core.ClassAdvisor;
+import org.prototype.core.ClassBuilder;
+import org.prototype.core.ClassFactory;
+import org.prototype.core.Errors;
+import org.prototype.inject.JedisInjecter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 检查Redis限制的JedisPool. <br>
+ * 类（业务类或定义全局注解的启动类）的{@link RateLimit}或{@link TimeWindowLimit}注解指定了redis时，需要有唯一（或标记Primary）的JedisPool，
+ * 否则在启动时报错，而不是在每次请求创建限制器时失败.
+ *
+ * @author lj
+ *
+ */
+@Component
+public class RedisLimitClassAdvisor implements ClassAdvisor {
+
+	@Autowired(required = false)
+	private JedisInjecter injecter;
+
+	@Override
+	public void beforeLoad(ClassBuilder builder, Errors errors) {
+		RateLimit rate = builder.getAnnotation(RateLimit.class);
+		if (rate != null && !rate.redis().isEmpty()) {
+			check(builder, RateLimit.class.getSimpleName(), errors);
+		}
+		TimeWindowLimit window = builder.getAnnotation(TimeWindowLimit.class);
+		if (window != null && !window.redis().isEmpty()) {
+			check(builder, TimeWindowLimit.class.getSimpleName(), errors);
+		}
+	}
+
+	private void check(ClassBuilder builder, String annotation, Errors errors) {
+		if (injecter == null || !injecter.containsBean()) {
+			errors.add("limit.redis.nopool", builder.toString(), annotation);
+		}
+	}
+
+	@Override
+	public void onComplete(ClassFactory factory, Errors errors) {
+		// do nothing
+	}
+
+}
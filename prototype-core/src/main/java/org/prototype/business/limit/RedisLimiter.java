@@ -0,0 +1,322 @@
+package org.prototype.business.limit;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import org.prototype.inject.JedisInjecter;
+import org.springframework.context.ApplicationContext;
+import org.springframework.util.Assert;
+
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * 基于Redis的分布式限制器. <br>
+ *
+ * <pre>
+ * 令牌由Lua脚本在Redis中原子地分配（令牌桶见{@link #TOKEN_BUCKET}，滑动窗口见{@link #SLIDING_WINDOW}），
+ * 每次按批预取多个令牌保存在本地，本地令牌用完或过期后才再次访问Redis；Redis中没有令牌时，在令牌过期时间内直接拒绝.
+ * 访问Redis出错时使用本地限制器，1秒后再重试Redis.
+ * 脚本使用EVALSHA执行，Redis中没有脚本时使用EVAL；脚本使用Redis的TIME作为当前时间（各节点的时钟不需要同步），需要Redis 3.2及以上版本.
+ * 同时只有一个线程访问Redis（不加锁），其它线程在等待时间内等待预取完成，等待时间为0时直接拒绝；访问Redis的时间由Jedis的超时时间限制.
+ * JedisPool在启动时检查（见{@link RedisLimitClassAdvisor}）.
+ * </pre>
+ *
+ * @author lj
+ *
+ */
+@Slf4j
+final class RedisLimiter implements Limiter {
+
+	/**
+	 * 脚本的当前时间（毫秒）：调用TIME后需要按命令复制写操作
+	 */
+	private static final String NOW = "if redis.replicate_commands then redis.replicate_commands() end\n" //
+			+ "local time = redis.call('TIME')\n" //
+			+ "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n";
+
+	/**
+	 * 令牌桶：KEYS[1]为桶，ARGV为每秒令牌数、桶容量、请求的令牌数，返回分配的令牌数
+	 */
+	static final String TOKEN_BUCKET = NOW //
+			+ "local rate = tonumber(ARGV[1])\n" //
+			+ "local capacity = tonumber(ARGV[2])\n" //
+			+ "local requested = tonumber(ARGV[3])\n" //
+			+ "local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')\n" //
+			+ "local tokens = tonumber(bucket[1])\n" //
+			+ "local ts = tonumber(bucket[2])\n" //
+			+ "if tokens == nil or ts == nil then tokens = capacity ts = now end\n" //
+			+ "tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate / 1000)\n" //
+			+ "local granted = math.min(requested, math.floor(tokens))\n" //
+			+ "redis.call('HMSET', KEYS[1], 'tokens', tostring(tokens - granted), 'ts', tostring(math.max(now, ts)))\n" //
+			+ "redis.call('PEXPIRE', KEYS[1], math.ceil(capacity * 1000 / rate) + 1000)\n" //
+			+ "return granted";
+
+	/**
+	 * 滑动窗口：KEYS[1]为子窗口序号与次数的hash，ARGV为窗口内的最大次数、窗口长度（毫秒）、子窗口数、请求的次数，返回分配的次数
+	 */
+	static final String SLIDING_WINDOW = NOW //
+			+ "local limit = tonumber(ARGV[1])\n" //
+			+ "local window = tonumber(ARGV[2])\n" //
+			+ "local buckets = tonumber(ARGV[3])\n" //
+			+ "local requested = tonumber(ARGV[4])\n" //
+			+ "local current = math.floor(now * buckets / window)\n" //
+			+ "local fields = redis.call('HGETALL', KEYS[1])\n" //
+			+ "local used = 0\n" //
+			+ "for i = 1, #fields, 2 do\n" //
+			+ "  if tonumber(fields[i]) <= current - buckets then redis.call('HDEL', KEYS[1], fields[i])\n" //
+			+ "  else used = used + tonumber(fields[i + 1]) end\n" //
+			+ "end\n" //
+			+ "local granted = math.max(0, math.min(requested, limit - used))\n" //
+			+ "if granted > 0 then redis.call('HINCRBY', KEYS[1], tostring(current), granted) end\n" //
+			+ "redis.call('PEXPIRE', KEYS[1], window + math.ceil(window / buckets))\n" //
+			+ "return granted";
+
+	/**
+	 * Redis不可用时重试的间隔
+	 */
+	private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * 其它线程访问Redis时每次等待的时间
+	 */
+	private static final long FETCH_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final String key;
+
+	private final String script;
+
+	private final String sha;
+
+	private final List<String> params;
+
+	private final int batch;
+
+	private final long ttlNanos;
+
+	private final Supplier<Jedis> jedis;
+
+	private final Limiter fallback;
+
+	/**
+	 * 预取的本地令牌数
+	 */
+	private final AtomicLong tokens = new AtomicLong();
+
+	/**
+	 * 是否有线程正在访问Redis
+	 */
+	private final AtomicBoolean fetching = new AtomicBoolean();
+
+	/**
+	 * 本地令牌的过期时间（System.nanoTime()）
+	 */
+	private volatile long expireAt = System.nanoTime();
+
+	/**
+	 * Redis中没有令牌时，在此时间前直接拒绝
+	 */
+	private volatile long emptyUntil = System.nanoTime();
+
+	private volatile boolean unavailable;
+
+	/**
+	 * Redis不可用时下次重试的时间
+	 */
+	private volatile long retryAt;
+
+	/**
+	 * 构造
+	 *
+	 * @param key
+	 *            Redis中的键
+	 * @param script
+	 *            Lua脚本（{@link #TOKEN_BUCKET}或{@link #SLIDING_WINDOW}）
+	 * @param params
+	 *            脚本参数（不包括最后的请求的令牌数）
+	 * @param batch
+	 *            每次预取的令牌数
+	 * @param ttlNanos
+	 *            预取的令牌的有效时间（纳秒）
+	 * @param jedis
+	 *            Jedis的获取（使用后关闭）
+	 * @param fallback
+	 *            Redis不可用时的本地限制器
+	 */
+	RedisLimiter(String key, String script, List<String> params, int batch, long ttlNanos, Supplier<Jedis> jedis,
+			Limiter fallback) {
+		this.key = key;
+		this.script = script;
+		this.sha = sha1(script);
+		this.params = params;
+		this.batch = Math.max(batch, 1);
+		this.ttlNanos = Math.max(ttlNanos, TimeUnit.MILLISECONDS.toNanos(1));
+		this.jedis = jedis;
+		this.fallback = fallback;
+	}
+
+	/**
+	 * 创建使用默认JedisPool（见{@link JedisInjecter}）的限制器（JedisPool已在启动时检查）
+	 *
+	 * @param applicationContext
+	 *            Spring容器
+	 * @param key
+	 *            Redis中的键
+	 * @param script
+	 *            Lua脚本
+	 * @param params
+	 *            脚本参数
+	 * @param batch
+	 *            每次预取的令牌数
+	 * @param ttlNanos
+	 *            预取的令牌的有效时间（纳秒）
+	 * @param fallback
+	 *            Redis不可用时的本地限制器
+	 * @return 限制器
+	 */
+	static Limiter create(ApplicationContext applicationContext, String key, String script, List<String> params,
+			int batch, long ttlNanos, Limiter fallback) {
+		JedisInjecter injecter = applicationContext.getBean(JedisInjecter.class);
+		Assert.isTrue(injecter.containsBean(), "JedisPool is required for redis limiter " + key);
+		return new RedisLimiter(key, script, params, batch, ttlNanos, injecter::getBean, fallback);
+	}
+
+	/**
+	 * 每次预取的令牌数
+	 *
+	 * @param prefetch
+	 *            注解指定的预取数
+	 * @param limit
+	 *            限制数
+	 * @return 注解未指定时为限制数的1/50（至少为1）
+	 */
+	static int batch(int prefetch, int limit) {
+		return prefetch > 0 ? prefetch : Math.max(limit / 50, 1);
+	}
+
+	@Override
+	public boolean tryAcquire(long timeout, TimeUnit unit) {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (;;) {
+			long now = System.nanoTime();
+			if (unavailable && now - retryAt < 0) {
+				return fallback.tryAcquire(Math.max(deadline - now, 0), TimeUnit.NANOSECONDS);
+			} else if (take(now)) {
+				return true;
+			}
+			long wait;
+			if (fetching.compareAndSet(false, true)) {
+				try {
+					if (fetch(now)) {
+						return true;
+					}
+				} finally {
+					fetching.set(false);
+				}
+				if (unavailable) {
+					continue;
+				}
+				wait = Math.min(deadline - System.nanoTime(), ttlNanos);
+			} else {// 其它线程正在访问Redis
+				wait = Math.min(deadline - System.nanoTime(), FETCH_WAIT_NANOS);
+			}
+			if (wait <= 0) {
+				return false;
+			}
+			LockSupport.parkNanos(wait);
+		}
+	}
+
+	/**
+	 * 使用一个本地令牌
+	 */
+	private boolean take(long now) {
+		if (now - expireAt >= 0) {
+			return false;
+		}
+		for (;;) {
+			long n = tokens.get();
+			if (n <= 0) {
+				return false;
+			} else if (tokens.compareAndSet(n, n - 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * 从Redis预取令牌（只在取得fetching的线程中调用）
+	 */
+	private boolean fetch(long now) {
+		if (take(now)) {
+			return true;
+		} else if (now - emptyUntil < 0) {
+			return false;
+		}
+		long granted;
+		try {
+			granted = eval();
+		} catch (JedisException e) {
+			if (!unavailable) {
+				log.warn("Redis limiter " + key + " unavailable, use local limiter", e);
+			}
+			unavailable = true;
+			retryAt = now + RETRY_NANOS;
+			return false;
+		}
+		if (unavailable) {
+			log.info("Redis limiter {} recovered", key);
+			unavailable = false;
+		}
+		if (granted <= 0) {
+			emptyUntil = now + ttlNanos;
+			return false;
+		}
+		tokens.set(granted - 1);
+		expireAt = now + ttlNanos;
+		return true;
+	}
+
+	private long eval() {
+		List<String> keys = Collections.singletonList(key);
+		List<String> args = new ArrayList<>(params.size() + 1);
+		args.addAll(params);
+		args.add(String.valueOf(batch));
+		Object rs;
+		try (Jedis conn = jedis.get()) {
+			try {
+				rs = conn.evalsha(sha, keys, args);
+			} catch (JedisDataException e) {
+				if (e.getMessage() == null || !e.getMessage().startsWith("NOSCRIPT")) {
+					throw e;
+				}
+				rs = conn.eval(script, keys, args);
+			}
+		}
+		return rs instanceof Number ? ((Number) rs).longValue() : 0;
+	}
+
+	static String sha1(String script) {
+		try {
+			StringBuilder rs = new StringBuilder(40);
+			for (byte b : MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8))) {
+				rs.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return rs.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+package org.prototype.business.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 滑动时间窗口计数. <br>
+ *
+ * <pre>
+ * 时间窗口分为多个子窗口，环形数组的每个元素对应一个子窗口，高32位为子窗口的序号、低32位为子窗口内的次数，由CAS更新；
+ * 元素中的序号不在当前时间窗口内时视为过期（计数为0），由下一次使用该元素的请求重置.
+ * 请求先在当前子窗口计数，再统计整个窗口的次数，超出限制时撤销计数并拒绝，因此不会超出限制.
+ * </pre>
+ *
+ * @author lj
+ *
+ */
+final class SlidingWindowCounter {
+
+	/**
+	 * 默认的子窗口数
+	 */
+	static final int BUCKETS = 10;
+
+	private final int limit;
+
+	private final long bucketNanos;
+
+	private final int buckets;
+
+	private final AtomicLongArray slots;
+
+	/**
+	 * 构造
+	 *
+	 * @param limit
+	 *            时间窗口内的最大次数
+	 * @param duration
+	 *            时间窗口长度
+	 * @param unit
+	 *            时间单位
+	 */
+	SlidingWindowCounter(int limit, long duration, TimeUnit unit) {
+		long window = Math.max(unit.toNanos(duration), 1);
+		this.limit = limit;
+		this.buckets = (int) Math.min(BUCKETS, window);
+		this.bucketNanos = window / buckets;
+		this.slots = new AtomicLongArray(buckets);
+	}
+
+	/**
+	 * 请求一次
+	 *
+	 * @return 是否在限制内
+	 */
+	boolean tryAcquire() {
+		return tryAcquire(System.nanoTime());
+	}
+
+	boolean tryAcquire(long nanos) {
+		long epoch = Math.floorDiv(nanos, bucketNanos);
+		int slot = (int) Math.floorMod(epoch, (long) buckets);
+		if (count(epoch) >= limit) {
+			return false;
+		}
+		long value;
+		long update;
+		do {
+			value = slots.get(slot);
+			int stored = (int) (value >>> 32);
+			if (stored == (int) epoch) {
+				update = value + 1;
+			} else if (stored - (int) epoch > 0) {// 其它线程已进入更新的子窗口
+				return tryAcquire(System.nanoTime());
+			} else {
+				update = ((long) (int) epoch << 32) | 1;
+			}
+		} while (!slots.compareAndSet(slot, value, update));
+		if (count(epoch) <= limit) {
+			return true;
+		}
+		release(slot, epoch);
+		return false;
+	}
+
+	/**
+	 * 撤销一次计数（子窗口已重置时不需要撤销）
+	 */
+	private void release(int slot, long epoch) {
+		long value;
+		do {
+			value = slots.get(slot);
+			if ((int) (value >>> 32) != (int) epoch || (int) value == 0) {
+				return;
+			}
+		} while (!slots.compareAndSet(slot, value, value - 1));
+	}
+
+	/**
+	 * 时间窗口内的次数
+	 *
+	 * @param epoch
+	 *            当前子窗口的序号
+	 * @return 次数
+	 */
+	private long count(long epoch) {
+		long rs = 0;
+		for (int i = 0; i < buckets; i++) {
+			long value = slots.get(i);
+			int age = (int) epoch - (int) (value >>> 32);
+			if (age >= 0 && age < buckets) {
+				rs += value & 0xffffffffL;
+			}
+		}
+		return rs;
+	}
+
+	/**
+	 * 当前时间窗口内的次数
+	 *
+	 * @return 次数
+	 */
+	long count() {
+		return count(Math.floorDiv(System.nanoTime(), bucketNanos));
+	}
+
+}
@@ -11,16 +11,7 @@ import org.prototype.business.Executor;
 
 /**
  * 时间窗口内调用次数限制。 <br>
- * 
- * <pre>
- * 使用此注解需要加入guava依赖： 
-	maven: 
-	&lt;dependency&gt;
-		&lt;groupId&gt;com.google.guava&lt;/groupId&gt;
-		&lt;artifactId&gt;guava&lt;/artifactId&gt;
-	&lt;/dependency&gt;
- * </pre>
- * 注意，此次数可能会有少量误差
+ * 任意连续的duration时间内调用次数不超过value（滑动窗口，每次滑动窗口长度的十分之一）
  * @author flyxxxxx@163.com
  *
  */
@@ -48,4 +39,39 @@ public @interface TimeWindowLimit {
 	 * @return 时间单位
 	 */
 	TimeUnit unit() default TimeUnit.SECONDS;
+
+	/**
+	 * Redis中的键，不为空时在所有节点间共享限制（需要JedisPool，Redis不可用时使用本地限制），默认只限制当前节点
+	 * 
+	 * @return Redis中的键
+	 */
+	String redis() default "";
+
+	/**
+	 * 使用Redis时每次预取的令牌数，默认0为value的1/50（至少为1）
+	 * 
+	 * @return 预取的令牌数
+	 */
+	int prefetch() default 0;
+
+	/**
+	 * 按键分别限制时键的表达式（如userId为输入参数的属性，&#064;CurrentUser.id为注入参数的属性），默认不区分
+	 * 
+	 * @return 键的表达式
+	 */
+	String key() default "";
+
+	/**
+	 * 按键分别限制时键的最大数量（超出时删除最久未访问的）
+	 * 
+	 * @return 键的最大数量
+	 */
+	int maxKeys() default 10000;
+
+	/**
+	 * 按键分别限制时键未访问的过期时间（秒）
+	 * 
+	 * @return 过期时间
+	 */
+	int keyExpire() default 600;
 }
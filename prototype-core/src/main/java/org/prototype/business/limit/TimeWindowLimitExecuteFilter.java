@@ -1,63 +1,58 @@
 package org.prototype.business.limit;
 
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Arrays;
+
+import javax.annotation.Resource;
 
 import org.prototype.business.ExecuteFilter;
+import org.springframework.context.ApplicationContext;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-
-import lombok.extern.slf4j.Slf4j;
-
 /**
  * 时间窗口限制实现. <br>
+ * 按注解的duration及unit使用滑动时间窗口计数（见{@link SlidingWindowCounter}）；
+ * 注解指定了redis时在Redis中计数（见{@link RedisLimiter}），预取的次数在一个子窗口内有效.
  * 
  * @author flyxxxxx@163.com
  *
  */
 @Component
 @Order(ExecuteFilter.REQUEST)
-@Slf4j
-public class TimeWindowLimitExecuteFilter
-		extends AbstractLimitExecuteFilter<TimeWindowLimit, LoadingCache<Long, AtomicInteger>> {
+public class TimeWindowLimitExecuteFilter extends AbstractLimitExecuteFilter<TimeWindowLimit, Limiter> {
+
+	@Resource
+	private ApplicationContext applicationContext;
 
 	@Override
-	protected boolean acquire(TimeWindowLimit limit, LoadingCache<Long, AtomicInteger> limiter) {
-		try {
-			AtomicInteger value = limiter.get(System.currentTimeMillis() / 1000);
-			if (value.get() < limit.value()) {
-				value.incrementAndGet();
-				return true;
-			}
-		} catch (ExecutionException e) {
-			log.warn("LoadingCache error", e);
-			return false;
-		}
-		return false;
+	protected boolean acquire(TimeWindowLimit limit, Limiter limiter) {
+		return limiter.tryAcquire(0, limit.unit());
 	}
 
 	@Override
-	protected void countdown(LoadingCache<Long, AtomicInteger> limiter) {
+	protected void countdown(Limiter limiter) {
 		// do nothing
 	}
 
 	@Override
-	protected LoadingCache<Long, AtomicInteger> createLimiter(TimeWindowLimit limit) {
-		return CacheBuilder.newBuilder().expireAfterAccess(limit.duration(), limit.unit())
-				.build(new AtomicIntegerCacheLoader());
+	protected Limiter createLimiter(TimeWindowLimit limit) {
+		return createLimiter(limit, null);
 	}
 
-	private static class AtomicIntegerCacheLoader extends CacheLoader<Long, AtomicInteger> {
-
-		@Override
-		public AtomicInteger load(Long key) throws Exception {
-			return new AtomicInteger(0);
+	@Override
+	protected Limiter createLimiter(TimeWindowLimit limit, Object key) {
+		SlidingWindowCounter counter = new SlidingWindowCounter(limit.value(), limit.duration(), limit.unit());
+		Limiter local = (timeout, unit) -> counter.tryAcquire();
+		if (limit.redis().isEmpty()) {
+			return local;
 		}
-
+		long window = Math.max(limit.unit().toMillis(limit.duration()), 1);
+		return RedisLimiter.create(applicationContext, key == null ? limit.redis() : limit.redis() + ":" + key,
+				RedisLimiter.SLIDING_WINDOW,
+				Arrays.asList(String.valueOf(limit.value()), String.valueOf(window),
+						String.valueOf(SlidingWindowCounter.BUCKETS)),
+				RedisLimiter.batch(limit.prefetch(), limit.value()), limit.unit().toNanos(limit.duration()) / SlidingWindowCounter.BUCKETS,
+				local);
 	}
 
 }
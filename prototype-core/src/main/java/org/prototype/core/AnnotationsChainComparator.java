@@ -78,7 +78,7 @@ public class AnnotationsChainComparator<T> implements Comparator<T> {
 		} else if (order2 == null) {
 			return -1;
 		}
-		return order1.value() - order2.value();
+		return Integer.compare(order1.value(), order2.value());
 	}
 
 	/**
@@ -43,6 +43,12 @@ public interface MethodChain {
 	 * @return 方法返回值类型的泛型
 	 */
 	Type getGenericReturnType();
+
+	/**
+	 * 获取方法参数类型的泛型
+	 * @return 方法参数类型的泛型
+	 */
+	Type[] getGenericParameterTypes();
 	
 	/**
 	 * 方法调用
@@ -75,5 +81,12 @@ public interface MethodChain {
 	 * @return 匹配的方法
 	 */
 	Method findOverloadMethod(String methodName,Class<?> parameterType);
+
+	/**
+	 * 标记方法链在本次方法调用结束后仍被引用（如异步线程、异常消息），使其不被回收复用
+	 */
+	default void retain() {
+		// 不复用的实现不需要处理
+	}
 	
 }
@@ -15,14 +15,23 @@
  */
 package org.prototype.core;
 
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 
 /**
- * 原型的状态
+ * 原型的状态. <br>
+ * 业务序号以long保存，只在需要时（如输出日志时的{@link #toString()}）生成字符串；
+ * 计时使用System.nanoTime()，墙上时间由启动时记录的时间基准换算. 
+ * 复制到异步线程的状态与原状态使用同一业务序号，并以span/parentSpan表示父子关系.
+ * 截止时间（见{@link #setDeadline(long, TimeUnit)}）随状态复制到异步线程，异步执行、并发方法、Hystrix命令及SQL据此限制剩余的执行时间.
  * 
  * @author flyxxxxx@163.com
  *
@@ -32,7 +41,21 @@ public class PrototypeStatus implements Cloneable {
 	private static final ThreadLocal<PrototypeStatus> current = new ThreadLocal<>();
 
 	private static final AtomicLong SEQ = new AtomicLong();
-	
+
+	/**
+	 * 每个线程可复用的空闲状态（复用模式下使用）
+	 */
+	private static final ThreadLocal<PrototypeStatus> spare = new ThreadLocal<>();
+
+	/**
+	 * 墙上时间基准（毫秒）
+	 */
+	private static final long ANCHOR_MILLIS = System.currentTimeMillis();
+
+	/**
+	 * 与墙上时间基准对应的System.nanoTime()
+	 */
+	private static final long ANCHOR_NANOS = System.nanoTime();
 
 	@Getter
 	@Setter
@@ -46,18 +69,173 @@ public class PrototypeStatus implements Cloneable {
 	@Setter
 	private Object result;
 
+	/**
+	 * 开始时间（System.nanoTime()）
+	 */
 	@Getter
-	private long startTime;
+	private long startNanos;
+
+	/**
+	 * 结束时间（System.nanoTime()），未结束时为0
+	 */
+	private long endNanos;
+
+	/**
+	 * 截止时间（System.nanoTime()），没有截止时间时为0
+	 */
+	private long deadlineNanos;
 
 	/**
 	 * 唯一业务序号
 	 */
 	@Getter
+	private long seq;
+
+	/**
+	 * 当前状态的序号（业务主线程中与业务序号相同，复制到异步线程时重新生成）
+	 */
+	@Getter
+	private long span;
+
+	/**
+	 * 父状态的序号（业务主线程中为0）
+	 */
+	@Getter
+	private long parentSpan;
+
+	/**
+	 * 业务序号的字符串形式（首次获取时生成）
+	 */
 	private String id;
 
+	/**
+	 * 是否在业务结束后仍被引用（不可复用）
+	 */
+	private boolean retained;
+
 	public PrototypeStatus() {
-		startTime = System.currentTimeMillis();
-		id=Long.toString(SEQ.incrementAndGet());
+		startNanos = System.nanoTime();
+		seq = SEQ.incrementAndGet();
+		span = seq;
+	}
+
+	/**
+	 * 获取开始时间（毫秒）
+	 * 
+	 * @return 开始时间
+	 */
+	public long getStartTime() {
+		return ANCHOR_MILLIS + TimeUnit.NANOSECONDS.toMillis(startNanos - ANCHOR_NANOS);
+	}
+
+	/**
+	 * 获取用时（纳秒），未结束时为到当前的用时
+	 * 
+	 * @return 用时
+	 */
+	public long getElapsedNanos() {
+		return (endNanos == 0 ? System.nanoTime() : endNanos) - startNanos;
+	}
+
+	/**
+	 * 设定截止时间（距当前的时间）. <br>
+	 * 已有更早的截止时间时不变，即截止时间只会提前
+	 * 
+	 * @param timeout
+	 *            距当前的时间
+	 * @param unit
+	 *            时间单位
+	 */
+	public void setDeadline(long timeout, TimeUnit unit) {
+		long deadline = System.nanoTime() + Math.max(unit.toNanos(timeout), 0);
+		if (deadline == 0) {
+			deadline = 1;
+		}
+		if (deadlineNanos == 0 || deadline - deadlineNanos < 0) {
+			deadlineNanos = deadline;
+		}
+	}
+
+	/**
+	 * 是否有截止时间
+	 * 
+	 * @return 有截止时间返回true
+	 */
+	public boolean hasDeadline() {
+		return deadlineNanos != 0;
+	}
+
+	/**
+	 * 获取到截止时间的剩余时间（纳秒）
+	 * 
+	 * @return 剩余时间，已超过截止时间时不大于0，没有截止时间时为Long.MAX_VALUE
+	 */
+	public long getRemainingNanos() {
+		return deadlineNanos == 0 ? Long.MAX_VALUE : deadlineNanos - System.nanoTime();
+	}
+
+	/**
+	 * 是否已超过截止时间
+	 * 
+	 * @return 超过返回true
+	 */
+	public boolean isExpired() {
+		return getRemainingNanos() <= 0;
+	}
+
+	/**
+	 * 获取唯一业务序号
+	 * 
+	 * @return 唯一业务序号
+	 */
+	public String getId() {
+		if (id == null) {
+			id = Long.toString(seq);
+		}
+		return id;
+	}
+
+	/**
+	 * 获取一个原型状态，优先使用当前线程回收的状态
+	 * 
+	 * @return 原型状态
+	 */
+	public static PrototypeStatus obtain() {
+		PrototypeStatus rs = spare.get();
+		if (rs == null) {
+			return new PrototypeStatus();
+		}
+		spare.set(null);
+		rs.retained = false;
+		rs.id = null;
+		rs.seq = SEQ.incrementAndGet();
+		rs.span = rs.seq;
+		rs.parentSpan = 0;
+		rs.endNanos = 0;
+		rs.deadlineNanos = 0;
+		rs.startNanos = System.nanoTime();
+		return rs;
+	}
+
+	/**
+	 * 回收状态供当前线程下次{@link #obtain()}使用. <br>
+	 * 只回收本类的实例（子类可能持有请求等外部资源），被{@link #retain()}标记过的不回收.
+	 * 回收前清除业务对象、结果及事务，空闲时不持有其引用.
+	 */
+	public void recycle() {
+		if (!retained && getClass() == PrototypeStatus.class) {
+			transaction = null;
+			target = null;
+			result = null;
+			spare.set(this);
+		}
+	}
+
+	/**
+	 * 标记状态在业务结束后仍被引用（如异常消息），使其不被回收
+	 */
+	public void retain() {
+		retained = true;
 	}
 
 	/**
@@ -66,9 +244,18 @@ public class PrototypeStatus implements Cloneable {
 	 * @return 当前实例本身
 	 */
 	public PrototypeStatus end() {
+		endNanos = System.nanoTime();
 		current.set(null);
 		return this;
 	}
+
+	/**
+	 * 日志输出：业务序号，异步线程中为"业务序号/span"
+	 */
+	@Override
+	public String toString() {
+		return parentSpan == 0 ? getId() : getId() + "/" + span;
+	}
 	
 	/**
 	 * 获取Locale
@@ -113,7 +300,7 @@ public class PrototypeStatus implements Cloneable {
 
 	/**
 	 * 复制到异步线程中使用. <br>
-	 * 此方法清理事务状态. 有其它类似数据需要子类继承.
+	 * 此方法清理事务状态，保留截止时间. 有其它类似数据需要子类继承.
 	 * 此方法需要在当前线程中复制，然后在异步线程中{@link #setStatus(PrototypeStatus)}设置
 	 * 
 	 * @return 复制的数据
@@ -123,7 +310,11 @@ public class PrototypeStatus implements Cloneable {
 		try {
 			rs = (PrototypeStatus) clone();
 			rs.transaction = null;
-			rs.startTime=System.currentTimeMillis();
+			rs.retained = false;
+			rs.parentSpan = span;
+			rs.span = SEQ.incrementAndGet();
+			rs.endNanos = 0;
+			rs.startNanos = System.nanoTime();
 			return rs;
 		} catch (CloneNotSupportedException e) {
 			throw new RuntimeException("Clone error", e);
@@ -131,12 +322,14 @@ public class PrototypeStatus implements Cloneable {
 	}
 
 	/**
-	 * 事务状态
+	 * 事务状态. <br>
+	 * 可保存事务中使用的资源（如预处理语句缓存），事务结束时由{@link #close()}关闭.
 	 * 
 	 * @author flyxxxxx@163.com
 	 *
 	 */
 	@Getter@Setter
+	@Slf4j
 	public static class TransactionStatus {
 		/**
 		 * 只读
@@ -147,5 +340,71 @@ public class PrototypeStatus implements Cloneable {
 		 * 数据分区
 		 */
 		private String partion;
+
+		/**
+		 * 事务中的资源
+		 */
+		@Getter(AccessLevel.NONE)
+		@Setter(AccessLevel.NONE)
+		private Map<Object, AutoCloseable> resources;
+
+		/**
+		 * 获取事务中的资源
+		 * 
+		 * @param <T>
+		 *            资源类型
+		 * @param key
+		 *            键
+		 * @return 资源，不存在时为null
+		 */
+		@SuppressWarnings("unchecked")
+		public <T extends AutoCloseable> T getResource(Object key) {
+			return resources == null ? null : (T) resources.get(key);
+		}
+
+		/**
+		 * 保存事务中的资源，事务结束时关闭
+		 * 
+		 * @param key
+		 *            键
+		 * @param resource
+		 *            资源
+		 */
+		public void putResource(Object key, AutoCloseable resource) {
+			if (resources == null) {
+				resources = new LinkedHashMap<>();
+			}
+			resources.put(key, resource);
+		}
+
+		/**
+		 * 移除事务中的资源（资源已关闭时）
+		 * 
+		 * @param key
+		 *            键
+		 */
+		public void removeResource(Object key) {
+			if (resources != null) {
+				resources.remove(key);
+			}
+		}
+
+		/**
+		 * 关闭事务中的所有资源
+		 */
+		public void close() {
+			Map<Object, AutoCloseable> map = resources;
+			if (map == null) {
+				return;
+			}
+			resources = null;// 关闭资源时可能移除自身
+			for (AutoCloseable resource : map.values()) {
+				try {
+					resource.close();
+				} catch (Exception e) {
+					log.warn("Close transaction resource error", e);
+				}
+			}
+		}
 	}
 }
@@ -50,12 +50,24 @@ public class ConnectionInjecter implements BeanInjecter<Connection> {
 
 	@Override
 	public Connection getBean() {
-		return DataSourceUtils.getConnection(applicationContext.getBean(DataSource.class));
+		return DataSourceUtils.getConnection(getDataSource(null));
 	}
 
 	@Override
 	public Connection getBean(String beanName) {
-		return DataSourceUtils.getConnection((DataSource) applicationContext.getBean(beanName));
+		return DataSourceUtils.getConnection(getDataSource(beanName));
+	}
+
+	/**
+	 * 获取注入的连接所属的数据源
+	 * 
+	 * @param beanName
+	 *            数据源的bean名称（参数的Qualifier注解），为null时为唯一或有Primary注解的数据源
+	 * @return 数据源（没有唯一的数据源时为null）
+	 */
+	public DataSource getDataSource(String beanName) {
+		return beanName == null ? applicationContext.getBean(ComponentContainer.class).getComponent(DataSource.class)
+				: (DataSource) applicationContext.getBean(beanName);
 	}
 
 	@Override
@@ -12,9 +12,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 
+import org.prototype.PrototypeConfig;
 import org.prototype.core.AnnotationsChainComparator;
 import org.prototype.core.ClassAdvisor;
 import org.prototype.core.ClassFactory;
@@ -30,7 +32,6 @@ import org.prototype.core.Prototype;
 import org.prototype.core.PrototypeStatus;
 import org.prototype.inject.InjectHelper;
 import org.prototype.reflect.AnnotationUtils;
-import org.prototype.reflect.MethodUtils;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
@@ -54,7 +55,7 @@ import rx.functions.Func1;
 @Component
 public class ClassScanerImpl implements ClassScaner, BeanFactoryAware {
 
-	private static final String POSTFIX = "$Impl";
+	static final String POSTFIX = "$Impl";
 
 	@Getter
 	private ClassFactoryImpl factory;
@@ -67,6 +68,14 @@ public class ClassScanerImpl implements ClassScaner, BeanFactoryAware {
 
 	private static List<Object> beans = new ArrayList<>();
 
+	/**
+	 * 是否复用方法链及原型状态
+	 */
+	private static boolean pooled;
+
+	@Resource
+	private PrototypeConfig config;
+
 	static int addBean(Object bean) {
 		synchronized (beans) {
 			int rs = beans.indexOf(bean);
@@ -83,6 +92,11 @@ public class ClassScanerImpl implements ClassScaner, BeanFactoryAware {
 		return factory;
 	}
 
+	@PostConstruct
+	void init() {
+		pooled = config.isPooled();
+	}
+
 	@PreDestroy
 	void destroy() {
 		beans.clear();
@@ -91,52 +105,50 @@ public class ClassScanerImpl implements ClassScaner, BeanFactoryAware {
 	/**
 	 * 用于执行经过方法适配的方法
 	 * 
-	 * @param filterIndex
-	 *            方法过滤链的索引
+	 * @param siteIndex
+	 *            方法调用点的索引
 	 * @param debug
 	 *            是否开启debug
 	 * @param type
-	 *            对象类型
+	 *            声明方法的类
 	 * @param target
 	 *            目标对象
-	 * @param methodName
-	 *            目标对象的方法
-	 * @param parameterTypes
-	 *            方法的参数类型
 	 * @param args
 	 *            方法的参数值
 	 * @return 方法执行结果
 	 */
-	@SuppressWarnings("unchecked")
-	public static Object execute(int filterIndex, boolean debug, Class<?> type, Object target, String methodName,
-			Class<?>[] parameterTypes, Object[] args) {
-		Method method = MethodUtils.findMethod(type, methodName, parameterTypes);
-		Method implMethod = MethodUtils.findMethod(type, methodName + POSTFIX, parameterTypes);
-		MethodChainImpl chainImpl = new MethodChainImpl(target, method, implMethod,
-				(List<MethodFilter<?>>) beans.get(filterIndex));
-		if (debug) {
-			long nano = System.nanoTime();
-			try {
-				return executeInner(method, implMethod, chainImpl, target, args);
-			} finally {
-				log.debug("Execute method '{}' , method chain is {} , user {} nanoseconds", method, chainImpl,
-						System.nanoTime() - nano);
+	public static Object execute(int siteIndex, boolean debug, Class<?> type, Object target, Object[] args) {
+		MethodCallSite site = (MethodCallSite) beans.get(siteIndex);
+		site.resolve(type);
+		MethodChainImpl chainImpl = pooled ? MethodChainImpl.acquire(target, site) : new MethodChainImpl(target, site);
+		try {
+			if (debug) {
+				long nano = System.nanoTime();
+				try {
+					return executeInner(site.getMethod(), chainImpl, args);
+				} finally {
+					log.debug("Execute method '{}' , method chain is {} , user {} nanoseconds", site.getMethod(),
+							chainImpl, System.nanoTime() - nano);
+				}
+			} else {
+				return executeInner(site.getMethod(), chainImpl, args);
+			}
+		} finally {
+			if (pooled) {
+				chainImpl.release();
 			}
-		} else {
-			return executeInner(method, implMethod, chainImpl, target, args);
 		}
 	}
 
-	private static Object executeInner(Method method, Method implMethod, MethodChainImpl chainImpl, Object target,
-			Object[] args) {
+	private static Object executeInner(Method method, MethodChainImpl chainImpl, Object[] args) {
 		PrototypeStatus status = PrototypeStatus.getStatus();
 		boolean create = status == null;
 		if (create) {
-			status = new PrototypeStatus();
+			status = pooled ? PrototypeStatus.obtain() : new PrototypeStatus();
 			PrototypeStatus.setStatus(status);
 		}
 		try {
-			log.debug("Business {} , Execute method '{}' , method chain is {}",status.getId(), method, chainImpl);
+			log.debug("Business {} , Execute method '{}' , method chain is {}",status, method, chainImpl);
 			return chainImpl.doFilter(args);
 		} catch (InvocationTargetException e) {
 			Throwable throwable = e.getTargetException();
@@ -147,6 +159,9 @@ public class ClassScanerImpl implements ClassScaner, BeanFactoryAware {
 		} finally {
 			if (create) {
 				PrototypeStatus.setStatus(null);
+				if (pooled) {
+					status.recycle();
+				}
 			}
 		}
 	}
@@ -330,7 +345,10 @@ public class ClassScanerImpl implements ClassScaner, BeanFactoryAware {
 				String body = null;
 				try {
 					CtMethod newMethod = CtNewMethod.copy(method, method.getDeclaringClass(), null);
-					body = CtMethodUtils.buildNewMethod(addBean(filters), debug, method);
+					MethodCallSite site = new MethodCallSite(filters, method.getName(),
+							CtMethodUtils.getParameterTypeNames(method));
+					body = CtMethodUtils.buildNewMethod(addBean(site), debug, method.getDeclaringClass().getName(),
+							method.getReturnType().getName());
 					method.setName(method.getName() + POSTFIX);
 					method.setModifiers(javassist.Modifier.PRIVATE);
 					newMethod.setBody(body);
@@ -230,8 +230,10 @@ class CtClassBuilder implements ClassBuilder {
 			Class<? extends Throwable>[] throwableTypes, MethodFilter<?>... filter) {
 		Assert.notNull(filter);
 		boolean debug = log.isDebugEnabled();
-		String code = CtMethodUtils.buildNewMethod(ClassScanerImpl.addBean(Arrays.asList(filter)), debug,
-				clazz.getName(), returnType.getName(), name, parameterTypes);
+		MethodCallSite site = new MethodCallSite(Arrays.asList(filter), name,
+				CtMethodUtils.getParameterTypeNames(parameterTypes == null ? new Class<?>[0] : parameterTypes));
+		String code = CtMethodUtils.buildNewMethod(ClassScanerImpl.addBean(site), debug, clazz.getName(),
+				returnType.getName());
 		return newMethod(modifiers, returnType, name, parameterTypes, throwableTypes, code);
 	}
 
@@ -47,13 +47,13 @@ class CtMethodBuilder implements MethodBuilder {
 	public CtMethodBuilder(ClassFactoryImpl factory, CtMethod method) {
 		this.factory = factory;
 		this.method = method;
-		ParameterAnnotationsAttribute attribute = (ParameterAnnotationsAttribute) method.getMethodInfo()
-				.getAttribute(ParameterAnnotationsAttribute.visibleTag);
+		ParameterAnnotationsAttribute attribute = (ParameterAnnotationsAttribute) method.getMethodInfo2()
+				.getAttribute(ParameterAnnotationsAttribute.visibleTag);// 只读（父类可能已加载）
 		try {
 			javassist.bytecode.annotation.Annotation[][] anns = attribute == null
 					? new javassist.bytecode.annotation.Annotation[method.getParameterTypes().length][0]
 					: attribute.getAnnotations();
-			parameterAnnotationsBuilder = new ParameterAnnotationsBuilderImpl(method.getMethodInfo().getConstPool(),
+			parameterAnnotationsBuilder = new ParameterAnnotationsBuilderImpl(method.getMethodInfo2().getConstPool(),
 					anns);
 		} catch (NotFoundException e) {
 			throw new RuntimeException("Class not found", e);
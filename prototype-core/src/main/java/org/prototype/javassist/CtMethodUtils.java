@@ -119,14 +119,20 @@ public class CtMethodUtils {
 		return true;
 	}
 
-	static String buildNewMethod(int advisorIndex, boolean debug,String fromClass, String returnType, String methodName,
-			Class<?>[] parameterTypes) {
-		return buildNewMethod(advisorIndex,debug, fromClass, returnType, methodName, buildParametersCode(parameterTypes));
-
-	}
-
-	private static String buildNewMethod(int advisorIndex,boolean debug, String fromClass, String returnType, String methodName,
-			String paramsCode) {
+	/**
+	 * 构造一个方法的代理方法代码
+	 * 
+	 * @param siteIndex
+	 *            方法调用点索引
+	 * @param debug
+	 *            是否开启debug
+	 * @param fromClass
+	 *            声明方法的类名
+	 * @param returnType
+	 *            返回值类型名
+	 * @return 新方法代码
+	 */
+	static String buildNewMethod(int siteIndex, boolean debug, String fromClass, String returnType) {
 		StringBuilder rs = new StringBuilder("{");
 		String typeName = getWrappedType(returnType);
 		if (!"void".equals(returnType)) {
@@ -136,36 +142,58 @@ public class CtMethodUtils {
 		}
 		rs.append(ClassScanerImpl.class.getName());
 		rs.append(".execute(");
-		rs.append(advisorIndex);
+		rs.append(siteIndex);
 		rs.append(",");
 		rs.append(debug);
 		rs.append(",");
 		rs.append(fromClass);
-		rs.append(".class,$0,\"");
-		rs.append(methodName);
-		rs.append("\",");
-		rs.append(paramsCode);
-		rs.append(",$args)");
+		rs.append(".class,$0,$args)");
 		rs.append(typeName == null ? "" : (")." + returnType + "Value()"));
 		rs.append(";}");
 		return rs.toString();
 	}
 
 	/**
-	 * 构造一个方法的代理方法代码
+	 * 获取方法的参数类型名（用于方法调用点解析方法）
 	 * 
-	 * @param contextIndex
-	 *            SpringContext上下文索引
 	 * @param method
-	 *            被调用的方法
-	 * @param advisor
-	 *            方法代理
-	 * @return 新方法
+	 *            javassist方法
+	 * @return 参数类型名
 	 * @throws NotFoundException
 	 */
-	static String buildNewMethod(int advisorIndex,boolean debug, CtMethod method) throws NotFoundException {
-		return buildNewMethod(advisorIndex,debug, method.getDeclaringClass().getName(), method.getReturnType().getName(),
-				method.getName(), buildParametersCode(method));
+	static String[] getParameterTypeNames(CtMethod method) throws NotFoundException {
+		CtClass[] types = method.getParameterTypes();
+		String[] rs = new String[types.length];
+		for (int i = 0; i < types.length; i++) {
+			rs[i] = buildTypeNameCode(types[i]);
+		}
+		return rs;
+	}
+
+	/**
+	 * 获取方法的参数类型名（用于方法调用点解析方法）
+	 * 
+	 * @param types
+	 *            参数类型
+	 * @return 参数类型名
+	 */
+	static String[] getParameterTypeNames(Class<?>[] types) {
+		String[] rs = new String[types.length];
+		for (int i = 0; i < types.length; i++) {
+			rs[i] = buildTypeNameCode(types[i]);
+		}
+		return rs;
+	}
+
+	/**
+	 * 获取类型名（数组以[]结尾，与javassist一致）
+	 * 
+	 * @param type
+	 *            类型
+	 * @return 类型名
+	 */
+	static String getTypeName(Class<?> type) {
+		return buildTypeNameCode(type);
 	}
 
 	/**
@@ -245,20 +273,6 @@ public class CtMethodUtils {
 		return rs.toString();
 	}
 
-	private static String buildParametersCode(Class<?>[] parameterTypes) {
-		if (parameterTypes.length == 0) {
-			return "new Class[0]";
-		}
-		StringBuilder rs = new StringBuilder("new Class[]{");
-		for (Class<?> cls : parameterTypes) {
-			rs.append(buildTypeNameCode(cls));
-			rs.append(".class,");
-		}
-		rs.deleteCharAt(rs.length() - 1);
-		rs.append("}");
-		return rs.toString();
-	}
-
 	/**
 	 * 构造类型名代码
 	 * 
@@ -319,7 +333,7 @@ public class CtMethodUtils {
 		case "float":
 			return Float.class.getName();
 		case "double":
-			return Float.class.getName();
+			return Double.class.getName();
 		default:
 			return null;
 		}
@@ -0,0 +1,159 @@
+package org.prototype.javassist;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import org.prototype.core.MethodFilter;
+
+/**
+ * 方法调用点. <br>
+ * 每个经过方法适配的方法对应一个调用点，在修改方法时创建，保存已排序的方法过滤器；
+ * 首次调用时解析一次方法及原方法（$Impl），并将原方法转换为直接调用的MethodHandle，之后的调用不再按方法名及参数类型查找.
+ *
+ * @author lj
+ *
+ */
+final class MethodCallSite {
+
+	private static final Object[] EMPTY_ARGS = new Object[0];
+
+	/**
+	 * 已排序的方法过滤器
+	 */
+	private final MethodFilter<?>[] filters;
+
+	/**
+	 * 方法名
+	 */
+	private final String methodName;
+
+	/**
+	 * 参数类型名（数组以[]结尾）
+	 */
+	private final String[] parameterTypes;
+
+	private volatile boolean resolved;
+
+	private Method method;
+
+	private Method implMethod;
+
+	/**
+	 * 原方法的直接调用，类型为(Object,Object[])Object
+	 */
+	private MethodHandle implHandle;
+
+	/**
+	 * 构造
+	 *
+	 * @param filters
+	 *            已排序的方法过滤器
+	 * @param methodName
+	 *            方法名
+	 * @param parameterTypes
+	 *            参数类型名
+	 */
+	@SuppressWarnings("rawtypes")
+	MethodCallSite(List<? extends MethodFilter> filters, String methodName, String[] parameterTypes) {
+		this.filters = filters.toArray(new MethodFilter<?>[filters.size()]);
+		this.methodName = methodName;
+		this.parameterTypes = parameterTypes;
+	}
+
+	/**
+	 * 解析方法（只在首次调用时执行）
+	 *
+	 * @param type
+	 *            声明方法的类
+	 */
+	void resolve(Class<?> type) {
+		if (resolved) {
+			return;
+		}
+		synchronized (this) {
+			if (resolved) {
+				return;
+			}
+			method = findDeclaredMethod(type, methodName);
+			if (method == null) {
+				throw new RuntimeException("Method '" + methodName + "' not found in " + type.getName());
+			}
+			implMethod = findDeclaredMethod(type, methodName + ClassScanerImpl.POSTFIX);
+			if (implMethod != null) {
+				implMethod.setAccessible(true);
+				try {
+					MethodHandle handle = MethodHandles.lookup().unreflect(implMethod);
+					implHandle = handle.asType(handle.type().generic()).asSpreader(Object[].class,
+							parameterTypes.length);
+				} catch (IllegalAccessException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			resolved = true;
+		}
+	}
+
+	private Method findDeclaredMethod(Class<?> type, String name) {
+		for (Method m : type.getDeclaredMethods()) {
+			if (m.getName().equals(name) && matches(m.getParameterTypes())) {
+				return m;
+			}
+		}
+		return null;
+	}
+
+	private boolean matches(Class<?>[] types) {
+		if (types.length != parameterTypes.length) {
+			return false;
+		}
+		for (int i = 0; i < types.length; i++) {
+			if (!parameterTypes[i].equals(CtMethodUtils.getTypeName(types[i]))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 调用原方法，异常包装为InvocationTargetException（与反射调用一致）
+	 *
+	 * @param target
+	 *            目标对象
+	 * @param args
+	 *            参数
+	 * @return 方法返回值
+	 * @throws InvocationTargetException
+	 *             原方法抛出的异常
+	 */
+	Object invokeImpl(Object target, Object[] args) throws InvocationTargetException {
+		if (implHandle == null) {
+			throw new UnsupportedOperationException();
+		}
+		Object[] params = args == null ? EMPTY_ARGS : args;
+		try {
+			return (Object) implHandle.invokeExact(target, params);
+		} catch (Throwable t) {
+			throw new InvocationTargetException(t);
+		}
+	}
+
+	int size() {
+		return filters.length;
+	}
+
+	MethodFilter<?> get(int index) {
+		return filters[index];
+	}
+
+	Method getMethod() {
+		return method;
+	}
+
+	Method getImplMethod() {
+		return implMethod;
+	}
+
+}
@@ -2,11 +2,11 @@ package org.prototype.javassist;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.prototype.core.MethodChain;
-import org.prototype.core.MethodFilter;
 import org.prototype.reflect.MethodUtils;
 import org.springframework.aop.support.AopUtils;
 
@@ -14,42 +14,93 @@ import lombok.Getter;
 
 /**
  * 方法调用链实现. <br>
+ * 复用模式下通过{@link #acquire(Object, MethodCallSite)}从当前线程的池中获取，调用结束后{@link #release()}回收.
  * @author lj
  *
  */
 class MethodChainImpl implements MethodChain{
+
+	/**
+	 * 每个线程最多缓存的方法链数量（嵌套调用的深度）
+	 */
+	private static final int POOL_SIZE = 16;
+
+	private static final ThreadLocal<ArrayDeque<MethodChainImpl>> pool = new ThreadLocal<ArrayDeque<MethodChainImpl>>() {
+		@Override
+		protected ArrayDeque<MethodChainImpl> initialValue() {
+			return new ArrayDeque<>(POOL_SIZE);
+		}
+	};
 	
-	private List<MethodFilter<?>> filters;
+	private MethodCallSite site;
 	
 	private int index;
 	
 	@Getter
 	private Object target;
-	
-	@Getter
-	private Method method;
-	
-	private Method implMethod;
 
 	private int max;
+
+	private boolean retained;
 	
-	public MethodChainImpl(Object target,Method method,Method implMethod,List<MethodFilter<?>>  filters) {
-		this.target=target;
-		this.method=method;
-		this.implMethod=implMethod;
-		this.filters=filters;
-		this.max=filters.size();
+	public MethodChainImpl(Object target,MethodCallSite site) {
+		reset(target, site);
+	}
+
+	/**
+	 * 从当前线程的池中获取方法链
+	 * @param target 目标对象
+	 * @param site 方法调用点
+	 * @return 方法链
+	 */
+	static MethodChainImpl acquire(Object target, MethodCallSite site) {
+		MethodChainImpl rs = pool.get().pollFirst();
+		if (rs == null) {
+			return new MethodChainImpl(target, site);
+		}
+		rs.reset(target, site);
+		return rs;
+	}
+
+	/**
+	 * 回收到当前线程的池中（被标记为仍被引用的不回收）
+	 */
+	void release() {
+		if (retained) {
+			return;
+		}
+		target = null;
+		site = null;
+		ArrayDeque<MethodChainImpl> queue = pool.get();
+		if (queue.size() < POOL_SIZE) {
+			queue.offerFirst(this);
+		}
+	}
+
+	private void reset(Object target, MethodCallSite site) {
+		this.target = target;
+		this.site = site;
+		this.max = site.size();
+		this.index = 0;
+		this.retained = false;
+	}
+
+	@Override
+	public void retain() {
+		retained = true;
+	}
+
+	@Override
+	public Method getMethod() {
+		return site.getMethod();
 	}
 
 	@Override
 	public Object doFilter(Object[] args) throws Exception {
 		if(index<max){
-			return filters.get(index++).doFilter(args, this);
-		}else if(implMethod!=null){
-			implMethod.setAccessible(true);
-			return implMethod.invoke(target, args);
+			return site.get(index++).doFilter(args, this);
 		}else{
-			throw new UnsupportedOperationException();
+			return site.invokeImpl(target, args);
 		}
 	}
 
@@ -71,15 +122,22 @@ class MethodChainImpl implements MethodChain{
 	@Override
 	public String toString(){
 		List<String> list=new ArrayList<>();
-		for(MethodFilter<?> filter:filters ){
-			list.add(AopUtils.getTargetClass(filter).getName());
+		for(int i=0;i<max;i++){
+			list.add(AopUtils.getTargetClass(site.get(i)).getName());
 		}
 		return list.toString();
 	}
 
 	@Override
 	public Type getGenericReturnType() {
-		return implMethod==null?method.getGenericReturnType():implMethod.getGenericReturnType();
+		Method implMethod=site.getImplMethod();
+		return implMethod==null?site.getMethod().getGenericReturnType():implMethod.getGenericReturnType();
+	}
+
+	@Override
+	public Type[] getGenericParameterTypes() {
+		Method implMethod=site.getImplMethod();
+		return implMethod==null?site.getMethod().getGenericParameterTypes():implMethod.getGenericParameterTypes();
 	}
 
 }
@@ -4,7 +4,7 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * 缓存工具
+ * 缓存工具（类的反射元数据由{@link ClassMetadata}与类关联保存，不使用本缓存）
  * @author lj
  *
  */
@@ -15,10 +15,7 @@ public class CacheUtils {
 	public static Cache getCache(Object key) {
 		Cache cache = caches.get(key);
 		if (cache == null) {
-			synchronized (key) {
-				cache = new Cache();
-				caches.put(key, cache);
-			}
+			cache = caches.computeIfAbsent(key, k -> new Cache());
 		}
 		return cache;
 	}
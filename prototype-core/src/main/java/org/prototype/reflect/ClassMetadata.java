@@ -0,0 +1,148 @@
+package org.prototype.reflect;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 类的反射元数据. <br>
+ *
+ * <pre>
+ * 以{@link ClassValue}与类关联（不需要字符串关键字，也不会因内存紧张被回收后重复反射）。
+ * 注意：元数据强引用了类本身（类型、方法及属性），而ClassValue的值保存在类中，按JDK的实现（见JDK-8136353）
+ * 这样的值会使类及其类加载器不能被卸载，因此不适用于频繁创建及丢弃类加载器（如热部署）的场景。
+ * 保存类的数据类型、属性表、ID属性、有指定注解的属性、方法表及重载方法的匹配结果，各部分在首次使用时创建.
+ * </pre>
+ *
+ * @author lj
+ *
+ */
+final class ClassMetadata {
+
+	private static final ClassValue<ClassMetadata> METADATA = new ClassValue<ClassMetadata>() {
+		@Override
+		protected ClassMetadata computeValue(Class<?> type) {
+			return new ClassMetadata(type);
+		}
+	};
+
+	/**
+	 * 缓存中表示未找到的值
+	 */
+	private static final Object NONE = new Object();
+
+	private static final Function<String, Map<Class<?>, Object>> NEW_MAP = k -> new ConcurrentHashMap<>();
+
+	private final Class<?> type;
+
+	private volatile String dataType;
+
+	private volatile Map<String, Property> properties;
+
+	private volatile Object idProperty;
+
+	private volatile Map<String, List<Method>> methods;
+
+	/**
+	 * 注解类型与有该注解的属性的映射
+	 */
+	private final Map<Class<? extends Annotation>, List<Property>> annotated = new ConcurrentHashMap<>();
+
+	/**
+	 * 方法名、参数类型与匹配的重载方法的映射
+	 */
+	private final Map<String, Map<Class<?>, Object>> overloads = new ConcurrentHashMap<>();
+
+	private ClassMetadata(Class<?> type) {
+		this.type = type;
+	}
+
+	/**
+	 * 获取类的元数据
+	 *
+	 * @param type
+	 *            类
+	 * @return 元数据
+	 */
+	static ClassMetadata of(Class<?> type) {
+		return METADATA.get(type);
+	}
+
+	String getDataType() {
+		String rs = dataType;
+		if (rs == null) {
+			rs = ClassUtils.getDataTypeInner(type);
+			dataType = rs;
+		}
+		return rs;
+	}
+
+	Map<String, Property> getProperties() {
+		Map<String, Property> rs = properties;
+		if (rs == null) {
+			synchronized (this) {
+				rs = properties;
+				if (rs == null) {
+					rs = ClassUtils.findProperties(type);
+					properties = rs;
+				}
+			}
+		}
+		return rs;
+	}
+
+	Property getIdProperty() {
+		Object rs = idProperty;
+		if (rs == null) {
+			rs = ClassUtils.findIdPropertyInner(type);
+			if (rs == null) {
+				rs = NONE;
+			}
+			idProperty = rs;
+		}
+		return rs == NONE ? null : (Property) rs;
+	}
+
+	List<Property> getProperties(Class<? extends Annotation> annotationClass) {
+		List<Property> rs = annotated.get(annotationClass);
+		if (rs == null) {
+			rs = ClassUtils.findPropertyInner(type, annotationClass);
+			annotated.put(annotationClass, rs);
+		}
+		return rs;
+	}
+
+	Map<String, List<Method>> getMethods() {
+		Map<String, List<Method>> rs = methods;
+		if (rs == null) {
+			synchronized (this) {
+				rs = methods;
+				if (rs == null) {
+					rs = MethodUtils.findAllMethods(type);
+					methods = rs;
+				}
+			}
+		}
+		return rs;
+	}
+
+	Method getOverloadMethod(String methodName, Class<?> parameterType) {
+		Map<Class<?>, Object> map = overloads.get(methodName);
+		if (map == null) {
+			map = overloads.computeIfAbsent(methodName, NEW_MAP);
+		}
+		Object rs = map.get(parameterType);
+		if (rs == null) {
+			rs = MethodUtils.findOverloadMethod1(type, methodName, parameterType);
+			if (rs == null) {
+				rs = NONE;
+			}
+			map.put(parameterType, rs);
+		}
+		return rs == NONE ? null : (Method) rs;
+	}
+
+}
@@ -4,7 +4,6 @@ import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
-import java.lang.ref.SoftReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
@@ -17,8 +16,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.prototype.reflect.CacheUtils.Cache;
-
 /**
  * 类反射工具
  * 
@@ -32,11 +29,6 @@ public class ClassUtils {
 	private static final List<Class<?>> WRAPPER_TYPES = Arrays.asList(Boolean.class, Byte.class, Short.class,
 			Character.class, Integer.class, Long.class, Float.class, Double.class);
 
-	private static final String PROPERTIES = ClassUtils.class.getName() + ".properties";
-	private static final String IDS = ClassUtils.class.getName() + ".ids";
-	private static final String TYPES = ClassUtils.class.getName() + ".types";
-	private static final String ANNOTATION_PROPS = ClassUtils.class.getName() + ".annotationprops";
-
 	/**
 	 * 除boolean和char之外的6种基本数据类型
 	 */
@@ -97,22 +89,18 @@ public class ClassUtils {
 	 * @param annotationClass 注解类
 	 * @return 有指定注解的属性
 	 */
-	@SuppressWarnings("unchecked")
 	public static List<Property> findProperty(Class<?> clazz,Class<? extends Annotation> annotationClass){
-		Cache cache=CacheUtils.getCache(ANNOTATION_PROPS);
-		String key=clazz.getName()+"_"+annotationClass.getName();
-		List<Property> list=cache.get(key,List.class);
-		if(list!=null){
-			return list;
-		}
-		list=new ArrayList<>();
+		return ClassMetadata.of(clazz).getProperties(annotationClass);
+	}
+
+	static List<Property> findPropertyInner(Class<?> clazz,Class<? extends Annotation> annotationClass){
+		List<Property> list=new ArrayList<>();
 		for(Property property:properties(clazz).values()){
 			if(property.getField()!=null&&property.getField().getAnnotation(annotationClass)!=null){
 				list.add(property);
 			}
 		}
-		cache.put(key, list);
-		return list;
+		return Collections.unmodifiableList(list);
 	}
 	
 	/**
@@ -148,17 +136,10 @@ public class ClassUtils {
 	 * @return 数据类型
 	 */
 	public static String getDataType(Class<?> type) {
-		Cache cache = CacheUtils.getCache(TYPES);
-		String rs = cache.get(type, String.class);
-		if (rs != null) {
-			return rs;
-		}
-		rs = getDataTypeInner(type);
-		cache.put(type, rs);
-		return rs;
+		return ClassMetadata.of(type).getDataType();
 	}
 
-	private static String getDataTypeInner(Class<?> type) {
+	static String getDataTypeInner(Class<?> type) {
 		if (String.class.equals(type)) {
 			return STRING;
 		} else if (boolean.class == type || Boolean.class.isAssignableFrom(type)) {
@@ -199,20 +180,8 @@ public class ClassUtils {
 	 *            指定的类型
 	 * @return 属性名与属性的映射
 	 */
-	@SuppressWarnings("unchecked")
 	public static Map<String, Property> properties(Class<?> type) {
-		Cache cache = CacheUtils.getCache(PROPERTIES);
-		SoftReference<?> reference = cache.get(type, SoftReference.class);
-		if (reference != null) {
-			Object map = reference.get();
-			if (map != null) {
-				return (Map<String, Property>) map;
-			}
-		}
-		Map<String, Property> map = findProperties(type);
-		reference = new SoftReference<Object>(map);
-		cache.put(type, reference);
-		return map;
+		return ClassMetadata.of(type).getProperties();
 	}
 
 	/**
@@ -223,19 +192,13 @@ public class ClassUtils {
 	 * @return ID成员变量
 	 */
 	public static Property findIdProperty(Class<?> clazz) {
-		Cache cache = CacheUtils.getCache(IDS);
-		SoftReference<?> id = cache.get(clazz, SoftReference.class);
-		if (id != null) {
-			Property property = (Property) id.get();
-			if (property != null) {
-				return property;
-			}
-		}
+		return ClassMetadata.of(clazz).getIdProperty();
+	}
+
+	static Property findIdPropertyInner(Class<?> clazz) {
 		for (Property property : ClassUtils.properties(clazz).values()) {
 			for (Annotation annotation : property.getField().getAnnotations()) {
 				if (annotation.annotationType().getName().endsWith(".Id")) {
-					id = new SoftReference<Property>(property);
-					cache.put(clazz, id);
 					return property;
 				}
 			}
@@ -288,7 +251,7 @@ public class ClassUtils {
 	 *            指定的类型
 	 * @return 属性名与属性的映射
 	 */
-	private static Map<String, Property> findProperties(Class<?> type) {
+	static Map<String, Property> findProperties(Class<?> type) {
 		try {
 			Map<String, Property> map = new HashMap<>();
 			PropertyDescriptor[] descriptors = Introspector.getBeanInfo(type).getPropertyDescriptors();
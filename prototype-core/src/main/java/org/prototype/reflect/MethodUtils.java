@@ -15,15 +15,14 @@
  */
 package org.prototype.reflect;
 
-import java.lang.ref.SoftReference;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.prototype.reflect.CacheUtils.Cache;
 import org.springframework.aop.Advisor;
 
 /**
@@ -34,24 +33,14 @@ import org.springframework.aop.Advisor;
  */
 public class MethodUtils {
 
-	private static final String METHODS = MethodUtils.class.getName() + ".methods";
-
-	private static final String FINDED = MethodUtils.class.getName() + ".finded";
-
-	private static final String EMPTY_METHOD = "";
-
-	@SuppressWarnings("unchecked")
-	private static SoftReference<Object> findMethods(Class<?> clazz) {
-		Cache cache = CacheUtils.getCache(METHODS);
-		SoftReference<Object> reference = cache.get(clazz, SoftReference.class);
-		if (reference == null) {
-			reference = findAllMethods(clazz);
-			cache.put(clazz, reference);
-		}
-		return reference;
-	}
-
-	private static SoftReference<Object> findAllMethods(Class<?> clazz) {
+	/**
+	 * 查找类及父类的方法（方法名与同名方法的映射，由{@link ClassMetadata}缓存）
+	 * 
+	 * @param clazz
+	 *            指定类
+	 * @return 方法名与同名方法的映射
+	 */
+	static Map<String, List<Method>> findAllMethods(Class<?> clazz) {
 		Map<String, List<Method>> methods = new HashMap<>();
 		addMethods(methods, clazz, 0);
 		Class<?> parent = clazz.getSuperclass();
@@ -59,7 +48,10 @@ public class MethodUtils {
 			addMethods(methods, parent, parent.getPackage().getName().equals(clazz.getName()) ? 1 : 2);
 			parent = parent.getSuperclass();
 		}
-		return new SoftReference<Object>(methods);
+		for (Map.Entry<String, List<Method>> entry : methods.entrySet()) {
+			entry.setValue(Collections.unmodifiableList(entry.getValue()));
+		}
+		return methods;
 	}
 
 	private static void addMethods(Map<String, List<Method>> map, Class<?> clazz, int range) {
@@ -124,11 +116,9 @@ public class MethodUtils {
 	 *            方法名
 	 * @return 方法列表
 	 */
-	@SuppressWarnings("unchecked")
 	public static List<Method> findMethods(Class<?> clazz, String methodName) {
-		Map<String, List<Method>> methods = (Map<String, List<Method>>) (findMethods(clazz).get());
-		List<Method> list = methods.get(methodName);
-		return list == null ? new ArrayList<Method>() : list;
+		List<Method> list = ClassMetadata.of(clazz).getMethods().get(methodName);
+		return list == null ? Collections.<Method>emptyList() : list;
 	}
 
 	/**
@@ -142,20 +132,8 @@ public class MethodUtils {
 	 *            方法第一个参数的类型
 	 * @return 匹配的方法
 	 */
-	@SuppressWarnings("unchecked")
 	public static Method findOverloadMethod(Class<?> clazz, String methodName, Class<?> parameterType) {
-		String key = getMethodKey(clazz, methodName, parameterType);
-		Cache cache=CacheUtils.getCache(FINDED);
-		SoftReference<Object> reference = cache.get(key,SoftReference.class);
-		if (reference != null) {
-			Object object = reference.get();
-			if (object != null) {
-				return object == EMPTY_METHOD ? null : (Method) object;
-			}
-		}
-		Method method = findOverloadMethod1(clazz, methodName, parameterType);
-		cache.put(key, new SoftReference<Object>(method == null ? EMPTY_METHOD : method));
-		return method;
+		return ClassMetadata.of(clazz).getOverloadMethod(methodName, parameterType);
 	}
 
 	/**
@@ -218,7 +196,7 @@ public class MethodUtils {
 	 *            方法唯一参数
 	 * @return 匹配的重载方法
 	 */
-	private static Method findOverloadMethod1(Class<?> clazz, String methodName, Class<?> parameterType) {
+	static Method findOverloadMethod1(Class<?> clazz, String methodName, Class<?> parameterType) {
 		Class<?> type = clazz;
 		List<Method> methods = MethodUtils.findMethods(type, methodName);
 		Map<Class<?>, Method> map = new HashMap<>();
@@ -247,32 +225,6 @@ public class MethodUtils {
 		return null;
 	}
 
-	/**
-	 * 获得方法在缓存中的关键字
-	 * 
-	 * @param clazz
-	 *            指定的类
-	 * @param methodName
-	 *            方法名
-	 * @param parameterTypes
-	 *            方法参数
-	 * @return 方法在缓存中的关键字
-	 */
-	private static String getMethodKey(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
-		StringBuilder rs = new StringBuilder(clazz.getName());
-		rs.append('_');
-		rs.append(methodName);
-		rs.append('_');
-		for (Class<?> type : parameterTypes) {
-			rs.append(type.getName());
-			rs.append(',');
-		}
-		if (parameterTypes.length > 0) {
-			rs.deleteCharAt(rs.length() - 1);
-		}
-		return rs.toString();
-	}
-
 	/**
 	 * 获取包装类型（仅8种基本数据类型）.<br>
 	 * 非基本类型直接返回原类型
@@ -303,7 +255,7 @@ public class MethodUtils {
 
 	/**
 	 * 查找指定名称和类型的方法. <br>
-	 * 包括子类可见的父类的方法
+	 * 包括子类可见的父类的方法，在缓存的同名方法中按参数类型查找
 	 * 
 	 * @param clazz
 	 *            指定的类
@@ -313,31 +265,13 @@ public class MethodUtils {
 	 *            方法参数
 	 * @return 唯一的方法，未找到时返回null
 	 */
-	@SuppressWarnings("unchecked")
 	public static Method findMethod(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
-		String key = getMethodKey(clazz, methodName, parameterTypes);
-		Cache cache=CacheUtils.getCache(FINDED);
-		SoftReference<Object> reference = cache.get(key,SoftReference.class);
-		if (reference != null) {
-			Object value = reference.get();
-			if (value != null) {
-				return value == EMPTY_METHOD ? null : (Method) value;
-			}
-		}
-		Method method = findMethod1(clazz, methodName, parameterTypes);
-		cache.put(key, new SoftReference<Object>(method == null ? EMPTY_METHOD : method));
-		return method;
-	}
-
-	@SuppressWarnings("unchecked")
-	private static Method findMethod1(Class<?> clazz, String methodName, Class<?>[] parameterType) {
-		Map<String, List<Method>> methods = (Map<String, List<Method>>) (findMethods(clazz).get());
-		List<Method> list = methods.get(methodName);
+		List<Method> list = ClassMetadata.of(clazz).getMethods().get(methodName);
 		if (list == null) {
 			return null;
 		}
 		for (Method method : list) {
-			if (matches(method, parameterType)) {
+			if (matches(method, parameterTypes)) {
 				return method;
 			}
 		}
@@ -9,21 +9,30 @@ import lombok.Getter;
 
 /**
  * 成员变量属性. <br>
+ * 读写属性时使用首次读写时编译的访问器（见{@link AccessorType}），编译失败时使用反射读写.
  * @author lj
  *
  */
 public class Property {
 
+	private static volatile AccessorType accessorType = AccessorType.LAMBDA;
+
 	@Getter
 	private Field field;
 	private PropertyDescriptor descriptor;
 	@Getter
 	private String name;
 
+	/**
+	 * 已编译的访问器（成员变量均为final的不可变对象，可不经同步发布；并发创建时以最后一个为准）
+	 */
+	private PropertyAccessor accessor;
+
 	void setField(Field field) {
 		this.field = field;
 		field.setAccessible(true);
 		this.name=field.getName();
+		this.accessor = null;
 	}
 
 	Property(PropertyDescriptor descriptor) {
@@ -40,7 +49,26 @@ public class Property {
 	Property(Field field) {
 		setField(field);
 	}
-	
+
+	/**
+	 * 设置属性访问器的类型（由{@link org.prototype.PrototypeConfig}设置，已创建的访问器在下次读写时重新创建）
+	 *
+	 * @param type
+	 *            访问器类型
+	 */
+	public static void setAccessorType(AccessorType type) {
+		accessorType = type == null ? AccessorType.LAMBDA : type;
+	}
+
+	/**
+	 * 属性访问器的类型
+	 *
+	 * @return 访问器类型
+	 */
+	public static AccessorType getAccessorType() {
+		return accessorType;
+	}
+
 	public boolean isReadOnly(){
 		if(field==null&&descriptor.getWriteMethod()==null){
 			return true;
@@ -63,6 +91,28 @@ public class Property {
 
 	public void setValue(Object object, Object value)
 			throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+		PropertyAccessor accessor = getAccessor();
+		if (accessor.canSet(object, value)) {
+			accessor.set(object, value);
+		} else {
+			setByReflection(object, value);
+		}
+	}
+
+	public Object getValue(Object object)
+			throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+		PropertyAccessor accessor = getAccessor();
+		if (accessor.canGet(object)) {
+			return accessor.get(object);
+		}
+		return getByReflection(object);
+	}
+
+	/**
+	 * 反射写属性（访问器不能处理的参数，如需要基本类型扩展转换或类型不匹配时，与反射的行为保持一致）
+	 */
+	void setByReflection(Object object, Object value)
+			throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
 		if (descriptor == null) {
 			field.set(object, value);
 			return;
@@ -75,7 +125,10 @@ public class Property {
 		}
 	}
 
-	public Object getValue(Object object)
+	/**
+	 * 反射读属性
+	 */
+	Object getByReflection(Object object)
 			throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
 		if (descriptor == null) {
 			return field.get(object);
@@ -87,4 +140,43 @@ public class Property {
 		throw new UnsupportedOperationException();
 	}
 
+	Method getReadMethod() {
+		return descriptor == null ? null : descriptor.getReadMethod();
+	}
+
+	Method getWriteMethod() {
+		return descriptor == null ? null : descriptor.getWriteMethod();
+	}
+
+	private PropertyAccessor getAccessor() {
+		PropertyAccessor rs = accessor;
+		AccessorType type = accessorType;
+		if (rs == null || rs.getType() != type) {
+			rs = PropertyAccessor.create(this, type);
+			accessor = rs;
+		}
+		return rs;
+	}
+
+	/**
+	 * 属性访问器的类型
+	 *
+	 * @author lj
+	 *
+	 */
+	public enum AccessorType {
+		/**
+		 * 反射（Field.get/set及读写方法的Method.invoke）
+		 */
+		REFLECT,
+		/**
+		 * 直接调用的MethodHandle
+		 */
+		METHOD_HANDLE,
+		/**
+		 * LambdaMetafactory生成的读写方法调用类（公共类的公共读写方法），其它属性使用MethodHandle
+		 */
+		LAMBDA
+	}
+
 }
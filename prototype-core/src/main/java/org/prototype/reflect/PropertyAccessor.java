@@ -0,0 +1,237 @@
+package org.prototype.reflect;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.prototype.reflect.Property.AccessorType;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 已编译的属性访问器. <br>
+ *
+ * <pre>
+ * 每个属性在首次读写时创建一次，之后读写属性不再经过反射的访问检查及参数数组：
+ * 1、{@link AccessorType#LAMBDA}：公共类的公共读写方法由LambdaMetafactory生成Function/BiConsumer实现类直接调用（基本类型的装箱拆箱在生成的类中完成）；
+ * 2、{@link AccessorType#METHOD_HANDLE}及不能生成实现类的属性：读写方法或成员变量转换为(Object)Object及(Object,Object)void的MethodHandle。
+ * 对象类型不匹配、null赋予基本类型或需要基本类型扩展转换（如Integer赋予long）时，由{@link Property}使用反射处理，保持与反射一致的异常及转换.
+ * 读写方法抛出的异常与反射一样包装为InvocationTargetException.
+ * </pre>
+ *
+ * @author lj
+ *
+ */
+@Slf4j
+final class PropertyAccessor {
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	private final AccessorType type;
+
+	/**
+	 * 读属性时对象的类型（不能读时为null）
+	 */
+	private final Class<?> readClass;
+
+	/**
+	 * 写属性时对象的类型（不能写时为null）
+	 */
+	private final Class<?> writeClass;
+
+	/**
+	 * 写入值的类型（基本类型为包装类型）
+	 */
+	private final Class<?> valueClass;
+
+	private final boolean primitive;
+
+	private final Function<Object, Object> getter;
+
+	private final BiConsumer<Object, Object> setter;
+
+	private final MethodHandle getHandle;
+
+	private final MethodHandle setHandle;
+
+	/**
+	 * 只使用反射的访问器
+	 */
+	private PropertyAccessor(AccessorType type) {
+		this.type = type;
+		this.readClass = null;
+		this.writeClass = null;
+		this.valueClass = null;
+		this.primitive = false;
+		this.getter = null;
+		this.setter = null;
+		this.getHandle = null;
+		this.setHandle = null;
+	}
+
+	/**
+	 * 编译属性的读写（所有成员变量为final，访问器可以安全地在线程间发布）
+	 */
+	private PropertyAccessor(Property property, AccessorType type) throws Throwable {
+		this.type = type;
+		boolean lambda = type == AccessorType.LAMBDA;
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		Function<Object, Object> getter = null;
+		MethodHandle getHandle = null;
+		Class<?> readClass = null;
+		Method method = property.getReadMethod();
+		if (method != null) {
+			MethodHandle handle = lookup.unreflect(method);
+			if (lambda && isLambdaAccessible(method)) {
+				getter = createGetter(lookup, handle, method);
+			} else {
+				getHandle = handle.asType(GETTER_TYPE);
+			}
+			readClass = method.getDeclaringClass();
+		} else if (property.getWriteMethod() == null && property.getField() != null) {// 与反射读写的选择保持一致
+			Field field = property.getField();
+			getHandle = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+			readClass = field.getDeclaringClass();
+		}
+		BiConsumer<Object, Object> setter = null;
+		MethodHandle setHandle = null;
+		Class<?> writeClass = null;
+		Class<?> valueType = null;
+		method = property.getWriteMethod();
+		if (method != null) {
+			MethodHandle handle = lookup.unreflect(method);
+			if (lambda && isLambdaAccessible(method)) {
+				setter = createSetter(lookup, handle, method);
+			} else {
+				setHandle = handle.asType(SETTER_TYPE);
+			}
+			writeClass = method.getDeclaringClass();
+			valueType = method.getParameterTypes()[0];
+		} else if (property.getReadMethod() == null && property.getField() != null) {
+			Field field = property.getField();
+			setHandle = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+			writeClass = field.getDeclaringClass();
+			valueType = field.getType();
+		}
+		this.getter = getter;
+		this.getHandle = getHandle;
+		this.readClass = readClass;
+		this.setter = setter;
+		this.setHandle = setHandle;
+		this.writeClass = writeClass;
+		this.primitive = valueType != null && valueType.isPrimitive();
+		this.valueClass = valueType == null ? null : ClassUtils.getWrapperType(valueType);
+	}
+
+	/**
+	 * 创建访问器
+	 *
+	 * @param property
+	 *            属性
+	 * @param type
+	 *            访问器类型
+	 * @return 访问器，编译失败时返回只使用反射的访问器
+	 */
+	static PropertyAccessor create(Property property, AccessorType type) {
+		if (type == AccessorType.REFLECT) {
+			return new PropertyAccessor(type);
+		}
+		try {
+			return new PropertyAccessor(property, type);
+		} catch (Throwable e) {// 编译失败（如静态成员变量、类加载器不可见）时使用反射
+			log.debug("Compile accessor of property " + property.getName() + " failed , use reflection", e);
+			return new PropertyAccessor(type);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Function<Object, Object> createGetter(MethodHandles.Lookup lookup, MethodHandle handle,
+			Method method) throws Throwable {
+		CallSite site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+				GETTER_TYPE, handle, MethodType.methodType(ClassUtils.getWrapperType(method.getReturnType()),
+						method.getDeclaringClass()));
+		return (Function<Object, Object>) site.getTarget().invoke();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static BiConsumer<Object, Object> createSetter(MethodHandles.Lookup lookup, MethodHandle handle,
+			Method method) throws Throwable {
+		CallSite site = LambdaMetafactory.metafactory(lookup, "accept", MethodType.methodType(BiConsumer.class),
+				SETTER_TYPE, handle, MethodType.methodType(void.class, method.getDeclaringClass(),
+						ClassUtils.getWrapperType(method.getParameterTypes()[0])));
+		return (BiConsumer<Object, Object>) site.getTarget().invoke();
+	}
+
+	/**
+	 * 生成的实现类由本类的类加载器加载并直接调用方法，要求方法及所在类是公共的且本类的类加载器可见
+	 */
+	private static boolean isLambdaAccessible(Method method) {
+		if (!Modifier.isPublic(method.getModifiers())) {
+			return false;
+		}
+		Class<?> type = method.getDeclaringClass();
+		for (Class<?> c = type; c != null; c = c.getEnclosingClass()) {
+			if (!Modifier.isPublic(c.getModifiers())) {
+				return false;
+			}
+		}
+		try {
+			return Class.forName(type.getName(), false, PropertyAccessor.class.getClassLoader()) == type;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	AccessorType getType() {
+		return type;
+	}
+
+	/**
+	 * 是否可以由访问器读属性
+	 */
+	boolean canGet(Object object) {
+		return readClass != null && readClass.isInstance(object);
+	}
+
+	/**
+	 * 是否可以由访问器写属性
+	 */
+	boolean canSet(Object object, Object value) {
+		return writeClass != null && writeClass.isInstance(object)
+				&& (value == null ? !primitive : valueClass.isInstance(value));
+	}
+
+	Object get(Object object) throws InvocationTargetException {
+		try {
+			if (getter != null) {
+				return getter.apply(object);
+			}
+			return (Object) getHandle.invokeExact(object);
+		} catch (Throwable e) {
+			throw new InvocationTargetException(e);
+		}
+	}
+
+	void set(Object object, Object value) throws InvocationTargetException {
+		try {
+			if (setter != null) {
+				setter.accept(object, value);
+			} else {
+				setHandle.invokeExact(object, value);
+			}
+		} catch (Throwable e) {
+			throw new InvocationTargetException(e);
+		}
+	}
+
+}
@@ -224,7 +224,7 @@ public class TransactionalMethodAdvisor implements MethodAdvisor {
 			} catch (InvocationTargetException e) {
 				Throwable t = e.getTargetException();
 				if (!isIgonre(t)) {
-					Message.getSubject().onNext(new Message(Message.ROLLBACK, chain.getTarget().getClass().getName(),
+					Message.getBus().publish(new Message(Message.ROLLBACK, chain.getTarget().getClass().getName(),
 							new Message.ExceptionMessage(chain, e)));
 				}
 				if (t instanceof RuntimeException) {
@@ -236,6 +236,7 @@ public class TransactionalMethodAdvisor implements MethodAdvisor {
 				throw new RuntimeException(e);
 			} finally {
 				log.debug("End transaction in {}", chain.getMethod());
+				ps.getTransaction().close();// 关闭事务中的资源（提交之前）
 				ps.setTransaction(old);// 相当于出栈处理
 				if (create) {
 					PrototypeStatus.setStatus(null);
@@ -9,11 +9,16 @@ import java.lang.annotation.Target;
 
 /**
  * 数据库批处理. <br>
- * 批处理大小由MvcConfiguration的属性定义(默认为100). <br>
+ * 批处理大小由SqlConfiguration的属性定义(默认为100)，每个批处理方法执行后输出行数、批次及用时. <br>
  * 
  * <pre>
  * 例：
- * 
+ * &#064;Batch(value = { "update", "insert" }, after = true)
+ * void save(Connection conn){}
+ * &#064;BatchSql("update users set name=? where id=?")
+ * CollectionIterator&lt;?&gt; update(){ ... }
+ * &#064;BatchSql(value = "insert into users(name) values(?)", rows = 16)
+ * InsertIterator&lt;?&gt; insert(){ ... }
  * </pre>
  * 
  * @author lj
@@ -36,4 +41,22 @@ public @interface Batch {
 	 * @return 默认之前执行
 	 */
 	boolean after() default false;
+
+	/**
+	 * 多个批处理方法是否并发执行. <br>
+	 * 并发时每个批处理方法使用数据源中单独的连接并各自提交（数据源与方法注入的连接相同，连接参数可用Qualifier指定数据源）；
+	 * 当前线程已开启事务时仍在同一连接中依次执行.
+	 * 注意：任一批处理方法失败或被线程池拒绝时，等待已开始的方法结束后抛出第一个异常，已提交的方法不会回滚，
+	 * 需要全部成功或全部回滚时不要并发执行；线程池丢弃任务（如DiscardPolicy）时会一直等待.
+	 * 
+	 * @return 默认依次执行
+	 */
+	boolean parallel() default false;
+
+	/**
+	 * 并发执行时的{@link java.util.concurrent.Executor Executor}
+	 * 
+	 * @return java.util.concurrent.Executor的bean名称
+	 */
+	String executor() default "";
 }
@@ -1,28 +1,35 @@
 package org.prototype.sql;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.Iterator;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.annotation.Resource;
+import javax.sql.DataSource;
 
 import org.prototype.core.Errors;
+import org.prototype.core.ExecutorManager;
 import org.prototype.core.MethodAdvisor;
 import org.prototype.core.MethodBuilder;
 import org.prototype.core.MethodChain;
 import org.prototype.core.MethodFilter;
+import org.prototype.core.PrototypeStatus;
+import org.prototype.inject.ConnectionInjecter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * 批处理注解的方法适配. <br>
+ * 每个BatchSql方法由{@link BatchRunner}执行；Batch#parallel为true且当前线程未开启事务时，多个BatchSql方法在不同的连接中并发执行，
+ * 连接来自方法注入的连接所属的数据源（连接参数的Qualifier注解指定的或唯一的数据源）.
  * 
  * @author lj
  *
@@ -34,6 +41,15 @@ public class BatchMethodAdvisor implements MethodAdvisor {
 	@Resource
 	private SqlConfiguration config;
 
+	@Resource
+	private ApplicationContext context;
+
+	@Resource
+	private ExecutorManager manager;
+
+	@Resource
+	private ConnectionInjecter connectionInjecter;
+
 	@Override
 	public MethodFilter<?> matches(MethodBuilder builder, Errors errors) {
 		Batch batch = builder.getAnnotation(Batch.class);
@@ -45,7 +61,7 @@ public class BatchMethodAdvisor implements MethodAdvisor {
 			return null;
 		}
 		boolean rs = true;
-		if (hasParameter(builder.getParameterTypes(), Connection.class)) {// 调用的方法要求
+		if (!hasParameter(builder.getParameterTypes(), Connection.class)) {// 调用的方法要求
 			errors.add("batch.connection.required", builder.toString());
 			return null;
 		}
@@ -70,9 +86,31 @@ public class BatchMethodAdvisor implements MethodAdvisor {
 			if (sql == null) {// 必须有注解BatchSql
 				errors.add("batch.batchsql.notfound", builder.toString(), mi.toString());
 				rs = false;
+			} else if (sql.rows() > 1 && BatchRunner.findValues(sql.value()) == null) {// 多行VALUES要求insert语句
+				errors.add("batch.batchsql.rows", builder.toString(), mi.toString());
+				rs = false;
 			}
 		}
-		return rs ? new BatchMethodFilter(batch, builder.getAnnotation(Partition.class)) : null;
+		if (!"".equals(batch.executor())
+				&& !(context.containsBean(batch.executor()) && Executor.class.isInstance(context.getBean(batch.executor())))) {
+			errors.add("batch.executor.notfound", builder.toString(), batch.executor());
+			rs = false;
+		}
+		int index = indexOf(builder.getParameterTypes(), Connection.class);
+		return rs ? new BatchMethodFilter(batch, builder.getAnnotation(Partition.class), index,
+				getQualifier(builder.getParameterAnnotations(index))) : null;
+	}
+
+	/**
+	 * 连接参数的Qualifier注解指定的数据源名称
+	 */
+	private String getQualifier(Annotation[] annotations) {
+		for (Annotation annotation : annotations) {
+			if (annotation instanceof Qualifier) {
+				return ((Qualifier) annotation).value();
+			}
+		}
+		return null;
 	}
 
 	/**
@@ -83,12 +121,16 @@ public class BatchMethodAdvisor implements MethodAdvisor {
 	 * @return
 	 */
 	private boolean hasParameter(Class<?>[] parameterTypes, Class<?> type) {
-		for (Class<?> clazz : parameterTypes) {
-			if (clazz == type) {
-				return true;
+		return indexOf(parameterTypes, type) != -1;
+	}
+
+	private int indexOf(Class<?>[] parameterTypes, Class<?> type) {
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (parameterTypes[i] == type) {
+				return i;
 			}
 		}
-		return false;
+		return -1;
 	}
 
 	/**
@@ -100,11 +142,21 @@ public class BatchMethodAdvisor implements MethodAdvisor {
 	private class BatchMethodFilter implements MethodFilter<Batch> {
 
 		private Batch batch;
-		private Pattern pattern;
+		private SqlUtil.PartitionResolver partitioner;
+		/**
+		 * 连接参数的位置
+		 */
+		private int connection;
+		/**
+		 * 连接参数指定的数据源名称
+		 */
+		private String dataSource;
 
-		public BatchMethodFilter(Batch batch, Partition partition) {
+		public BatchMethodFilter(Batch batch, Partition partition, int connection, String dataSource) {
 			this.batch = batch;
-			this.pattern = SqlUtil.getPartitionPattern(partition);
+			this.partitioner = SqlUtil.getPartitionResolver(partition);
+			this.connection = connection;
+			this.dataSource = dataSource;
 		}
 
 		@Override
@@ -120,7 +172,9 @@ public class BatchMethodAdvisor implements MethodAdvisor {
 		}
 
 		/**
-		 * 执行批处理
+		 * 执行批处理. <br>
+		 * 顺序执行时每个BatchSql方法在前一个批处理执行后才调用（可使用前一个InsertIterator设置的ID），
+		 * 只有第一个提前调用（用于数据分区）；并发执行时全部提前调用.
 		 * 
 		 * @param chain
 		 *            方法链
@@ -130,117 +184,128 @@ public class BatchMethodAdvisor implements MethodAdvisor {
 		 *             异常
 		 */
 		private void doBatch(MethodChain chain, Object[] args) throws Exception {
-			Connection conn = (Connection) args[0];
-			String[] sql = new String[batch.value().length];
-			Method[] mi = new Method[sql.length];
-			int k = 0;
-			for (String value : batch.value()) {
-				mi[k] = chain.findUniqueMethod(value, true);
-				sql[k] = mi[k].getAnnotation(BatchSql.class).value();
-				k++;
-			}
-			int batchSize = config.getBatchSize();
-			PreparedStatement[] ps = new PreparedStatement[sql.length];
-			k = 0;
-			try {
-				for (String s : sql) {
-					ps[k] = conn.prepareStatement(s, Statement.RETURN_GENERATED_KEYS);
-					CollectionIterator<?> iterator = (CollectionIterator<?>) mi[k].invoke(chain.getTarget(),
-							new Object[0]);
-					if (k == 0) {
-						SqlUtil.setPartition(pattern, sql[0], iterator.getFirstParameters());
+			Connection conn = (Connection) args[connection];
+			Method[] methods = new Method[batch.value().length];
+			for (int i = 0; i < methods.length; i++) {
+				methods[i] = chain.findUniqueMethod(batch.value()[i], true);
+			}
+			if (methods.length == 0) {
+				return;
+			}
+			BatchRunner[] runners = new BatchRunner[methods.length];
+			runners[0] = createRunner(chain.getTarget(), methods[0], true);
+			long start = System.nanoTime();
+			if (batch.parallel() && runners.length > 1 && !TransactionSynchronizationManager.isActualTransactionActive()) {
+				for (int i = 1; i < runners.length; i++) {
+					runners[i] = createRunner(chain.getTarget(), methods[i], false);
+				}
+				parallel(chain.getTarget(), runners);
+			} else {
+				for (int i = 0; i < runners.length; i++) {
+					if (runners[i] == null) {// 前一个批处理执行后才读取数据来源
+						runners[i] = createRunner(chain.getTarget(), methods[i], false);
 					}
-					prepared(ps[k], iterator, batchSize);
-					k++;
+					runners[i].execute(conn);
 				}
-			} finally {
-				close(ps);
 			}
-		}
-
-	}
-
-	/**
-	 * 关闭PreparedStatement
-	 * 
-	 * @param ps
-	 *            PreparedStatement
-	 */
-	private static void close(PreparedStatement... ps) {
-		for (PreparedStatement p : ps) {
-			if (p != null) {
-				try {
-					p.close();
-				} catch (SQLException e) {
-					log.warn("Close prepared statement failed", e);
+			if (config.isShowSql() || log.isDebugEnabled()) {
+				for (BatchRunner runner : runners) {
+					runner.log();
 				}
+				log.info("Batch {} , parallel : {} , elapsed : {} ms", batch.value(), batch.parallel(),
+						(System.nanoTime() - start) / 1000000);
 			}
 		}
-	}
 
-	/**
-	 * 批量处理
-	 * 
-	 * @param ps
-	 *            PreparedStatement
-	 * @param it
-	 *            循环
-	 * @param batchSize
-	 *            批处理大小
-	 * @throws SQLException
-	 */
-	private static void prepared(PreparedStatement ps, Iterator<?> it, int batchSize) throws SQLException {
-		int total = 0;
-		while (it.hasNext()) {
-			Object[] value = (Object[]) it.next();
-			for (int i = 0, k = value.length; i < k; i++) {
-				ps.setObject(i + 1, value[i]);
-			}
-			ps.addBatch();
-			total++;
-			if (total % batchSize == 0) {
-				batch(ps, it, total - batchSize);
+		/**
+		 * 调用BatchSql方法创建批处理
+		 * 
+		 * @param target
+		 *            目标对象
+		 * @param method
+		 *            BatchSql方法
+		 * @param first
+		 *            是否第一个（按其第一行参数设置数据分区）
+		 * @return 批处理
+		 * @throws Exception
+		 *             异常
+		 */
+		private BatchRunner createRunner(Object target, Method method, boolean first) throws Exception {
+			CollectionIterator<?> iterator = (CollectionIterator<?>) method.invoke(target, new Object[0]);
+			BatchSql sql = method.getAnnotation(BatchSql.class);
+			BatchRunner rs = new BatchRunner(sql, iterator, config.getBatchSize());// 先设置按块读取的大小
+			if (first) {
+				SqlUtil.setPartition(partitioner, sql.value(), iterator.getFirstParameters());
 			}
+			return rs;
 		}
-		int m = total % batchSize;
-		if (m > 0) {
-			batch(ps, it, total - m);
-		}
-	}
 
-	/**
-	 * 执行批处理并获取可能的结果
-	 * 
-	 * @param ps
-	 * @param it
-	 * @param start
-	 * @throws SQLException
-	 */
-	private static void batch(PreparedStatement ps, Iterator<?> it, int start) throws SQLException {
-		ps.executeBatch();
-		if (it instanceof InsertIterator) {
-			saveIds(ps, (InsertIterator<?>) it, start);
+		/**
+		 * 在不同的连接中并发执行. <br>
+		 * 线程池拒绝时不再提交其余的批处理（关闭其数据来源），等待已提交的全部结束后抛出第一个异常（其它异常作为suppressed）.
+		 * 
+		 * @param target
+		 *            目标对象
+		 * @param runners
+		 *            批处理
+		 * @throws Exception
+		 *             异常
+		 */
+		private void parallel(Object target, BatchRunner[] runners) throws Exception {
+			Executor executor = "".equals(batch.executor()) ? manager.getExecutor(target)
+					: (Executor) context.getBean(batch.executor());
+			DataSource dataSource = connectionInjecter.getDataSource(this.dataSource);
+			if (dataSource == null) {
+				throw new IllegalStateException("No unique DataSource for parallel batch " + String.join(",", batch.value())
+						+ " , add @Qualifier to the Connection parameter");
+			}
+			PrototypeStatus status = PrototypeStatus.getStatus();
+			PrototypeStatus.TransactionStatus trans = status == null ? null : status.getTransaction();
+			@SuppressWarnings("unchecked")
+			FutureTask<BatchRunner>[] tasks = new FutureTask[runners.length];
+			Exception error = null;
+			for (int i = 0; i < runners.length && error == null; i++) {
+				PrototypeStatus copy = status == null ? new PrototypeStatus() : status.copyToAsync();
+				PrototypeStatus.TransactionStatus ts = new PrototypeStatus.TransactionStatus();
+				ts.setPartion(trans == null ? null : trans.getPartion());
+				copy.setTransaction(ts);
+				tasks[i] = new FutureTask<>(runners[i].parallel(dataSource, copy));
+				try {
+					if (executor == null) {
+						new Thread(tasks[i]).start();
+					} else {
+						executor.execute(tasks[i]);
+					}
+				} catch (RejectedExecutionException e) {
+					error = e;
+					tasks[i] = null;
+				}
+			}
+			for (int i = 0; i < runners.length; i++) {
+				try {
+					if (tasks[i] == null) {// 未提交的
+						runners[i].close();
+					} else {
+						tasks[i].get();
+					}
+				} catch (Exception e) {
+					Exception cause = e instanceof ExecutionException && e.getCause() instanceof Exception
+							? (Exception) e.getCause() : e;
+					if (error == null) {
+						error = cause;
+					} else {
+						error.addSuppressed(cause);
+					}
+				}
+			}
+			if (error instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			if (error != null) {
+				throw error;
+			}
 		}
-	}
 
-	/**
-	 * 保存结果ID
-	 * 
-	 * @param ps
-	 * @param it
-	 * @param start
-	 * @throws SQLException
-	 */
-	private static void saveIds(PreparedStatement ps, InsertIterator<?> it, int start) throws SQLException {
-		ResultSet rs = ps.getGeneratedKeys();
-		int k = 0;
-		try {
-			while (rs.next()) {
-				it.setId(start + (k++), rs.getObject(1));
-			}
-		} catch (InvocationTargetException | IllegalAccessException e) {
-			throw new RuntimeException(e);
-		}
 	}
 
 }
@@ -0,0 +1,406 @@
+package org.prototype.sql;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.prototype.core.PrototypeStatus;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 一个BatchSql方法的批处理执行. <br>
+ *
+ * <pre>
+ * 按第一行参数的类型选择PreparedStatement的setInt/setLong/setString等方法（类型不同时使用setObject）；
+ * BatchSql#rows大于1时按多行VALUES生成语句，完整的多行语句加入批处理，剩余的行单独执行一次；
+ * InsertIterator按执行顺序依次设置生成的ID；按块读取的循环器每块的大小与每次执行的行数一致，执行后才读取下一块.
+ * 并发执行（{@link #call()}）时使用数据源中单独的连接并提交.
+ * </pre>
+ *
+ * @author lj
+ *
+ */
+@Slf4j
+final class BatchRunner implements Callable<BatchRunner> {
+
+	/**
+	 * insert语句的VALUES部分
+	 */
+	private static final Pattern VALUES = Pattern.compile("(?is)^\\s*insert\\s.*?\\svalues\\s*(\\()");
+
+	@Getter
+	private final String sql;
+
+	private final CollectionIterator<?> iterator;
+
+	private final int batchSize;
+
+	/**
+	 * 每次执行的行数
+	 */
+	private final int rows;
+
+	/**
+	 * 多行VALUES时一行参数的位置：SQL中VALUES后一组参数的开始及结束（包括括号）
+	 */
+	private final int groupStart;
+
+	private final int groupEnd;
+
+	/**
+	 * 插入的行数
+	 */
+	@Getter
+	private int total;
+
+	/**
+	 * 执行的批次
+	 */
+	@Getter
+	private int batches;
+
+	@Getter
+	private long elapsedNanos;
+
+	private ParameterSetter[] setters;
+
+	/**
+	 * 已设置ID的行数
+	 */
+	private int saved;
+
+	/**
+	 * 并发执行时使用的数据源
+	 */
+	private DataSource dataSource;
+
+	/**
+	 * 并发执行时的原型状态
+	 */
+	private PrototypeStatus status;
+
+	BatchRunner(BatchSql batchSql, CollectionIterator<?> iterator, int batchSize) {
+		this.sql = batchSql.value();
+		this.iterator = iterator;
+		this.batchSize = Math.max(batchSize, 1);
+		int[] group = batchSql.rows() > 1 ? findValues(sql) : null;
+		this.rows = group == null ? 1 : batchSql.rows();
+		this.groupStart = group == null ? -1 : group[0];
+		this.groupEnd = group == null ? -1 : group[1];
+		// 按块读取时块的大小与执行（设置ID）的行数一致
+		iterator.setChunkSize(rows == 1 ? this.batchSize : (iterator instanceof InsertIterator ? rows
+				: rows * Math.max(this.batchSize / rows, 1)));
+	}
+
+	/**
+	 * 查找insert语句中VALUES后的一组参数
+	 *
+	 * @param sql
+	 *            SQL
+	 * @return 参数组的开始及结束位置，不是insert ... values(...)形式时返回null
+	 */
+	static int[] findValues(String sql) {
+		Matcher matcher = VALUES.matcher(sql);
+		if (!matcher.find()) {
+			return null;
+		}
+		int start = matcher.start(1);
+		int depth = 0;
+		boolean quoted = false;
+		for (int i = start, n = sql.length(); i < n; i++) {
+			char c = sql.charAt(i);
+			if (c == '\'') {
+				quoted = !quoted;
+			} else if (quoted) {
+				continue;
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')' && --depth == 0) {
+				return new int[] { start, i + 1 };
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 设置为并发执行
+	 *
+	 * @param dataSource
+	 *            数据源
+	 * @param status
+	 *            执行线程中使用的原型状态
+	 * @return 当前对象
+	 */
+	BatchRunner parallel(DataSource dataSource, PrototypeStatus status) {
+		this.dataSource = dataSource;
+		this.status = status;
+		return this;
+	}
+
+	@Override
+	public BatchRunner call() throws Exception {
+		PrototypeStatus.setStatus(status);
+		try (Connection conn = dataSource.getConnection()) {
+			boolean autoCommit = conn.getAutoCommit();
+			conn.setAutoCommit(false);
+			try {
+				execute(conn);
+				conn.commit();
+			} catch (Exception e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				conn.setAutoCommit(autoCommit);
+			}
+		} finally {
+			PrototypeStatus.setStatus(null);
+		}
+		return this;
+	}
+
+	/**
+	 * 关闭未执行的批处理的数据来源
+	 *
+	 * @throws Exception
+	 *             关闭异常
+	 */
+	void close() throws Exception {
+		iterator.close();
+	}
+
+	/**
+	 * 在指定连接中执行，完成后关闭数据来源（关闭异常作为执行异常的suppressed，不覆盖执行异常）
+	 *
+	 * @param conn
+	 *            连接
+	 * @throws Exception
+	 *             异常
+	 */
+	void execute(Connection conn) throws Exception {
+		long start = System.nanoTime();
+		try (CollectionIterator<?> source = iterator) {
+			if (rows > 1) {
+				executeRows(conn);
+			} else {
+				executeBatch(conn);
+			}
+		} finally {
+			elapsedNanos = System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * 每行一次加入批处理
+	 */
+	private void executeBatch(Connection conn) throws Exception {
+		try (PreparedStatement ps = prepare(conn, sql)) {
+			int pending = 0;
+			while (iterator.hasNext()) {
+				bind(ps, iterator.next(), 0);
+				ps.addBatch();
+				total++;
+				if (++pending == batchSize) {
+					flush(ps);
+					pending = 0;
+				}
+			}
+			if (pending > 0) {
+				flush(ps);
+			}
+		}
+	}
+
+	/**
+	 * 多行VALUES：InsertIterator每个语句单独执行（以获取多行的ID），其它加入批处理
+	 */
+	private void executeRows(Connection conn) throws Exception {
+		boolean insert = iterator instanceof InsertIterator;
+		Object[][] buffer = new Object[rows][];
+		int count = 0;
+		int statements = Math.max(batchSize / rows, 1);
+		int pending = 0;
+		try (PreparedStatement ps = prepare(conn, expand(rows))) {
+			while (iterator.hasNext()) {
+				buffer[count++] = iterator.next();
+				if (count < rows) {
+					continue;
+				}
+				int offset = 0;
+				for (Object[] values : buffer) {
+					offset = bind(ps, values, offset);
+				}
+				total += count;
+				count = 0;
+				if (insert) {
+					ps.executeUpdate();
+					batches++;
+					saveIds(ps);
+				} else {
+					ps.addBatch();
+					if (++pending == statements) {
+						flush(ps);
+						pending = 0;
+					}
+				}
+			}
+			if (pending > 0) {
+				flush(ps);
+			}
+		}
+		if (count > 0) {// 剩余的行
+			try (PreparedStatement ps = prepare(conn, expand(count))) {
+				int offset = 0;
+				for (int i = 0; i < count; i++) {
+					offset = bind(ps, buffer[i], offset);
+				}
+				total += count;
+				ps.executeUpdate();
+				batches++;
+				if (insert) {
+					saveIds(ps);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 生成多行VALUES的语句
+	 */
+	private String expand(int count) {
+		String group = sql.substring(groupStart, groupEnd);
+		StringBuilder rs = new StringBuilder(sql.length() + group.length() * count);
+		rs.append(sql, 0, groupEnd);
+		for (int i = 1; i < count; i++) {
+			rs.append(',').append(group);
+		}
+		return rs.append(sql, groupEnd, sql.length()).toString();
+	}
+
+	private PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+		return iterator instanceof InsertIterator ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+				: conn.prepareStatement(sql);
+	}
+
+	/**
+	 * 设置一行的参数
+	 *
+	 * @return 下一行参数的偏移
+	 */
+	private int bind(PreparedStatement ps, Object[] values, int offset) throws SQLException {
+		if (setters == null) {
+			setters = ParameterSetter.of(values);
+		}
+		for (int i = 0; i < values.length; i++) {
+			ParameterSetter setter = i < setters.length ? setters[i] : ParameterSetter.OBJECT;
+			setter.set(ps, offset + i + 1, values[i]);
+		}
+		return offset + values.length;
+	}
+
+	private void flush(PreparedStatement ps) throws Exception {
+		ps.executeBatch();
+		batches++;
+		if (iterator instanceof InsertIterator) {
+			saveIds(ps);
+		}
+	}
+
+	/**
+	 * 依次设置生成的ID
+	 */
+	private void saveIds(PreparedStatement ps) throws Exception {
+		InsertIterator<?> it = (InsertIterator<?>) iterator;
+		try (ResultSet rs = ps.getGeneratedKeys()) {
+			while (saved < total && rs.next()) {
+				it.setId(saved++, rs.getObject(1));
+			}
+		}
+	}
+
+	/**
+	 * 执行结果的日志
+	 */
+	void log() {
+		log.info("Batch sql : {} , rows : {} , batches : {} , elapsed : {} ms", sql, total, batches,
+				TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+	}
+
+	/**
+	 * 按类型设置参数
+	 */
+	@FunctionalInterface
+	private interface ParameterSetter {
+
+		ParameterSetter OBJECT = PreparedStatement::setObject;
+
+		void set(PreparedStatement ps, int index, Object value) throws SQLException;
+
+		/**
+		 * 按第一行参数的类型选择
+		 */
+		static ParameterSetter[] of(Object[] values) {
+			ParameterSetter[] rs = new ParameterSetter[values.length];
+			for (int i = 0; i < values.length; i++) {
+				rs[i] = of(values[i] == null ? null : values[i].getClass());
+			}
+			return rs;
+		}
+
+		static ParameterSetter of(Class<?> type) {
+			if (Integer.class == type) {
+				return typed(type, Types.INTEGER, (ps, i, v) -> ps.setInt(i, (Integer) v));
+			} else if (Long.class == type) {
+				return typed(type, Types.BIGINT, (ps, i, v) -> ps.setLong(i, (Long) v));
+			} else if (String.class == type) {
+				return typed(type, Types.VARCHAR, (ps, i, v) -> ps.setString(i, (String) v));
+			} else if (BigDecimal.class == type) {
+				return typed(type, Types.NUMERIC, (ps, i, v) -> ps.setBigDecimal(i, (BigDecimal) v));
+			} else if (Double.class == type) {
+				return typed(type, Types.DOUBLE, (ps, i, v) -> ps.setDouble(i, (Double) v));
+			} else if (Float.class == type) {
+				return typed(type, Types.REAL, (ps, i, v) -> ps.setFloat(i, (Float) v));
+			} else if (Short.class == type) {
+				return typed(type, Types.SMALLINT, (ps, i, v) -> ps.setShort(i, (Short) v));
+			} else if (Boolean.class == type) {
+				return typed(type, Types.BOOLEAN, (ps, i, v) -> ps.setBoolean(i, (Boolean) v));
+			} else if (Timestamp.class == type) {
+				return typed(type, Types.TIMESTAMP, (ps, i, v) -> ps.setTimestamp(i, (Timestamp) v));
+			} else if (java.util.Date.class == type) {
+				return typed(type, Types.TIMESTAMP,
+						(ps, i, v) -> ps.setTimestamp(i, new Timestamp(((java.util.Date) v).getTime())));
+			} else if (byte[].class == type) {
+				return typed(type, Types.VARBINARY, (ps, i, v) -> ps.setBytes(i, (byte[]) v));
+			}
+			return OBJECT;
+		}
+
+		/**
+		 * 值为指定类型时使用类型对应的方法，null时setNull，其它类型setObject
+		 */
+		static ParameterSetter typed(Class<?> type, int sqlType, ParameterSetter setter) {
+			return (ps, index, value) -> {
+				if (value == null) {
+					ps.setNull(index, sqlType);
+				} else if (value.getClass() == type) {
+					setter.set(ps, index, value);
+				} else {
+					ps.setObject(index, value);
+				}
+			};
+		}
+	}
+
+}
@@ -25,4 +25,12 @@ public @interface BatchSql {
 	 * @return SQL语句
 	 */
 	String value();
+
+	/**
+	 * insert语句每次执行的行数. <br>
+	 * 大于1时将VALUES后的一组参数重复为多组（如values (?,?),(?,?)），一次执行插入多行.
+	 * 
+	 * @return 默认为1（每行一次加入批处理）
+	 */
+	int rows() default 1;
 }
@@ -19,22 +19,49 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * 集合循环器. <br>
  * 注解循环器只能使用一次，除非调用
+ * <pre>
+ * 数据来源为List时直接使用；为其它集合、Iterator、Stream或Supplier时按块读取（块大小由批处理设置，默认为100），
+ * 内存中只保留当前块的数据，可处理大量（如文件或其它查询结果中的）数据. 读取完成后关闭Stream或实现了AutoCloseable的Iterator.
+ * </pre>
  * 
  * @author lj
  *
  * @param <T> 循环对象的类型
  */
-public abstract class CollectionIterator<T> implements Iterator<Object[]> {
+public abstract class CollectionIterator<T> implements Iterator<Object[]>, AutoCloseable {
 
 	/**
-	 * 数据列表
+	 * 数据列表（按块读取时为当前块）
 	 */
 	List<T> list;
 
+	/**
+	 * 按块读取的数据来源
+	 */
+	private Iterator<? extends T> source;
+
+	/**
+	 * 需要关闭的数据来源
+	 */
+	private AutoCloseable closeable;
+
+	/**
+	 * 当前块的大小
+	 */
+	private int chunkSize = 100;
+
+	/**
+	 * 当前块第一个数据的索引
+	 */
+	int offset;
+
 	/**
 	 * 当前索引
 	 */
@@ -47,21 +74,104 @@ public abstract class CollectionIterator<T> implements Iterator<Object[]> {
 	 *            列表
 	 */
 	public CollectionIterator(Collection<T> collection) {
-		this.list = collection == null ? new ArrayList<T>()
-				: ((collection instanceof List) ? (List<T>) collection : new ArrayList<T>(collection));
+		if (collection == null) {
+			this.list = new ArrayList<T>();
+		} else if (collection instanceof List) {
+			this.list = (List<T>) collection;
+		} else {
+			this.list = new ArrayList<T>();
+			this.source = collection.iterator();
+		}
+	}
+
+	/**
+	 * 构造（按块读取）
+	 * 
+	 * @param iterator
+	 *            数据来源
+	 */
+	public CollectionIterator(Iterator<? extends T> iterator) {
+		this.list = new ArrayList<T>();
+		this.source = iterator;
+		this.closeable = iterator instanceof AutoCloseable ? (AutoCloseable) iterator : null;
+	}
+
+	/**
+	 * 构造（按块读取）
+	 * 
+	 * @param stream
+	 *            数据来源
+	 */
+	public CollectionIterator(Stream<? extends T> stream) {
+		this(stream.iterator());
+		this.closeable = stream;
+	}
+
+	/**
+	 * 构造（按块读取）
+	 * 
+	 * @param supplier
+	 *            数据来源，返回null时结束
+	 */
+	public CollectionIterator(Supplier<? extends T> supplier) {
+		this(new SupplierIterator<T>(supplier));
+	}
+
+	/**
+	 * 设置按块读取时块的大小
+	 * 
+	 * @param chunkSize
+	 *            块的大小
+	 */
+	void setChunkSize(int chunkSize) {
+		this.chunkSize = Math.max(chunkSize, 1);
 	}
 
 	@Override
 	public boolean hasNext() {
-		return index < list.size();
+		return index < offset + list.size() || fill();
 	}
-	
+
+	/**
+	 * 读取下一块（当前块不再保留）
+	 * 
+	 * @return 是否有数据
+	 */
+	private boolean fill() {
+		if (source == null || !source.hasNext()) {
+			return false;
+		}
+		offset += list.size();
+		list.clear();
+		while (list.size() < chunkSize && source.hasNext()) {
+			list.add(source.next());
+		}
+		return true;
+	}
+
 	/**
 	 * 获得第一行数据的SQL参数
 	 * @return 第一行数据的SQL参数
 	 */
 	public Object[] getFirstParameters(){
-		return list.isEmpty()?null:next(list.get(0));
+		if (offset == 0 && list.isEmpty()) {
+			fill();
+		}
+		return offset > 0 || list.isEmpty() ? null : next(list.get(0));
+	}
+
+	/**
+	 * 获取已读取的数据
+	 * 
+	 * @param index
+	 *            数据的索引
+	 * @return 数据
+	 */
+	T get(int index) {
+		if (index < offset || index >= offset + list.size()) {
+			throw new IllegalStateException("Element " + index + " is not in current chunk");
+		}
+		return list.get(index - offset);
 	}
 
 	/**
@@ -73,14 +183,25 @@ public abstract class CollectionIterator<T> implements Iterator<Object[]> {
 
 	@Override
 	public Object[] next() {
-		if (index < list.size()) {
-			Object[] os = next(list.get(index));
+		if (hasNext()) {
+			Object[] os = next(list.get(index - offset));
 			index++;
 			return os;
 		}
 		return null;
 	}
 
+	/**
+	 * 关闭数据来源（Stream或实现了AutoCloseable的Iterator）
+	 */
+	@Override
+	public void close() throws Exception {
+		if (closeable != null) {
+			closeable.close();
+			closeable = null;
+		}
+	}
+
 	/**
 	 * 不支持此方法的调用
 	 */
@@ -89,4 +210,36 @@ public abstract class CollectionIterator<T> implements Iterator<Object[]> {
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * Supplier的迭代
+	 */
+	private static class SupplierIterator<T> implements Iterator<T> {
+
+		private final Supplier<? extends T> supplier;
+
+		private T next;
+
+		SupplierIterator(Supplier<? extends T> supplier) {
+			this.supplier = supplier;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null) {
+				next = supplier.get();
+			}
+			return next != null;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			T rs = next;
+			next = null;
+			return rs;
+		}
+	}
+
 }
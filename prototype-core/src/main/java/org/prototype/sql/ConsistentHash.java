@@ -0,0 +1,83 @@
+package org.prototype.sql;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 一致性哈希. <br>
+ * 每个节点在哈希环上有多个虚拟节点，键按哈希值顺时针找到第一个虚拟节点；增减节点时只影响相邻的键.
+ *
+ * @author lj
+ *
+ * @param <T>
+ *            节点类型
+ */
+final class ConsistentHash<T> {
+
+	private final long[] hashes;
+
+	private final Object[] nodes;
+
+	/**
+	 * 构造
+	 *
+	 * @param nodes
+	 *            节点名称及节点
+	 * @param virtualNodes
+	 *            每个节点的虚拟节点数
+	 */
+	ConsistentHash(Map<String, T> nodes, int virtualNodes) {
+		TreeMap<Long, T> ring = new TreeMap<>();
+		for (Map.Entry<String, T> entry : nodes.entrySet()) {
+			for (int i = 0; i < virtualNodes; i++) {
+				ring.put(hash(entry.getKey() + "#" + i), entry.getValue());
+			}
+		}
+		this.hashes = new long[ring.size()];
+		this.nodes = new Object[ring.size()];
+		int k = 0;
+		for (Map.Entry<Long, T> entry : ring.entrySet()) {
+			hashes[k] = entry.getKey();
+			this.nodes[k++] = entry.getValue();
+		}
+	}
+
+	/**
+	 * 获取键对应的节点
+	 *
+	 * @param key
+	 *            键
+	 * @return 节点，没有节点时为null
+	 */
+	@SuppressWarnings("unchecked")
+	T get(String key) {
+		if (hashes.length == 0) {
+			return null;
+		}
+		int index = Arrays.binarySearch(hashes, hash(key));
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return (T) nodes[index == hashes.length ? 0 : index];
+	}
+
+	/**
+	 * 64位FNV-1a哈希（再经过MurmurHash3的混合使分布均匀）
+	 */
+	static long hash(String key) {
+		long h = 0xcbf29ce484222325L;
+		for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			h ^= b & 0xff;
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+}
@@ -20,6 +20,9 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * 保存数据用的循环. <br>
@@ -47,21 +50,52 @@ public abstract class InsertIterator<T> extends CollectionIterator<T> {
 		super(coll);
 	}
 
+	/**
+	 * 构造（按块读取，每块保存后设置ID）
+	 * 
+	 * @param iterator
+	 *            数据来源
+	 */
+	public InsertIterator(Iterator<? extends T> iterator) {
+		super(iterator);
+	}
+
+	/**
+	 * 构造（按块读取，每块保存后设置ID）
+	 * 
+	 * @param stream
+	 *            数据来源
+	 */
+	public InsertIterator(Stream<? extends T> stream) {
+		super(stream);
+	}
+
+	/**
+	 * 构造（按块读取，每块保存后设置ID）
+	 * 
+	 * @param supplier
+	 *            数据来源，返回null时结束
+	 */
+	public InsertIterator(Supplier<? extends T> supplier) {
+		super(supplier);
+	}
+
 	/**
 	 * 保存数据之后修改ID属性值
 	 * 
 	 * @param index
-	 *            对象在集合（构造参数）中的索引
+	 *            对象在集合（构造参数）中的索引，按块读取时只能是当前块中的
 	 * @param id
 	 *            对象的ID值
 	 * @throws InvocationTargetException 调用异常
 	 * @throws IllegalAccessException 访问异常
 	 */
 	public final void setId(int index, Object id) throws InvocationTargetException, IllegalAccessException {
+		T target = get(index);
 		if (idProp == null) {
-			idProp = findIdProperty(list.get(0).getClass());
+			idProp = findIdProperty(target.getClass());
 		}
-		idProp.set(list.get(index), id);
+		idProp.set(target, id);
 	}
 
 	/**
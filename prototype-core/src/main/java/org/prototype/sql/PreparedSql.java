@@ -8,6 +8,8 @@ import java.lang.annotation.Target;
 
 /**
  * 豫处理的SQL执行. <br>
+ * 数组或集合参数展开为多个占位符（如id in (?)展开为id in (?,?,?,?)，个数按1/4/16/64/256分级，不足时以最后一个值补齐）；
+ * 位于ANY(?)或UNNEST(?)中时作为数据库的数组类型传递（Connection.createArrayOf）.
  * 
  * 与{@link Partition}注解在同一方法中使用，可以对批处理进行数据分区处理（需要多数据源支持）；一个线程中只能有一个数据分区.
  * <pre>
@@ -28,6 +30,11 @@ import java.lang.annotation.Target;
  * }
  * &#064;PreparedSql
  * List&lt;Object&gt; group(String sql,){ return null;}//如果只是简单的统计，返回值也可以是int/long/Integer/Long
+ * 例3（大量数据时以游标方式逐行读取，不一次读入全部结果）：
+ * &#064;PreparedSql(value={"id","name"},fetchSize=500)
+ * Stream&lt;User&gt; users(Connection conn,String sql){ return null;}//也可以返回Iterator，读取完成或关闭Stream时关闭语句
+ * &#064;PreparedSql({"id","name"})
+ * long users(Connection conn,String sql,Object[] parameters,Consumer&lt;User&gt; consumer){ return 0;}//逐行回调，返回行数
  * </pre>
  * @author lj
  *
@@ -47,4 +54,9 @@ public @interface PreparedSql {
 	 * @return 属性名
 	 */
 	String[] value () default {};
+	/**
+	 * 游标方式查询（返回Iterator、Stream或最后一个参数为逐行回调的Consumer）的fetchSize
+	 * @return fetchSize，0时使用{@link SqlConfiguration#getFetchSize()}
+	 */
+	int fetchSize() default 0;
 }
@@ -1,20 +1,23 @@
 package org.prototype.sql;
 
 import java.lang.reflect.Array;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import javax.annotation.Resource;
 
@@ -23,9 +26,8 @@ import org.prototype.core.MethodAdvisor;
 import org.prototype.core.MethodBuilder;
 import org.prototype.core.MethodChain;
 import org.prototype.core.MethodFilter;
-import org.prototype.reflect.ClassUtils;
+import org.prototype.core.PrototypeStatus;
 import org.prototype.reflect.MethodUtils;
-import org.prototype.reflect.Property;
 import org.springframework.core.ResolvableType;
 import org.springframework.stereotype.Component;
 
@@ -35,7 +37,8 @@ import lombok.extern.slf4j.Slf4j;
 
 /**
  * 预处理SQL. <br>
- * 支持数组或集合作为SQL中的一个参数（用‘,’字符连接）
+ * 支持数组或集合作为SQL中的一个参数（展开为多个占位符，见{@link PreparedSql}）.
+ * 业务有截止时间时，按剩余时间设定语句的查询超时（见{@link PrototypeStatus#setDeadline(long, java.util.concurrent.TimeUnit)}）
  * 
  * @author lj
  *
@@ -58,6 +61,10 @@ public class PreparedSqlMethodAdvisor implements MethodAdvisor {
 		}
 		Class<?>[] types = builder.getParameterTypes();
 		int length = types.length;
+		boolean callback = length > 2 && Consumer.class.equals(types[length - 1]);
+		if (callback) {// 逐行回调
+			length--;
+		}
 		if (length < 2) {
 			errors.add("preparedsql.method.params", builder.toString());
 			return null;
@@ -84,28 +91,48 @@ public class PreparedSqlMethodAdvisor implements MethodAdvisor {
 		if (!rs) {
 			errors.add("preparedsql.method.params", builder.toString(), builder.getName());
 		}
-		return rs ? new PreparedSqlMethodFilter(sql, builder.getAnnotation(Partition.class)) : null;
+		return rs ? new PreparedSqlMethodFilter(sql, builder.getAnnotation(Partition.class), callback) : null;
 	}
 
 	private class PreparedSqlMethodFilter implements MethodFilter<PreparedSql> {
 
 		private PreparedSql preparedSql;
-		private Pattern pattern;
+		private SqlUtil.PartitionResolver partitioner;
+		/**
+		 * 最后一个参数是否为逐行回调（Consumer）
+		 */
+		private boolean callback;
+		/**
+		 * 各列对应的属性路径（匹配方法时拆分）
+		 */
+		private String[][] paths;
+		/**
+		 * 查询结果的行映射（首次查询时按返回类型编译）
+		 */
+		private volatile RowMapper rowMapper;
+		/**
+		 * 插入时生成的ID的读取（首次插入时按返回类型选择）
+		 */
+		private volatile RowMapper.ColumnReader generatedKey;
 
-		public PreparedSqlMethodFilter(PreparedSql preparedSql, Partition partition) {
+		public PreparedSqlMethodFilter(PreparedSql preparedSql, Partition partition, boolean callback) {
 			this.preparedSql = preparedSql;
-			this.pattern=SqlUtil.getPartitionPattern(partition);
+			this.callback = callback;
+			this.partitioner = SqlUtil.getPartitionResolver(partition);
+			this.paths = RowMapper.parsePaths(preparedSql.value());
 		}
 
+		@SuppressWarnings("unchecked")
 		@Override
 		public Object doFilter(Object[] args, MethodChain chain) throws Exception {
 			Connection connection = (Connection) args[0];
 			Object object = (Object) args[1];
+			int length = callback ? args.length - 1 : args.length;
 			String sql = null;
 			Object[] parameters = null;
 			if (String.class.isInstance(object)) {
 				sql = (String) object;
-				parameters = args.length == 3 ? (Object[]) args[2] : new Object[0];
+				parameters = length == 3 ? (Object[]) args[2] : new Object[0];
 			} else {
 				SQLBuilder builder = (SQLBuilder) object;
 				sql = builder.getSql();
@@ -114,19 +141,24 @@ public class PreparedSqlMethodAdvisor implements MethodAdvisor {
 			if (config.isShowSql() || log.isDebugEnabled()) {
 				log.info("Prepared sql : {} , parameters : {}", sql, mapper.writeValueAsString(parameters));
 			}
-			return execute(chain, connection, sql, parameters);
+			return execute(chain, connection, sql, parameters,
+					callback ? (Consumer<Object>) args[args.length - 1] : null);
 		}
 
-		private Object execute(MethodChain chain, Connection connection, String sql, Object[] parameters)
-				throws Exception {
-			SqlUtil.setPartition(pattern,sql, parameters);
-			try (PreparedStatement ps = connection.prepareStatement(sql)) {
-				if (parameters.length > 0) {
-					int k = 1;
-					for (Object parameter : parameters) {
-						setParameter(ps, k++, parameter);
-					}
-				}
+		private Object execute(MethodChain chain, Connection connection, String sql, Object[] parameters,
+				Consumer<Object> consumer) throws Exception {
+			SqlUtil.setPartition(partitioner, sql, parameters);
+			List<Object> values = new ArrayList<>(parameters.length);
+			sql = SqlUtil.expandParameters(sql, parameters, values);// 展开数组及集合参数
+			parameters = values.toArray();
+			if (preparedSql.type() == StatementType.SELECT && (consumer != null || isCursor(chain))) {
+				return getCursorResult(chain, connection, sql, parameters, consumer);
+			}
+			StatementCache cache = StatementCache.of(connection, config.getStatementCacheSize());
+			PreparedStatement ps = cache == null ? connection.prepareStatement(sql) : cache.prepare(sql);
+			try {
+				SqlUtil.setQueryTimeout(ps, sql);
+				setParameters(ps, parameters);
 				switch (preparedSql.type()) {
 				case SELECT:
 					return getSelectResult(ps, sql, chain);
@@ -135,32 +167,136 @@ public class PreparedSqlMethodAdvisor implements MethodAdvisor {
 				default:
 					return getUpdateResult(ps, chain.getMethod().getReturnType());
 				}
+			} finally {
+				if (cache == null) {// 缓存的语句在事务结束时关闭
+					ps.close();
+				}
 			}
 		}
+
+		private boolean isCursor(MethodChain chain) {
+			Class<?> returnType = chain.getMethod().getReturnType();
+			return Iterator.class.equals(returnType) || Stream.class.equals(returnType);
+		}
+
+		/**
+		 * 游标方式的查询结果. <br>
+		 * 使用单独的只向前语句（不缓存）：返回Iterator或Stream时读取完成或关闭时关闭语句，未读取完时在事务结束时关闭
+		 * （需要在事务中调用，否则未读取完的游标无法关闭）；
+		 * 逐行回调时读取完成后关闭，返回值为int/long时返回行数.
+		 * 
+		 * @param chain
+		 *            方法调用链
+		 * @param connection
+		 *            连接
+		 * @param sql
+		 *            SQL
+		 * @param parameters
+		 *            参数
+		 * @param consumer
+		 *            逐行回调，返回Iterator或Stream时为null
+		 * @return 查询结果
+		 * @throws Exception
+		 *             异常
+		 */
+		private Object getCursorResult(MethodChain chain, Connection connection, String sql, Object[] parameters,
+				Consumer<Object> consumer) throws Exception {
+			RowMapper rowMapper = getRowMapper(chain);
+			PrototypeStatus status = PrototypeStatus.getStatus();
+			if (consumer == null && (status == null || status.getTransaction() == null)) {
+				throw new IllegalStateException("Method " + chain.getMethod()
+						+ " returns Iterator or Stream , it must be called in a transaction");
+			}
+			PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			ResultSetIterator<Object> iterator;
+			try {
+				ps.setFetchSize(preparedSql.fetchSize() > 0 ? preparedSql.fetchSize() : config.getFetchSize());
+				SqlUtil.setQueryTimeout(ps, sql);
+				setParameters(ps, parameters);
+				iterator = new ResultSetIterator<>(ps, ps.executeQuery(), rowMapper);
+			} catch (Exception e) {
+				ps.close();
+				throw e;
+			}
+			Class<?> returnType = chain.getMethod().getReturnType();
+			if (consumer == null) {
+				iterator.register(status.getTransaction());
+				log.debug("Execute sql : {} , cursor", sql);
+				return Stream.class.equals(returnType) ? iterator.stream() : iterator;
+			}
+			long count = 0;
+			try (ResultSetIterator<Object> it = iterator) {
+				while (it.hasNext()) {
+					consumer.accept(it.next());
+					count++;
+				}
+			}
+			log.debug("Execute sql : {} , total rows : {}", sql, count);
+			if (int.class.equals(returnType) || Integer.class.equals(returnType)) {
+				return (int) count;
+			} else if (long.class.equals(returnType) || Long.class.equals(returnType)) {
+				return count;
+			}
+			return null;
+		}
+
+		private void setParameters(PreparedStatement ps, Object[] parameters) throws SQLException {
+			int k = 1;
+			for (Object parameter : parameters) {
+				setParameter(ps, k++, parameter);
+			}
+		}
+
 		private void setParameter(PreparedStatement ps, int index, Object value) throws SQLException {
 			if (value == null) {
 				ps.setObject(index, null);
 				return;
 			}
-			if (value.getClass().isArray()) {
-				ps.setString(index, join((Object[]) value));
-			} else if (Collection.class.isInstance(value)) {
-				ps.setString(index, join(((Collection<?>) value).toArray()));
+			if (value instanceof Object[]) {// ANY(?)或UNNEST(?)中的数组参数（见SqlUtil.expandParameters）
+				setArray(ps, index, (Object[]) value);
 			} else {
 				ps.setObject(index, value);
 			}
 		}
 
-		private String join(Object[] value) {
-			StringBuilder rs = new StringBuilder();
-			for (Object o : value) {
-				if (String.class.isInstance(o)) {
-					rs.append(",\"" + o + "\"");
-				} else if (Number.class.isInstance(o) || o.getClass().isPrimitive()) {
-					rs.append("," + o);
-				}
+		/**
+		 * 设置数组参数，驱动不支持创建数组时直接设置对象数组
+		 */
+		private void setArray(PreparedStatement ps, int index, Object[] value) throws SQLException {
+			java.sql.Array array;
+			try {
+				array = ps.getConnection().createArrayOf(getArrayType(value), value);
+			} catch (SQLFeatureNotSupportedException | AbstractMethodError e) {
+				ps.setObject(index, value);
+				return;
+			}
+			ps.setArray(index, array);
+		}
+
+		private String getArrayType(Object[] value) {
+			Object element = null;
+			for (int i = 0; i < value.length && element == null; i++) {
+				element = value[i];
+			}
+			if (element instanceof Integer) {
+				return "INTEGER";
+			} else if (element instanceof Long) {
+				return "BIGINT";
+			} else if (element instanceof Short || element instanceof Byte) {
+				return "SMALLINT";
+			} else if (element instanceof Double) {
+				return "DOUBLE";
+			} else if (element instanceof Float) {
+				return "REAL";
+			} else if (element instanceof Number) {
+				return "NUMERIC";
+			} else if (element instanceof Boolean) {
+				return "BOOLEAN";
+			} else if (element instanceof java.util.Date) {
+				return "TIMESTAMP";
 			}
-			return rs.length() > 0 ? rs.substring(1) : "";
+			return "VARCHAR";
 		}
 
 		/**
@@ -176,9 +312,15 @@ public class PreparedSqlMethodAdvisor implements MethodAdvisor {
 		 */
 		private Object getInsertResult(PreparedStatement ps, Class<?> returnType) throws Exception {
 			if (ps.executeUpdate() > 0 && !void.class.equals(returnType)) {
-				ResultSet set = ps.getGeneratedKeys();
-				if (set.next()) {
-					return getResult(set.getObject(1), returnType);
+				try (ResultSet set = ps.getGeneratedKeys()) {
+					if (set.next()) {
+						RowMapper.ColumnReader reader = generatedKey;
+						if (reader == null) {
+							reader = RowMapper.reader(returnType);
+							generatedKey = reader;
+						}
+						return reader.read(set, 1);
+					}
 				}
 			}
 			return null;
@@ -228,50 +370,81 @@ public class PreparedSqlMethodAdvisor implements MethodAdvisor {
 
 		private Object getSelectResult(PreparedStatement ps, String sql, MethodChain chain) throws Exception {
 			Class<?> returnType = chain.getMethod().getReturnType();
+			RowMapper rowMapper = getRowMapper(chain);
 			try (ResultSet set = ps.executeQuery()) {
 				if (Collection.class.isAssignableFrom(returnType)) {
-					Collection<?> rs = getCollectionResult(set, returnType, chain.getGenericReturnType());
+					Collection<?> rs = getCollectionResult(set, returnType, rowMapper);
 					log.debug("Execute sql : {} , total collection : {}", sql, rs.size());
 					return rs;
 				} else if (Map.class.isAssignableFrom(returnType)) {
-					Map<?, ?> map = getMapResult(set, returnType);
+					Map<?, ?> map = getMapResult(set, returnType, rowMapper);
 					log.debug("Execute sql : {} , total map : {}", sql, map.size());
 					return map;
 				} else if (returnType.isArray()) {
-					Collection<?> list = getCollectionResult(set, returnType, chain.getGenericReturnType());
+					Collection<?> list = getCollectionResult(set, List.class, rowMapper);
 					log.debug("Execute sql : {} , total array : {}", sql, list.size());
-					return list.toArray((Object[]) Array.newInstance(returnType.getComponentType(), list.size()));
+					Object rs = Array.newInstance(returnType.getComponentType(), list.size());
+					int k = 0;
+					for (Object o : list) {
+						Array.set(rs, k++, o);
+					}
+					return rs;
 				} else {
-					Object rs = getSingleResult(set, returnType);
+					Object rs = getSingleResult(set, rowMapper);
 					log.debug("Execute sql : {} , single result : {}", sql, rs != null);
 					return rs;
 				}
 			}
 		}
 
+		/**
+		 * 获取行映射（每个方法只编译一次）
+		 * 
+		 * @param chain
+		 *            方法调用链
+		 * @return 行映射
+		 * @throws Exception
+		 *             异常
+		 */
+		private RowMapper getRowMapper(MethodChain chain) throws Exception {
+			RowMapper rs = rowMapper;
+			if (rs != null) {
+				return rs;
+			}
+			Class<?> returnType = chain.getMethod().getReturnType();
+			Type genericReturnType = chain.getGenericReturnType();
+			if (callback) {
+				Type[] types = chain.getGenericParameterTypes();
+				rs = RowMapper.create(ResolvableType.forType(types[types.length - 1]).getGeneric(0).resolve(Object.class),
+						paths, null);
+			} else if (isCursor(chain)) {
+				rs = RowMapper.create(ResolvableType.forType(genericReturnType).getGeneric(0).resolve(Object.class),
+						paths, null);
+			} else if (Collection.class.isAssignableFrom(returnType)) {
+				ParameterizedType pType = (ParameterizedType) genericReturnType;
+				rs = RowMapper.create((Class<?>) pType.getActualTypeArguments()[0], paths, null);
+			} else if (Map.class.isAssignableFrom(returnType)) {
+				ResolvableType type = ResolvableType.forType(genericReturnType).as(Map.class);
+				rs = RowMapper.create(type.getGeneric(1).resolve(Object.class), paths,
+						type.getGeneric(0).resolve(Object.class));
+			} else if (returnType.isArray()) {
+				rs = RowMapper.create(returnType.getComponentType(), paths, null);
+			} else {
+				rs = RowMapper.create(returnType, paths, null);
+			}
+			rowMapper = rs;
+			return rs;
+		}
+
 		@SuppressWarnings({ "rawtypes", "unchecked" })
-		private Map getMapResult(ResultSet set, Class<?> returnType) throws Exception {
-			ResolvableType type = ResolvableType.forClass(returnType).as(Map.class);
-			Class<?> keyType = type.getGeneric(0).resolve();
-			Class<?> valueType = type.getGeneric(1).resolve();
+		private Map getMapResult(ResultSet set, Class<?> returnType, RowMapper rowMapper) throws Exception {
 			Map map = createMap(returnType);
 			while (set.next()) {
-				map.put(wrapResult(set.getObject(1), keyType), getNextResult(set, valueType));
+				map.put(rowMapper.mapKey(set), rowMapper.map(set));
 			}
 			return map;
 		}
 
-		private Object wrapResult(Object object, Class<?> resultType) throws NoSuchMethodException,
-				InvocationTargetException, IllegalAccessException, InstantiationException {
-			if (resultType.isInstance(object)) {
-				return object;
-			}
-			if (resultType.isPrimitive()) {
-				resultType = MethodUtils.getWrapperClass(resultType);
-			}
-			return resultType.getConstructor(String.class).newInstance(object.toString());
-		}
-
 		private Map<?, ?> createMap(Class<?> returnType) throws Exception {
 			if (returnType.isInterface()) {
 				return new LinkedHashMap<>();
@@ -280,12 +453,11 @@ public class PreparedSqlMethodAdvisor implements MethodAdvisor {
 		}
 
 		@SuppressWarnings({ "rawtypes", "unchecked" })
-		private Collection getCollectionResult(ResultSet set, Class<?> returnType, Type type) throws Exception {
+		private Collection getCollectionResult(ResultSet set, Class<?> returnType, RowMapper rowMapper)
+				throws Exception {
 			Collection rs = createCollection(returnType);
-			ParameterizedType pType = (ParameterizedType) type;
-			Class<?> clazz = (Class<?>) pType.getActualTypeArguments()[0];
 			while (set.next()) {
-				rs.add(getNextResult(set, clazz));
+				rs.add(rowMapper.map(set));
 			}
 			return rs;
 		}
@@ -300,41 +472,13 @@ public class PreparedSqlMethodAdvisor implements MethodAdvisor {
 			}
 		}
 
-		private Object getSingleResult(ResultSet set, Class<?> returnType) throws Exception {
+		private Object getSingleResult(ResultSet set, RowMapper rowMapper) throws Exception {
 			if (set.next()) {
-				return getNextResult(set, returnType);
+				return rowMapper.map(set);
 			}
 			return null;
 		}
 
-		private Object getNextResult(ResultSet set, Class<?> objectType) throws Exception {
-			if (objectType.isPrimitive() || Number.class.isAssignableFrom(objectType)) {
-				return getResult(set.getObject(1), objectType);
-			}
-			Object rs = objectType.newInstance();
-			int k = 1;
-			for (String name : preparedSql.value()) {
-				setProperty(rs, name, set.getObject(k++));
-			}
-			return rs;
-		}
-
-		private void setProperty(Object object, String name, Object value) throws Exception {
-			int k = name.indexOf('.');
-			if (k == -1) {
-				Property property = ClassUtils.properties(object.getClass()).get(name);
-				property.setValue(object, value);
-			} else {
-				Property property = ClassUtils.properties(object.getClass()).get(name.substring(0, k));
-				Object v = property.getValue(object);
-				if (v == null) {
-					v = property.getType().newInstance();
-					property.setValue(object, v);
-				}
-				setProperty(v, name.substring(k + 1), value);
-			}
-		}
-
 	}
 
 }
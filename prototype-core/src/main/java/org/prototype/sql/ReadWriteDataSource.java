@@ -15,26 +15,50 @@
  */
 package org.prototype.sql;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
 import org.prototype.core.PrototypeStatus;
 import org.prototype.core.PrototypeStatus.TransactionStatus;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
 import org.springframework.util.Assert;
 
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * 读写数据源. <br>
  * 自动根据事务状态切换读或写数据源.
+ * <pre>
+ * 1、数据分区：设置了分区数据源（shards）且事务状态中有数据分区（见{@link Partition}）时，按分区值的一致性哈希选择分区数据源（分区数据源也可以是读写数据源）；
+ * 2、只读事务使用只读数据源（readDataSource及readDataSources，可由readWeights设置权重），按(活动连接数+1)/权重最小选择，相同时轮流使用；
+ *    设置了健康检查（{@link ReplicaProbe}）时定时检查，复制延迟超过maxLag或检查异常的只读数据源不再使用，没有可用的只读数据源时使用写数据源；
+ * 3、其它使用写数据源.
+ * 获取连接时选择数据源，需要在执行SQL时才按数据分区选择时，可使用Spring的LazyConnectionDataSourceProxy包装此数据源.
+ * </pre>
  * 
  * @author lj
  *
  */
-public class ReadWriteDataSource extends AbstractRoutingDataSource {
+@Slf4j
+public class ReadWriteDataSource extends AbstractRoutingDataSource implements DisposableBean {
 
 	private static final String[] NAMES = { "writeDataSource", "readDataSource" };
 
@@ -42,6 +66,49 @@ public class ReadWriteDataSource extends AbstractRoutingDataSource {
 	private DataSource writeDataSource;
 	@Setter
 	private DataSource readDataSource;
+	/**
+	 * 更多的只读数据源
+	 */
+	@Setter
+	private List<DataSource> readDataSources;
+	/**
+	 * 只读数据源的权重（与readDataSource及readDataSources的顺序一致，默认为1）
+	 */
+	@Setter
+	private int[] readWeights;
+	/**
+	 * 分区数据源（分区名称与数据源）
+	 */
+	@Setter
+	private Map<String, DataSource> shards;
+	/**
+	 * 每个分区在哈希环上的虚拟节点数
+	 */
+	@Setter
+	private int virtualNodes = 160;
+	/**
+	 * 只读数据源的健康检查
+	 */
+	@Setter
+	private ReplicaProbe probe;
+	/**
+	 * 健康检查的间隔（毫秒），不大于0时不定时检查（见{@link #checkReplicas()}）
+	 */
+	@Setter
+	private long probeInterval = 5000;
+	/**
+	 * 允许的最大复制延迟（毫秒）
+	 */
+	@Setter
+	private long maxLag = 1000;
+
+	private Replica[] replicas;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	private ConsistentHash<DataSource> ring;
+
+	private ScheduledExecutorService scheduler;
 
 	/**
 	 * 准备读写分离数据源
@@ -49,24 +116,197 @@ public class ReadWriteDataSource extends AbstractRoutingDataSource {
 	@Override
 	public void afterPropertiesSet() {
 		Assert.notNull(writeDataSource);
-		Assert.notNull(readDataSource);
+		List<DataSource> reads = new ArrayList<>();
+		if (readDataSource != null) {
+			reads.add(readDataSource);
+		}
+		if (readDataSources != null) {
+			reads.addAll(readDataSources);
+		}
+		Assert.notEmpty(reads);
+		replicas = new Replica[reads.size()];
+		for (int i = 0; i < replicas.length; i++) {
+			int weight = readWeights != null && i < readWeights.length ? readWeights[i] : 1;
+			Assert.isTrue(weight > 0);
+			replicas[i] = new Replica(reads.get(i), weight);
+		}
 		Map<Object, Object> targetDataSources = new HashMap<>();
-		targetDataSources.put(writeDataSource, writeDataSource);
-		targetDataSources.put(readDataSource, readDataSource);
+		targetDataSources.put(NAMES[0], writeDataSource);
+		targetDataSources.put(NAMES[1], reads.get(0));
+		if (shards != null && !shards.isEmpty()) {
+			ring = new ConsistentHash<>(new LinkedHashMap<>(shards), virtualNodes);
+		}
 		setTargetDataSources(targetDataSources);
+		setDefaultTargetDataSource(writeDataSource);
 		super.afterPropertiesSet();
+		if (probe != null && probeInterval > 0) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "replica-probe");
+				thread.setDaemon(true);
+				return thread;
+			});
+			scheduler.scheduleWithFixedDelay(this::checkReplicas, 0, probeInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	/**
+	 * 检查只读数据源（设置了健康检查时按probeInterval定时调用）
+	 */
+	public void checkReplicas() {
+		Assert.notNull(probe, "ReplicaProbe is required");
+		for (Replica replica : replicas) {
+			boolean available;
+			try {
+				long lag = probe.getLag(replica.dataSource);
+				available = lag <= maxLag;
+				if (!available) {
+					log.warn("Replica {} lag {} ms exceeds {} ms", replica.dataSource, lag, maxLag);
+				}
+			} catch (Exception e) {
+				log.warn("Replica " + replica.dataSource + " probe failed", e);
+				available = false;
+			}
+			replica.available = available;
+		}
 	}
 
 	/**
-	 * 根据线程变量PrototypeStatus中的读写区分数据源
+	 * 根据线程变量PrototypeStatus中的读写区分数据源（数据源由{@link #determineTargetDataSource()}直接选择，
+	 * 分区数据源及其它只读数据源不在targetDataSources中）
 	 */
 	@Override
 	protected Object determineCurrentLookupKey() {
+		TransactionStatus trans = getTransaction();
+		return trans != null && trans.isReadOnly() ? NAMES[1] : NAMES[0];
+	}
+
+	private TransactionStatus getTransaction() {
 		PrototypeStatus status = PrototypeStatus.getStatus();
-		Assert.notNull(status);
-		TransactionStatus trans = status.getTransaction();
-		Assert.notNull(trans);
-		return trans.isReadOnly() ? NAMES[1] : NAMES[0];
+		return status == null ? null : status.getTransaction();
+	}
+
+	@Override
+	protected DataSource determineTargetDataSource() {
+		TransactionStatus trans = getTransaction();
+		if (trans == null) {
+			return writeDataSource;
+		} else if (ring != null && trans.getPartion() != null) {
+			return ring.get(trans.getPartion());
+		} else if (trans.isReadOnly()) {
+			Replica replica = selectReplica();
+			return replica == null ? writeDataSource : replica.dataSource;
+		}
+		return writeDataSource;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return getConnection(null, null);
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		TransactionStatus trans = getTransaction();
+		if (trans == null || !trans.isReadOnly() || (ring != null && trans.getPartion() != null)) {
+			DataSource target = determineTargetDataSource();
+			return username == null ? target.getConnection() : target.getConnection(username, password);
+		}
+		Replica replica = selectReplica();
+		if (replica == null) {
+			return username == null ? writeDataSource.getConnection()
+					: writeDataSource.getConnection(username, password);
+		}
+		return replica.getConnection(username, password);
+	}
+
+	/**
+	 * 选择只读数据源：可用的数据源中(活动连接数+1)/权重最小的，相同时从轮流的位置开始选择
+	 * 
+	 * @return 只读数据源，没有可用的时为null
+	 */
+	private Replica selectReplica() {
+		int n = replicas.length;
+		int start = (next.getAndIncrement() & Integer.MAX_VALUE) % n;
+		Replica rs = null;
+		long score = 0;
+		for (int i = 0; i < n; i++) {
+			Replica replica = replicas[(start + i) % n];
+			if (!replica.available) {
+				continue;
+			}
+			long active = replica.active.get() + 1;
+			// active / weight < score / rs.weight
+			if (rs == null || active * rs.weight < score * replica.weight) {
+				rs = replica;
+				score = active;
+			}
+		}
+		return rs;
+	}
+
+	/**
+	 * 只读数据源
+	 */
+	private static final class Replica {
+
+		private final DataSource dataSource;
+
+		private final int weight;
+
+		/**
+		 * 活动（未关闭）的连接数
+		 */
+		private final AtomicInteger active = new AtomicInteger();
+
+		private volatile boolean available = true;
+
+		Replica(DataSource dataSource, int weight) {
+			this.dataSource = dataSource;
+			this.weight = weight;
+		}
+
+		/**
+		 * 获取连接（关闭时减少活动连接数）
+		 */
+		Connection getConnection(String username, String password) throws SQLException {
+			Connection connection = username == null ? dataSource.getConnection()
+					: dataSource.getConnection(username, password);
+			active.incrementAndGet();
+			AtomicBoolean closed = new AtomicBoolean();
+			InvocationHandler handler = (proxy, method, args) -> {
+				switch (method.getName()) {
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "close":
+					if (closed.compareAndSet(false, true)) {
+						active.decrementAndGet();
+					}
+					break;
+				default:
+					break;
+				}
+				return invoke(connection, method, args);
+			};
+			return (Connection) Proxy.newProxyInstance(ReadWriteDataSource.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, handler);
+		}
+
+		private static Object invoke(Connection connection, Method method, Object[] args) throws Throwable {
+			try {
+				return method.invoke(connection, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		}
 	}
 
 }
@@ -0,0 +1,24 @@
+package org.prototype.sql;
+
+import javax.sql.DataSource;
+
+/**
+ * 只读数据源的健康检查. <br>
+ * 由{@link ReadWriteDataSource}定时调用，复制延迟超出最大值或检查异常的只读数据源不再使用，直到检查恢复正常.
+ *
+ * @author lj
+ *
+ */
+public interface ReplicaProbe {
+
+	/**
+	 * 获取只读数据源的复制延迟
+	 *
+	 * @param dataSource
+	 *            只读数据源
+	 * @return 复制延迟（毫秒）
+	 * @throws Exception
+	 *             检查异常（视为不可用）
+	 */
+	long getLag(DataSource dataSource) throws Exception;
+}
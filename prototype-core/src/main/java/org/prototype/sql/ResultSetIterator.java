@@ -0,0 +1,135 @@
+package org.prototype.sql;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.prototype.core.PrototypeStatus;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 查询结果的游标迭代. <br>
+ * 逐行读取只向前的ResultSet并由行映射转换，读取完成、出错或调用{@link #close()}时关闭结果集及语句，
+ * 并从事务的资源中移除（未读取完的在事务结束时关闭）.
+ *
+ * @author lj
+ *
+ * @param <T>
+ *            行的类型
+ */
+@Slf4j
+final class ResultSetIterator<T> implements Iterator<T>, AutoCloseable {
+
+	private final PreparedStatement statement;
+
+	private final ResultSet set;
+
+	private final RowMapper rowMapper;
+
+	/**
+	 * 注册了此游标的事务（逐行回调时为null）
+	 */
+	private PrototypeStatus.TransactionStatus transaction;
+
+	/**
+	 * 是否已移动到下一行（未读取）
+	 */
+	private boolean fetched;
+
+	private boolean closed;
+
+	ResultSetIterator(PreparedStatement statement, ResultSet set, RowMapper rowMapper) {
+		this.statement = statement;
+		this.set = set;
+		this.rowMapper = rowMapper;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (fetched) {
+			return true;
+		} else if (closed) {
+			return false;
+		}
+		try {
+			fetched = set.next();
+		} catch (SQLException e) {
+			close();
+			throw new RuntimeException("Read result set error", e);
+		}
+		if (!fetched) {
+			close();
+		}
+		return fetched;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		fetched = false;
+		try {
+			return (T) rowMapper.map(set);
+		} catch (RuntimeException e) {
+			close();
+			throw e;
+		} catch (Exception e) {
+			close();
+			throw new RuntimeException("Read result set error", e);
+		}
+	}
+
+	/**
+	 * 注册到事务的资源中，事务结束时关闭
+	 *
+	 * @param transaction
+	 *            事务
+	 */
+	void register(PrototypeStatus.TransactionStatus transaction) {
+		this.transaction = transaction;
+		transaction.putResource(this, this);
+	}
+
+	/**
+	 * 转换为Stream（关闭Stream时关闭游标）
+	 *
+	 * @return Stream
+	 */
+	Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+				.onClose(this::close);
+	}
+
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		fetched = false;
+		if (transaction != null) {
+			transaction.removeResource(this);
+		}
+		try {
+			set.close();
+		} catch (SQLException e) {
+			log.warn("Close result set error", e);
+		} finally {
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				log.warn("Close prepared statement error", e);
+			}
+		}
+	}
+
+}
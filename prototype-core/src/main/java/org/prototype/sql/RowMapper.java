@@ -0,0 +1,348 @@
+package org.prototype.sql;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.util.Date;
+import java.util.Map;
+
+import org.prototype.reflect.ClassUtils;
+import org.prototype.reflect.MethodUtils;
+import org.prototype.reflect.Property;
+
+/**
+ * 查询结果的行映射. <br>
+ *
+ * <pre>
+ * 每个PreparedSql方法在首次执行时按返回的元素类型编译一次（属性路径在匹配方法时已拆分）：
+ * 1、基本类型、Number及没有指定属性名时的字符串、日期、枚举等简单类型：按类型调用ResultSet的getInt/getLong/getString等方法读取第一列；
+ * 2、其它类型：创建对象后，按PreparedSql注解的属性名（支持a.b.c形式）将各列按属性类型读取后直接写入属性，中间对象为null时创建.
+ * 列值为null时不设置基本类型的属性，基本类型的行（如返回int或int[]的元素）为默认值（0或false）；
+ * 其它Number类型不是读取到的类型时，由参数为String的构造方法转换.
+ * </pre>
+ *
+ * @author lj
+ *
+ */
+final class RowMapper {
+
+	private static final Class<?>[] SIMPLE_TYPES = { String.class, Boolean.class, boolean.class, Character.class,
+			char.class, byte[].class };
+
+	/**
+	 * 简单类型时第一列的读取
+	 */
+	private final ColumnReader scalar;
+
+	/**
+	 * 映射为Map时键（第一列）的读取
+	 */
+	private final ColumnReader key;
+
+	private final Constructor<?> constructor;
+
+	private final ColumnSetter[] setters;
+
+	private RowMapper(ColumnReader scalar, ColumnReader key, Constructor<?> constructor, ColumnSetter[] setters) {
+		this.scalar = scalar;
+		this.key = key;
+		this.constructor = constructor;
+		this.setters = setters;
+	}
+
+	/**
+	 * 拆分属性名为属性路径
+	 *
+	 * @param names
+	 *            属性名（支持a.b.c形式）
+	 * @return 属性路径
+	 */
+	static String[][] parsePaths(String[] names) {
+		String[][] rs = new String[names.length][];
+		for (int i = 0; i < names.length; i++) {
+			rs[i] = names[i].split("\\.");
+		}
+		return rs;
+	}
+
+	/**
+	 * 编译行映射
+	 *
+	 * @param type
+	 *            行的类型
+	 * @param paths
+	 *            各列对应的属性路径
+	 * @param keyType
+	 *            映射为Map时键的类型，其它为null
+	 * @return 行映射
+	 * @throws Exception
+	 *             属性不存在或没有无参数的构造方法等
+	 */
+	static RowMapper create(Class<?> type, String[][] paths, Class<?> keyType) throws Exception {
+		ColumnReader key = keyType == null ? null : reader(keyType);
+		if (isScalar(type, paths)) {
+			return new RowMapper(type.isPrimitive() ? defaultReader(type) : reader(type), key, null, null);
+		}
+		Constructor<?> constructor = getConstructor(type);
+		ColumnSetter[] setters = new ColumnSetter[paths.length];
+		for (int i = 0; i < paths.length; i++) {
+			setters[i] = new ColumnSetter(type, paths[i], i + 1);
+		}
+		return new RowMapper(null, key, constructor, setters);
+	}
+
+	/**
+	 * 基本类型的读取，列值为null时返回默认值
+	 */
+	private static ColumnReader defaultReader(Class<?> type) {
+		ColumnReader reader = reader(type);
+		Object defaultValue = Array.get(Array.newInstance(type, 1), 0);
+		return (set, index) -> {
+			Object v = reader.read(set, index);
+			return v == null ? defaultValue : v;
+		};
+	}
+
+	private static boolean isScalar(Class<?> type, String[][] paths) {
+		if (type.isPrimitive() || Number.class.isAssignableFrom(type)) {
+			return true;
+		} else if (paths.length > 0) {
+			return false;
+		}
+		for (Class<?> clazz : SIMPLE_TYPES) {
+			if (clazz == type) {
+				return true;
+			}
+		}
+		return type.isEnum() || Date.class.isAssignableFrom(type);
+	}
+
+	private static Constructor<?> getConstructor(Class<?> type) throws NoSuchMethodException {
+		Constructor<?> rs = type.getDeclaredConstructor();
+		rs.setAccessible(true);
+		return rs;
+	}
+
+	/**
+	 * 读取当前行
+	 *
+	 * @param set
+	 *            结果集
+	 * @return 行对应的对象
+	 * @throws Exception
+	 *             异常
+	 */
+	Object map(ResultSet set) throws Exception {
+		if (scalar != null) {
+			return scalar.read(set, 1);
+		}
+		Object rs = constructor.newInstance();
+		for (ColumnSetter setter : setters) {
+			setter.set(set, rs);
+		}
+		return rs;
+	}
+
+	/**
+	 * 读取当前行的键（第一列）
+	 *
+	 * @param set
+	 *            结果集
+	 * @return 键
+	 * @throws Exception
+	 *             异常
+	 */
+	Object mapKey(ResultSet set) throws Exception {
+		return key.read(set, 1);
+	}
+
+	/**
+	 * 按类型选择列的读取方法
+	 *
+	 * @param type
+	 *            类型
+	 * @return 列的读取
+	 */
+	static ColumnReader reader(Class<?> type) {
+		Class<?> wrapper = type.isPrimitive() ? MethodUtils.getWrapperClass(type) : type;
+		if (Integer.class == wrapper) {
+			return (set, index) -> {
+				int v = set.getInt(index);
+				return v == 0 && set.wasNull() ? null : v;
+			};
+		} else if (Long.class == wrapper) {
+			return (set, index) -> {
+				long v = set.getLong(index);
+				return v == 0 && set.wasNull() ? null : v;
+			};
+		} else if (Short.class == wrapper) {
+			return (set, index) -> {
+				short v = set.getShort(index);
+				return v == 0 && set.wasNull() ? null : v;
+			};
+		} else if (Byte.class == wrapper) {
+			return (set, index) -> {
+				byte v = set.getByte(index);
+				return v == 0 && set.wasNull() ? null : v;
+			};
+		} else if (Double.class == wrapper) {
+			return (set, index) -> {
+				double v = set.getDouble(index);
+				return v == 0 && set.wasNull() ? null : v;
+			};
+		} else if (Float.class == wrapper) {
+			return (set, index) -> {
+				float v = set.getFloat(index);
+				return v == 0 && set.wasNull() ? null : v;
+			};
+		} else if (Boolean.class == wrapper) {
+			return (set, index) -> {
+				boolean v = set.getBoolean(index);
+				return !v && set.wasNull() ? null : v;
+			};
+		} else if (BigDecimal.class == wrapper) {
+			return ResultSet::getBigDecimal;
+		} else if (String.class == wrapper) {
+			return ResultSet::getString;
+		} else if (byte[].class == wrapper) {
+			return ResultSet::getBytes;
+		} else if (java.sql.Timestamp.class == wrapper) {
+			return ResultSet::getTimestamp;
+		} else if (java.sql.Date.class == wrapper) {
+			return ResultSet::getDate;
+		} else if (java.sql.Time.class == wrapper) {
+			return ResultSet::getTime;
+		} else if (wrapper.isEnum()) {
+			return enumReader(wrapper);
+		} else if (Number.class.isAssignableFrom(wrapper) || Character.class == wrapper) {
+			return new ConvertReader(wrapper);
+		}
+		return ResultSet::getObject;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static ColumnReader enumReader(Class<?> type) {
+		Class<? extends Enum> enumType = (Class<? extends Enum>) type;
+		return (set, index) -> {
+			String v = set.getString(index);
+			return v == null ? null : Enum.valueOf(enumType, v);
+		};
+	}
+
+	/**
+	 * 列的读取
+	 */
+	@FunctionalInterface
+	interface ColumnReader {
+
+		/**
+		 * 读取当前行的一列
+		 *
+		 * @param set
+		 *            结果集
+		 * @param index
+		 *            列序号（从1开始）
+		 * @return 列值
+		 * @throws Exception
+		 *             异常
+		 */
+		Object read(ResultSet set, int index) throws Exception;
+	}
+
+	/**
+	 * 读取对象后，不是指定类型时由参数为String的构造方法转换（如BigInteger）
+	 */
+	private static final class ConvertReader implements ColumnReader {
+
+		private final Class<?> type;
+
+		private volatile Constructor<?> constructor;
+
+		ConvertReader(Class<?> type) {
+			this.type = type;
+		}
+
+		@Override
+		public Object read(ResultSet set, int index) throws Exception {
+			Object v = set.getObject(index);
+			if (v == null || type.isInstance(v)) {
+				return v;
+			} else if (Character.class == type) {
+				return v.toString().charAt(0);
+			}
+			Constructor<?> c = constructor;
+			if (c == null) {
+				c = type.getConstructor(String.class);
+				constructor = c;
+			}
+			return c.newInstance(v.toString());
+		}
+	}
+
+	/**
+	 * 一列对应的属性路径的写入
+	 */
+	private static final class ColumnSetter {
+
+		private final int index;
+
+		/**
+		 * 路径中的中间属性
+		 */
+		private final Property[] parents;
+
+		/**
+		 * 中间属性为null时使用的构造方法
+		 */
+		private final Constructor<?>[] constructors;
+
+		private final Property property;
+
+		private final ColumnReader reader;
+
+		private final boolean primitive;
+
+		ColumnSetter(Class<?> type, String[] path, int index) throws Exception {
+			this.index = index;
+			parents = new Property[path.length - 1];
+			constructors = new Constructor<?>[parents.length];
+			Class<?> clazz = type;
+			for (int i = 0; i < parents.length; i++) {
+				parents[i] = getProperty(clazz, path[i]);
+				clazz = parents[i].getType();
+				constructors[i] = getConstructor(clazz);
+			}
+			property = getProperty(clazz, path[path.length - 1]);
+			reader = reader(property.getType());
+			primitive = property.getType().isPrimitive();
+		}
+
+		private static Property getProperty(Class<?> type, String name) {
+			Map<String, Property> properties = ClassUtils.properties(type);
+			Property rs = properties.get(name);
+			if (rs == null) {
+				throw new NullPointerException("Property " + name + " not found in " + type.getName());
+			}
+			return rs;
+		}
+
+		void set(ResultSet set, Object object) throws Exception {
+			Object value = reader.read(set, index);
+			if (value == null && primitive) {
+				return;
+			}
+			Object target = object;
+			for (int i = 0; i < parents.length; i++) {
+				Object v = parents[i].getValue(target);
+				if (v == null) {
+					v = constructors[i].newInstance();
+					parents[i].setValue(target, v);
+				}
+				target = v;
+			}
+			property.setValue(target, value);
+		}
+	}
+
+}
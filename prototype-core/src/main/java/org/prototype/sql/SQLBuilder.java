@@ -1,5 +1,6 @@
 package org.prototype.sql;
 
+import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -10,6 +11,7 @@ import org.springframework.util.Assert;
 
 /**
  * sql构建器. <br>
+ * 数组或集合参数在执行时展开为多个占位符（见{@link PreparedSql}），如appendWhenNotEmpty(ids, "and id in")得到"and id in ?"，执行时为"and id in (?,?,?,?)".
  * 
  * @author lj
  *
@@ -73,7 +75,7 @@ public class SQLBuilder {
 	}
 
 	/**
-	 * 添加参数和SQL片断
+	 * 添加参数和SQL片断（参数为数组或集合且SQL片断中没有占位符时，添加占位符）
 	 * 
 	 * @param param
 	 *            参数
@@ -84,6 +86,9 @@ public class SQLBuilder {
 	public SQLBuilder append(Object param, String snippet) {
 		Assert.notNull(param);
 		params.add(param);
+		if ((param instanceof Collection || param.getClass().isArray()) && snippet.indexOf('?') == -1) {
+			return append(snippet.trim() + " ?");
+		}
 		return append(snippet);
 	}
 
@@ -145,7 +150,7 @@ public class SQLBuilder {
 			Collection<?> coll = (Collection<?>) object;
 			return coll.isEmpty();
 		} else if (object.getClass().isArray()) {
-			return ((Object[]) object).length == 0;
+			return Array.getLength(object) == 0;
 		} else if (Map.class.isInstance(object)) {
 			Map<?, ?> map = (Map<?, ?>) object;
 			return map.isEmpty();
@@ -17,4 +17,12 @@ public class SqlConfiguration {
 
 	private boolean showSql;
 	private int batchSize=100;
+	/**
+	 * 每个事务中每个连接缓存的预处理语句数，0不缓存
+	 */
+	private int statementCacheSize=32;
+	/**
+	 * 游标方式查询（见{@link PreparedSql#fetchSize()}）的默认fetchSize
+	 */
+	private int fetchSize=100;
 }
@@ -1,6 +1,14 @@
 package org.prototype.sql;
 
+import java.lang.reflect.Array;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -19,22 +27,22 @@ import lombok.extern.slf4j.Slf4j;
 class SqlUtil {
 	
 	/**
-	 * 获取分区SQL表达式
+	 * 获取分区值的解析
 	 * @param partition 分区注解
-	 * @return SQL表达式
+	 * @return 分区值的解析，没有分区注解时为null
 	 */
-	static Pattern getPartitionPattern(Partition partition){
-		return partition == null ? null : Pattern.compile(" " + partition.value() + "\\s*(=|(in)).*\\s*");		
+	static PartitionResolver getPartitionResolver(Partition partition){
+		return partition == null ? null : new PartitionResolver(partition);
 	}
 
 	/**
 	 * 设定分区值
-	 * @param pattern 表达式
+	 * @param resolver 分区值的解析
 	 * @param sql SQL
 	 * @param parameters 参数
 	 */
-	static void setPartition(Pattern pattern,String sql, Object[] parameters) {
-		if (pattern == null) {
+	static void setPartition(PartitionResolver resolver,String sql, Object[] parameters) {
+		if (resolver == null) {
 			return;
 		}
 		TransactionStatus trans = PrototypeStatus.getStatus().getTransaction();
@@ -42,35 +50,305 @@ class SqlUtil {
 		if (trans.getPartion() != null) {
 			return;
 		}
-		Matcher matcher = pattern.matcher(sql);
-		if (!matcher.find()) {
+		String value = resolver.getDescriptor(sql).resolve(parameters);
+		if (value != null) {
+			trans.setPartion(value);
+		}
+		log.debug("Prepared sql : {} , use partition {}", sql, trans.getPartion());
+	}
+
+	/**
+	 * 按业务的截止时间设定查询超时（秒，不足1秒按1秒），没有截止时间时不设定
+	 * @param statement 语句
+	 * @param sql SQL
+	 * @throws SQLException 已超过截止时间时为SQLTimeoutException
+	 */
+	static void setQueryTimeout(Statement statement, String sql) throws SQLException {
+		PrototypeStatus status = PrototypeStatus.getStatus();
+		if (status == null || !status.hasDeadline()) {
 			return;
 		}
-		String str = sql.substring(matcher.start(), matcher.end()).trim();
-		int m = str.indexOf('=');
-		int n = m == -1 ? str.indexOf(" in") : -1;
-		boolean in = m == -1;
-		String value = in?str.substring(n+3):str.substring(m+1);
-		if (value.indexOf('?') == -1) {
-			trans.setPartion(value);
-		} else if(parameters!=null){
-			int index = countParameters(sql.substring(0, matcher.start()));
-			Object parameter = parameters[index];
-			if (parameter == null) {
-				return;
+		long remaining = status.getRemainingNanos();
+		if (remaining <= 0) {
+			throw new SQLTimeoutException("Business " + status + " deadline exceeded before execute : " + sql);
+		}
+		long seconds = (remaining + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+		statement.setQueryTimeout((int) Math.min(seconds, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * 分区值的解析. <br>
+	 * 每个不同的SQL只用正则表达式解析一次（记录分区值为常量或第几个参数），之后按参数位置直接取值；
+	 * 缓存的SQL数量超出{@link #MAX_CACHED}时（如拼接了参数值的动态SQL）不再缓存新的SQL.
+	 */
+	static final class PartitionResolver {
+
+		private static final int MAX_CACHED = 256;
+
+		private final Pattern pattern;
+
+		private final Map<String, PartitionDescriptor> descriptors = new ConcurrentHashMap<>();
+
+		private PartitionResolver(Partition partition) {
+			this.pattern = Pattern.compile(" " + partition.value() + "\\s*(=|(in)).*\\s*");
+		}
+
+		/**
+		 * 获取SQL的分区描述
+		 * @param sql SQL
+		 * @return 分区描述
+		 */
+		PartitionDescriptor getDescriptor(String sql) {
+			PartitionDescriptor rs = descriptors.get(sql);
+			if (rs == null) {
+				rs = parse(sql);
+				if (descriptors.size() < MAX_CACHED) {
+					descriptors.putIfAbsent(sql, rs);
+				}
+			}
+			return rs;
+		}
+
+		private PartitionDescriptor parse(String sql) {
+			Matcher matcher = pattern.matcher(sql);
+			if (!matcher.find()) {
+				return PartitionDescriptor.NONE;
 			}
+			String str = sql.substring(matcher.start(), matcher.end()).trim();
+			int m = str.indexOf('=');
+			int n = m == -1 ? str.indexOf(" in") : -1;
+			boolean in = m == -1;
+			String value = in ? str.substring(n + 3) : str.substring(m + 1);
+			if (value.indexOf('?') == -1) {
+				return new PartitionDescriptor(value, -1, in);
+			}
+			return new PartitionDescriptor(null, countParameters(sql.substring(0, matcher.start())), in);
+		}
+	}
+
+	/**
+	 * 一个SQL的分区描述：分区值为常量或第几个参数
+	 */
+	static final class PartitionDescriptor {
+
+		/**
+		 * SQL中没有分区字段的条件
+		 */
+		static final PartitionDescriptor NONE = new PartitionDescriptor(null, -1, false);
+
+		private final String literal;
+
+		private final int index;
+
+		/**
+		 * 是否为in条件
+		 */
+		private final boolean in;
+
+		private PartitionDescriptor(String literal, int index, boolean in) {
+			this.literal = literal;
+			this.index = index;
+			this.in = in;
+		}
+
+		/**
+		 * 获取分区值
+		 * @param parameters 参数
+		 * @return 分区值，不能确定时为null
+		 */
+		String resolve(Object[] parameters) {
+			if (literal != null || index < 0) {
+				return literal;
+			} else if (parameters == null || index >= parameters.length || parameters[index] == null) {
+				return null;
+			}
+			Object parameter = parameters[index];
 			if (!in) {
-				trans.setPartion(parameter.toString());
-			} else if (Collection.class.isInstance(parameter)) {// where in
-				trans.setPartion(((Collection<?>) parameter).iterator().next().toString());
-			} else {// where in
-				String v = parameter.toString().split("[,]")[0];
-				trans.setPartion(v.charAt(0) == '\'' ? (v.substring(1, v.length() - 1)) : v);
+				return parameter.toString();
 			}
+			Object[] items = toArray(parameter);
+			if (items != null) {// where in
+				return items.length > 0 && items[0] != null ? items[0].toString() : null;
+			}
+			String v = parameter.toString().split("[,]")[0];// where in
+			return v.length() > 1 && v.charAt(0) == '\'' ? v.substring(1, v.length() - 1) : v;
 		}
-		log.debug("Prepared sql : {} , use partition {}", sql, trans.getPartion());
 	}
 
+	/**
+	 * 展开SQL中的数组及集合参数. <br>
+	 * <pre>
+	 * 数组或集合参数对应的一个占位符展开为多个（如id in (?)或id in ?展开为id in (?,?,?,?)），
+	 * 个数按1/4/16/64/256（超出时为256的倍数）分级，不足时以最后一个值补齐，使同一SQL的不同语句数量有限（便于语句缓存）；
+	 * 空数组或集合在IN中展开为一个null值（IN (NULL)不匹配任何行），在NOT IN中抛出IllegalArgumentException
+	 * （NOT IN (NULL)同样不匹配任何行，与期望相反；可用{@link SQLBuilder#appendWhenNotEmpty}省略条件）.
+	 * 位于ANY(?)或UNNEST(?)中的参数不展开，转换为对象数组（由数据库的数组类型传递）. byte[]不作为数组处理.
+	 * 字符串、双引号中的标识符及注释（--及/* *&#47;）中的?不是占位符.
+	 * </pre>
+	 * @param sql SQL
+	 * @param parameters 参数
+	 * @param values 展开后的参数
+	 * @return 展开后的SQL，没有需要展开的参数时为原SQL
+	 */
+	static String expandParameters(String sql, Object[] parameters, List<Object> values) {
+		StringBuilder rs = null;
+		int index = 0;
+		int last = 0;
+		for (int i = 0, n = sql.length(); i < n; i++) {
+			int end = skip(sql, i);
+			if (end != i) {
+				i = end;
+				continue;
+			} else if (sql.charAt(i) != '?' || index >= parameters.length) {
+				continue;
+			}
+			Object parameter = parameters[index++];
+			Object[] items = toArray(parameter);
+			if (items == null) {
+				values.add(parameter);
+				continue;
+			} else if (isArrayParameter(sql, i)) {
+				values.add(items);
+				continue;
+			} else if (items.length == 0 && isNotIn(sql, i)) {
+				throw new IllegalArgumentException("Empty array or collection for NOT IN parameter " + index + " of " + sql);
+			}
+			if (rs == null) {
+				rs = new StringBuilder(sql.length() + 32);
+			}
+			rs.append(sql, last, i);
+			boolean enclosed = previousChar(sql, i) == '(' && nextChar(sql, i) == ')';
+			int size = bucket(items.length);
+			rs.append(enclosed ? "?" : "(?");
+			for (int k = 1; k < size; k++) {
+				rs.append(",?");
+			}
+			if (!enclosed) {
+				rs.append(')');
+			}
+			for (int k = 0; k < size; k++) {
+				values.add(items.length == 0 ? null : items[Math.min(k, items.length - 1)]);
+			}
+			last = i + 1;
+		}
+		for (; index < parameters.length; index++) {
+			values.add(parameters[index]);
+		}
+		return rs == null ? sql : rs.append(sql, last, sql.length()).toString();
+	}
+
+	/**
+	 * 展开的占位符个数
+	 * @param size 数组或集合的长度
+	 * @return 占位符个数
+	 */
+	static int bucket(int size) {
+		int rs = 1;
+		while (rs < size && rs < 256) {
+			rs <<= 2;
+		}
+		return rs >= size ? rs : (size + 255) / 256 * 256;
+	}
+
+	private static Object[] toArray(Object parameter) {
+		if (parameter instanceof Collection) {
+			return ((Collection<?>) parameter).toArray();
+		} else if (parameter == null || !parameter.getClass().isArray() || parameter instanceof byte[]) {
+			return null;
+		} else if (parameter instanceof Object[]) {
+			return (Object[]) parameter;
+		}
+		int length = Array.getLength(parameter);
+		Object[] rs = new Object[length];
+		for (int i = 0; i < length; i++) {
+			rs[i] = Array.get(parameter, i);
+		}
+		return rs;
+	}
+
+	/**
+	 * 跳过字符串、双引号中的标识符及注释
+	 * 
+	 * @param sql SQL
+	 * @param index 当前位置
+	 * @return 跳过的部分的最后一个字符的位置，当前位置不是其开始时为index
+	 */
+	private static int skip(String sql, int index) {
+		char c = sql.charAt(index);
+		int rs;
+		if (c == '\'' || c == '"') {// 两个连续的引号视为两段
+			rs = sql.indexOf(c, index + 1);
+		} else if (c == '-' && sql.startsWith("-", index + 1)) {
+			rs = sql.indexOf('\n', index + 2);
+		} else if (c == '/' && sql.startsWith("*", index + 1)) {
+			rs = sql.indexOf("*/", index + 2);
+			rs = rs == -1 ? -1 : rs + 1;
+		} else {
+			return index;
+		}
+		return rs == -1 ? sql.length() - 1 : rs;
+	}
+
+	/**
+	 * 占位符是否位于ANY(?)或UNNEST(?)中
+	 */
+	private static boolean isArrayParameter(String sql, int index) {
+		int k = previousIndex(sql, index);
+		if (k < 0 || sql.charAt(k) != '(') {
+			return false;
+		}
+		k = previousIndex(sql, k);
+		return isWord(sql, k, "any") || isWord(sql, k, "unnest");
+	}
+
+	/**
+	 * 占位符是否位于NOT IN (?)或NOT IN ?中
+	 */
+	private static boolean isNotIn(String sql, int index) {
+		int k = previousIndex(sql, index);
+		if (k >= 0 && sql.charAt(k) == '(') {
+			k = previousIndex(sql, k);
+		}
+		return isWord(sql, k, "in") && isWord(sql, previousIndex(sql, k - 1), "not");
+	}
+
+	/**
+	 * 前一个非空白字符的位置
+	 */
+	private static int previousIndex(String sql, int index) {
+		int k = index - 1;
+		while (k >= 0 && Character.isWhitespace(sql.charAt(k))) {
+			k--;
+		}
+		return k;
+	}
+
+	/**
+	 * 以end结束（包括）的是否为完整的单词word（不区分大小写）
+	 */
+	private static boolean isWord(String sql, int end, String word) {
+		int start = end - word.length() + 1;
+		return start >= 0 && sql.regionMatches(true, start, word, 0, word.length())
+				&& (start == 0 || !Character.isJavaIdentifierPart(sql.charAt(start - 1)));
+	}
+
+	private static char previousChar(String sql, int index) {
+		for (int k = index - 1; k >= 0; k--) {
+			if (!Character.isWhitespace(sql.charAt(k))) {
+				return sql.charAt(k);
+			}
+		}
+		return 0;
+	}
+
+	private static char nextChar(String sql, int index) {
+		for (int k = index + 1, n = sql.length(); k < n; k++) {
+			if (!Character.isWhitespace(sql.charAt(k))) {
+				return sql.charAt(k);
+			}
+		}
+		return 0;
+	}
 
 	private static int countParameters(String sql) {
 		int count = 0;
@@ -0,0 +1,161 @@
+package org.prototype.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.prototype.core.PrototypeStatus;
+import org.prototype.core.PrototypeStatus.TransactionStatus;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 事务中的预处理语句缓存. <br>
+ *
+ * <pre>
+ * 每个事务（{@link TransactionStatus}）中的每个连接一个缓存，按SQL保存最近使用的PreparedStatement（LRU），
+ * 超出容量（见{@link SqlConfiguration#getStatementCacheSize()}）时关闭最久未使用的，事务结束时全部关闭.
+ * 没有开启事务或容量为0时不缓存（执行后即关闭）.
+ * 命中、未命中及淘汰的次数为全局统计.
+ * </pre>
+ *
+ * @author lj
+ *
+ */
+@Slf4j
+public final class StatementCache implements AutoCloseable {
+
+	private static final AtomicLong HITS = new AtomicLong();
+
+	private static final AtomicLong MISSES = new AtomicLong();
+
+	private static final AtomicLong EVICTIONS = new AtomicLong();
+
+	private final Connection connection;
+
+	private final Map<String, PreparedStatement> statements;
+
+	private StatementCache(Connection connection, int capacity) {
+		this.connection = connection;
+		this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() <= capacity) {
+					return false;
+				}
+				EVICTIONS.incrementAndGet();
+				close(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * 获取当前事务中连接的语句缓存
+	 *
+	 * @param connection
+	 *            连接
+	 * @param capacity
+	 *            缓存容量
+	 * @return 没有开启事务或容量为0时返回null
+	 */
+	static StatementCache of(Connection connection, int capacity) {
+		PrototypeStatus status = PrototypeStatus.getStatus();
+		TransactionStatus trans = status == null ? null : status.getTransaction();
+		if (trans == null || capacity <= 0) {
+			return null;
+		}
+		StatementCache rs = trans.getResource(connection);
+		if (rs == null) {
+			rs = new StatementCache(connection, capacity);
+			trans.putResource(connection, rs);
+		}
+		return rs;
+	}
+
+	/**
+	 * 获取缓存的或新建的预处理语句（不能由调用者关闭）
+	 *
+	 * @param sql
+	 *            SQL
+	 * @return 预处理语句
+	 * @throws SQLException
+	 *             SQL异常
+	 */
+	PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement rs = statements.get(sql);
+		if (rs != null && !rs.isClosed()) {
+			HITS.incrementAndGet();
+			return rs;
+		}
+		MISSES.incrementAndGet();
+		rs = connection.prepareStatement(sql);
+		statements.put(sql, rs);
+		return rs;
+	}
+
+	/**
+	 * 关闭所有缓存的语句
+	 */
+	@Override
+	public void close() {
+		for (Iterator<PreparedStatement> it = statements.values().iterator(); it.hasNext();) {
+			close(it.next());
+			it.remove();
+		}
+	}
+
+	private static void close(PreparedStatement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			log.warn("Close prepared statement error", e);
+		}
+	}
+
+	/**
+	 * 命中次数
+	 *
+	 * @return 命中次数
+	 */
+	public static long getHits() {
+		return HITS.get();
+	}
+
+	/**
+	 * 未命中次数（创建语句的次数）
+	 *
+	 * @return 未命中次数
+	 */
+	public static long getMisses() {
+		return MISSES.get();
+	}
+
+	/**
+	 * 超出容量而关闭的语句数
+	 *
+	 * @return 淘汰次数
+	 */
+	public static long getEvictions() {
+		return EVICTIONS.get();
+	}
+
+	/**
+	 * 命中率
+	 *
+	 * @return 命中率，没有使用过缓存时为0
+	 */
+	public static double getHitRate() {
+		long hits = HITS.get();
+		long total = hits + MISSES.get();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+}
@@ -2,32 +2,71 @@ package org.prototype;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 import javax.annotation.Resource;
+import javax.sql.DataSource;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.prototype.annotation.Message;
+import org.prototype.annotation.MessageBus;
+import org.prototype.annotation.SubscribeClassAdvisor;
+import org.prototype.business.BindBusiness;
 import org.prototype.business.Business;
+import org.prototype.business.BusinessDefine;
 import org.prototype.business.BusinessExecutor;
 import org.prototype.business.DemoBusiness;
+import org.prototype.business.ExecuteChain;
+import org.prototype.business.ExecuteFilter;
 import org.prototype.business.GetResult;
 import org.prototype.business.InitTarget;
+import org.prototype.business.LimitExecuteChain;
 import org.prototype.business.Service;
 import org.prototype.business.ServiceClassAdvisor.ServiceNameGenerator;
 import org.prototype.business.ServiceDemo1;
 import org.prototype.business.ServiceDemo2;
 import org.prototype.business.ServiceParamCreate;
+import org.prototype.business.TimeoutBusiness;
 import org.prototype.business.api.JavaApiCreator.JavaApiNameGenerator;
 import org.prototype.business.api.JavascriptApiCreator.Validation;
 import org.prototype.business.api.JsonApiCreator.JsonApi;
+import org.prototype.business.limit.AdaptiveLimit;
+import org.prototype.business.limit.AdaptiveLimitExecuteFilter;
+import org.prototype.business.limit.RateLimit;
+import org.prototype.business.limit.RateLimitExecuteFilter;
+import org.prototype.business.limit.RedisStandIn;
+import org.prototype.business.limit.TimeWindowLimit;
+import org.prototype.business.limit.TimeWindowLimitExecuteFilter;
 import org.prototype.core.ClassScaner;
+import org.prototype.core.PrototypeStatus;
+import org.prototype.entity.Dict;
+import org.prototype.reflect.ClassUtils;
+import org.prototype.reflect.Property;
 import org.prototype.demo.AsyncBusiness;
 import org.prototype.demo.AsyncChainBusiness;
+import org.prototype.demo.CallSiteBusiness;
 import org.prototype.demo.CatchBusiness;
 import org.prototype.demo.ChainBusiness;
 import org.prototype.demo.ChainChildBusiness;
@@ -37,20 +76,28 @@ import org.prototype.demo.HystrixBusiness;
 import org.prototype.demo.MsgBusiness;
 import org.prototype.demo.OverloadAsyncBusiness;
 import org.prototype.demo.ParameterInjectBusiness;
+import org.prototype.demo.SourceSubscribeBusiness;
 import org.prototype.demo.SubscribeMsgBusiness;
 import org.prototype.demo.TemplateBusiness;
 import org.prototype.demo.TransactionalBusiness;
+import org.prototype.sql.BatchBusiness;
 import org.prototype.sql.PreparedBusiness;
+import org.prototype.sql.ReadWriteDataSource;
+import org.prototype.sql.SqlExpansion;
+import org.prototype.sql.StatementCache;
 import org.prototype.util.TodayZeroBusiness;
 import org.springframework.boot.context.embedded.LocalServerPort;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.slf4j.Slf4j;
@@ -120,6 +167,66 @@ public class ApplicationTest {
 		Assert.assertEquals(3, config.getApi().size());
 	}
 
+	/**
+	 * 参数绑定：转换、格式化及验证规则由业务类的绑定器预先编译，绑定器按业务类缓存
+	 */
+	@Test
+	public void testParamBinder() throws Exception {
+		Assert.assertSame(BindBusiness.getBinder(), BindBusiness.getBinder());
+		Map<String, Object> values = new HashMap<>();
+		values.put("count", "3");
+		values.put("day", "2017-05-06");
+		values.put("name", "abc");
+		BindBusiness busi = BindBusiness.bind(values);
+		Assert.assertEquals(Integer.valueOf(3), ReflectionTestUtils.getField(busi, "count"));
+		Assert.assertEquals(new SimpleDateFormat("yyyy-MM-dd").parse("2017-05-06"),
+				ReflectionTestUtils.getField(busi, "day"));
+		Assert.assertEquals("abc", ReflectionTestUtils.getField(busi, "name"));
+		Assert.assertNull(busi.getErrors());
+
+		values.put("count", "20");// 超出最大值
+		values.put("name", "abcdefg");// 超出最大长度
+		busi = BindBusiness.bind(values);
+		Assert.assertNotNull(busi.getErrors());
+		Assert.assertEquals(2, busi.getErrors().split(",").length);
+	}
+
+	/**
+	 * 行映射：基本类型（int[]的元素及返回int）的列值为null时为默认值
+	 */
+	@Test
+	public void testRowMapperNull() {
+		BatchBusiness business = new BatchBusiness();
+		business.readNulls();
+		Assert.assertEquals(2, business.getNullableIds().length);
+		Assert.assertEquals(0, business.getNullableIds()[0]);
+		Assert.assertTrue(business.getNullableIds()[1] > 0);
+		Assert.assertEquals(0, business.getNullableId());
+	}
+
+	/**
+	 * 执行管道：注册时编译，执行时复用，重新注册时重新编译
+	 */
+	@Test
+	public void testExecutePipeline() throws Exception {
+		Service service = executor.getService(ServiceDemo2.class);
+		Object pipeline = ReflectionTestUtils.getField(service, "pipeline");
+		Assert.assertNotNull(pipeline);
+		ExecuteFilter<?>[] filters = (ExecuteFilter<?>[]) ReflectionTestUtils.getField(pipeline, "filters");
+		Assert.assertTrue(filters.length > 0);
+		Assert.assertFalse(Arrays.asList(filters).contains(null));
+		Assert.assertEquals(((BusinessDefine) ReflectionTestUtils.getField(pipeline, "define")).execute(),
+				((Method) ReflectionTestUtils.getField(pipeline, "execute")).getName());
+		for (int i = 0; i < 2; i++) {
+			executor.execute(ServiceDemo2.class, new Object[] { service.getParamType().newInstance() });
+			Assert.assertSame(pipeline, ReflectionTestUtils.getField(service, "pipeline"));
+		}
+		executor.registerService(service);
+		Object recompiled = ReflectionTestUtils.getField(service, "pipeline");
+		Assert.assertNotSame(pipeline, recompiled);
+		Assert.assertArrayEquals(filters, (Object[]) ReflectionTestUtils.getField(recompiled, "filters"));
+	}
+
 	@Test
 	public void testServiceParamCreate() throws Exception {
 		Service service = executor.getService(ServiceParamCreate.class);
@@ -196,6 +303,24 @@ public class ApplicationTest {
 		Assert.assertEquals(4, business.getValue());
 	}
 
+	/**
+	 * 方法调用点：首次调用时解析方法，按参数类型区分重载，基本类型返回值正确拆箱
+	 */
+	@Test
+	public void testMethodCallSite() throws Exception {
+		Assert.assertNotNull(CallSiteBusiness.class.getDeclaredMethod("half$Impl", double.class));
+		CallSiteBusiness busi = new CallSiteBusiness();
+		for (int i = 0; i < 2; i++) {
+			Assert.assertEquals(1.5, busi.half(3), 0);
+			Assert.assertEquals(6, busi.sum(new long[] { 1, 2, 3 }));
+			Assert.assertEquals("a,b", busi.join(new String[] { "a", "b" }));
+			Assert.assertEquals("a+b", busi.join("a", "b"));
+			Assert.assertTrue(busi.check(1));
+		}
+		Assert.assertEquals(-1, busi.sum(null));// 异常经过方法过滤器处理
+		Assert.assertFalse(busi.check(-1));
+	}
+
 	/**
 	 * 父子类责任链
 	 */
@@ -284,6 +409,28 @@ public class ApplicationTest {
 		business.message1();
 		Thread.sleep(500);
 		Assert.assertEquals(1, SubscribeMsgBusiness.value.get());
+		MessageBus.Subscription subscription = context.getBean(SubscribeClassAdvisor.class).getSubscriptions()
+				.get(SubscribeMsgBusiness.class.getName());
+		Assert.assertTrue(subscription.isBuffered());// 异步订阅使用独立队列
+		Assert.assertTrue(subscription.isIdle());
+		Assert.assertEquals(0, subscription.getDropped());
+	}
+
+	/**
+	 * 消息订阅的分派：按类型路由，来源按前缀包含及排除，消息内容按类型选择重载的处理方法
+	 */
+	@Test
+	public void testSubscribeDispatch() {
+		String[][] sources = { { "sourceIndex", "org.prototype.a.Foo" }, { "sourceIndex", "org.prototype.b" },
+				{ "sourceIndex", "org.prototype.a.x.Foo" }, { "sourceIndex", "org.prototype.c" },
+				{ "sourceIndex", "org.prototype.ab" }, { "sourceIndex", null }, { "other", "org.prototype.a" } };
+		Object[] contents = { 1, "b", 2, 3, 5, 6, 7 };
+		for (int i = 0; i < sources.length; i++) {
+			Message.getBus().publish(new Message(sources[i][0], sources[i][1], contents[i]));
+		}
+		Message.getBus().publish(new Message("sourceIndex", "org.prototype.a", 4L));// 没有处理Long的方法
+		Message.getBus().publish(new Message("sourceIndex", "org.prototype.a.Foo", 8));// 使用缓存的处理方法
+		Assert.assertEquals(Arrays.asList(1, "b", 5, 8), SourceSubscribeBusiness.received);
 	}
 
 	/**
@@ -326,6 +473,43 @@ public class ApplicationTest {
 		Assert.assertEquals(user.getName() + ",你好", rs);
 	}
 
+	/**
+	 * 在线程池中执行业务：未超时返回执行结果，超时返回TIMEOUT并中断执行线程
+	 */
+	@Test
+	public void testConcurrent() throws Exception {
+		TimeoutBusiness.setSleep(10);
+		Object rs = executor.execute(TimeoutBusiness.class, new Object[0]);
+		Field field = rs.getClass().getDeclaredField("result");
+		field.setAccessible(true);
+		Assert.assertEquals(Business.SUCCESS, field.get(rs));
+		Assert.assertNotEquals(Thread.currentThread().getName(), TimeoutBusiness.getThread());
+		Assert.assertEquals(TimeoutBusiness.getThread(), TimeoutBusiness.getCreator());// 业务对象在执行线程中创建
+
+		PrototypeStatus outer = new PrototypeStatus();// 嵌套在其它业务中执行时，超时时间不影响外层业务
+		PrototypeStatus.setStatus(outer);
+		try {
+			rs = executor.execute(TimeoutBusiness.class, new Object[0]);
+			Assert.assertEquals(Business.SUCCESS, field.get(rs));
+			Assert.assertFalse(outer.hasDeadline());
+			outer.setDeadline(0, TimeUnit.MILLISECONDS);// 外层已超过截止时间时不再执行
+			rs = executor.execute(TimeoutBusiness.class, new Object[0]);
+			Assert.assertEquals(ExecuteChain.TIMEOUT, field.get(rs));
+		} finally {
+			PrototypeStatus.setStatus(null);
+		}
+
+		TimeoutBusiness.setSleep(5000);
+		long start = System.currentTimeMillis();
+		rs = executor.execute(TimeoutBusiness.class, new Object[0]);
+		Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+		Assert.assertEquals(ExecuteChain.TIMEOUT, field.get(rs));
+		for (int i = 0; i < 100 && !TimeoutBusiness.isInterrupted(); i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertTrue(TimeoutBusiness.isInterrupted());
+	}
+
 	/**
 	 * 批处理测试
 	 */
@@ -337,6 +521,394 @@ public class ApplicationTest {
 		Assert.assertEquals(1, field.get(rs));
 	}
 
+	/**
+	 * 批处理（依次执行、多行VALUES、并发执行及按块读取）
+	 */
+	@Test
+	public void testBatchSql() {
+		BatchBusiness business = new BatchBusiness();
+		business.execute();
+		for (Dict dict : business.getInserted()) {
+			Assert.assertNotNull(dict.getId());
+		}
+		business = new BatchBusiness();
+		business.executeParallel();
+		Set<Integer> ids = new HashSet<>();
+		for (Dict dict : business.getRowsInserted()) {
+			Assert.assertTrue(ids.add(dict.getId()));
+		}
+		Assert.assertFalse(ids.contains(null));
+		Assert.assertNotNull(business.getInserted().get(0).getId());
+		business = new BatchBusiness();
+		business.executeStream();
+		for (Dict dict : business.getStreamed()) {
+			Assert.assertTrue(ids.add(dict.getId()));
+		}
+		business = new BatchBusiness();
+		business.executeAfter();
+		Assert.assertEquals(2, business.getInserted().size());
+		for (Dict dict : business.getInserted()) {
+			Assert.assertTrue(ids.add(dict.getId()));
+		}
+		business = new BatchBusiness();
+		business.executeChained();
+		Assert.assertEquals(2, business.getChainedIds().size());
+		Assert.assertFalse(business.getChainedIds().contains(null));// 插入后才调用更新的批处理方法
+		business = new BatchBusiness();
+		business.countAll();
+		int total = business.getTotal();
+		try {
+			business.executeRejected();
+			Assert.fail();
+		} catch (RuntimeException e) {// 第二个批处理被拒绝
+			Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+		for (Dict dict : business.getRowsInserted()) {// 已提交的批处理在抛出异常前执行完成
+			Assert.assertNotNull(dict.getId());
+		}
+		Assert.assertNull(business.getInserted().get(0).getId());
+		business.countAll();
+		Assert.assertEquals(total + 20, business.getTotal());// 两次计数
+	}
+
+	@TimeWindowLimit(value = 5, duration = 1, unit = TimeUnit.HOURS)
+	private static class HourLimit {
+	}
+
+	@TimeWindowLimit(value = 2, duration = 200, unit = TimeUnit.MILLISECONDS)
+	private static class MillisLimit {
+	}
+
+	/**
+	 * 滑动时间窗口限制：并发时不超出限制，窗口滑过后恢复
+	 */
+	@Test
+	public void testTimeWindowLimit() throws Exception {
+		TimeWindowLimitExecuteFilter filter = context.getBean(TimeWindowLimitExecuteFilter.class);
+		LimitExecuteChain chain = new LimitExecuteChain(HourLimit.class);
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				try {
+					for (int k = 0; k < 100; k++) {
+						filter.doFilter(chain);
+					}
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(5, chain.getExecuted().get());
+		Assert.assertEquals(795, chain.getRejected().get());
+
+		LimitExecuteChain millis = new LimitExecuteChain(MillisLimit.class);
+		for (int k = 0; k < 3; k++) {
+			filter.doFilter(millis);
+		}
+		Assert.assertEquals(2, millis.getExecuted().get());
+		Thread.sleep(250);
+		filter.doFilter(millis);
+		Assert.assertEquals(3, millis.getExecuted().get());
+	}
+
+	@TimeWindowLimit(value = 2, duration = 1, unit = TimeUnit.HOURS, key = "name", maxKeys = 2)
+	private static class KeyedLimit {
+	}
+
+	/**
+	 * 按键区分的访问限制：每个键分别计数，超出最大键数时删除最久未访问的
+	 */
+	@Test
+	public void testKeyedLimit() throws Exception {
+		TimeWindowLimitExecuteFilter filter = context.getBean(TimeWindowLimitExecuteFilter.class);
+		LimitExecuteChain chain = new LimitExecuteChain(KeyedLimit.class);
+		for (String name : new String[] { "a", "a", "a", "b", "b", "b" }) {
+			chain.setParams(new Object[] { new Dict(1, name) });
+			filter.doFilter(chain);
+		}
+		Assert.assertEquals(4, chain.getExecuted().get());
+		Map<String, Object> param = new LinkedHashMap<>();
+		param.put("name", "c");
+		chain.setParams(new Object[] { param });
+		filter.doFilter(chain);// 超出最大键数，删除a、b
+		Assert.assertEquals(5, chain.getExecuted().get());
+		chain.setParams(new Object[] { new Dict(1, "a") });
+		filter.doFilter(chain);
+		Assert.assertEquals(6, chain.getExecuted().get());
+		Assert.assertEquals(2, chain.getRejected().get());
+	}
+
+	/**
+	 * Redis令牌桶：按批预取令牌，多个节点共享限制，Redis不可用时使用本地限制
+	 */
+	@Test
+	public void testRedisLimit() throws Exception {
+		RedisStandIn redis = new RedisStandIn();
+		BooleanSupplier limiter = redis.limiter("a", 10, 5);
+		int acquired = 0;
+		for (int i = 0; i < 20; i++) {
+			acquired += limiter.getAsBoolean() ? 1 : 0;
+		}
+		Assert.assertEquals(10, acquired);
+		Assert.assertEquals(3, redis.getEvals().get());// 预取2次，第3次没有令牌（之后在令牌有效期内直接拒绝）
+
+		BooleanSupplier node1 = redis.limiter("b", 10, 5);
+		BooleanSupplier node2 = redis.limiter("b", 10, 5);
+		acquired = 0;
+		for (int i = 0; i < 10; i++) {
+			acquired += node1.getAsBoolean() ? 1 : 0;
+			acquired += node2.getAsBoolean() ? 1 : 0;
+		}
+		Assert.assertEquals(10, acquired);
+
+		Assert.assertFalse(redis.limiter("a", 10, 5).getAsBoolean());// 桶按Redis的TIME补充令牌，与本地时钟无关
+		redis.advance(500);
+		BooleanSupplier refilled = redis.limiter("a", 10, 5);
+		for (int i = 0; i < 5; i++) {
+			Assert.assertTrue(refilled.getAsBoolean());
+		}
+
+		redis.setDown(true);
+		int evals = redis.getEvals().get();
+		BooleanSupplier down = redis.limiter("c", 10, 5);
+		for (int i = 0; i < 5; i++) {
+			Assert.assertFalse(down.getAsBoolean());
+		}
+		Assert.assertEquals(5, redis.getFallbacks().get());
+		Assert.assertEquals(evals + 1, redis.getEvals().get());// 1秒内不再重试
+	}
+
+	@RateLimit(value = 10, redis = "test:rate", prefetch = 5)
+	@TimeWindowLimit(value = 3, duration = 1, unit = TimeUnit.HOURS, redis = "test:window", prefetch = 2)
+	private static class RedisLimit {
+	}
+
+	/**
+	 * 注解指定了redis时，过滤器通过JedisPool在Redis中执行Lua脚本
+	 */
+	@Test
+	public void testRedisLimitFilter() throws Exception {
+		RedisStandIn redis = context.getBean(RedisStandIn.class);
+		LimitExecuteChain chain = new LimitExecuteChain(RedisLimit.class);
+		RateLimitExecuteFilter rate = context.getBean(RateLimitExecuteFilter.class);
+		for (int i = 0; i < 20; i++) {
+			rate.doFilter(chain);
+		}
+		Assert.assertEquals(10, chain.getExecuted().get());
+		Assert.assertEquals("0", redis.hash("test:rate").get("tokens"));
+
+		chain = new LimitExecuteChain(RedisLimit.class);
+		TimeWindowLimitExecuteFilter window = context.getBean(TimeWindowLimitExecuteFilter.class);
+		for (int i = 0; i < 10; i++) {
+			window.doFilter(chain);
+		}
+		Assert.assertEquals(3, chain.getExecuted().get());
+		int used = 0;
+		for (String value : redis.hash("test:window").values()) {
+			used += Integer.parseInt(value);
+		}
+		Assert.assertEquals(3, used);// 预取2次，第2次只分配1次
+	}
+
+	@AdaptiveLimit(value = 2, max = 4, waitTimeout = 2000, queueSize = 1, window = 0)
+	private static class Adaptive {
+	}
+
+	/**
+	 * 自适应并发数限制：达到上限时有界等待，并发数达到上限时上限增加（采样时间为0，每10个样本调整一次）
+	 */
+	@Test
+	public void testAdaptiveLimit() throws Exception {
+		AdaptiveLimitExecuteFilter filter = context.getBean(AdaptiveLimitExecuteFilter.class);
+		LimitExecuteChain chain = new LimitExecuteChain(Adaptive.class);
+		CountDownLatch latch = new CountDownLatch(1);
+		chain.setAction(() -> latch.await(5, TimeUnit.SECONDS));
+		CountDownLatch finished = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {// 2个执行，1个等待，1个拒绝
+			Thread thread = new Thread(() -> {
+				try {
+					filter.doFilter(chain);
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				} finally {
+					finished.countDown();
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		Assert.assertTrue(finished.await(3, TimeUnit.SECONDS));// 其它线程阻塞，只有被拒绝的线程能结束
+		Assert.assertEquals(2, chain.getExecuted().get());
+		Assert.assertEquals(1, chain.getRejected().get());
+		latch.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(3, chain.getExecuted().get());
+
+		CyclicBarrier barrier = new CyclicBarrier(2);
+		chain.setAction(() -> barrier.await(5, TimeUnit.SECONDS));
+		threads.clear();
+		for (int i = 0; i < 2; i++) {// 每轮2个请求同时执行，每个采样中的并发数都达到上限的一半
+			Thread thread = new Thread(() -> {
+				try {
+					for (int k = 0; k < 20; k++) {
+						filter.doFilter(chain);
+					}
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		CountDownLatch blocked = new CountDownLatch(4);
+		CountDownLatch done = new CountDownLatch(1);
+		chain.setAction(() -> {
+			blocked.countDown();
+			return done.await(5, TimeUnit.SECONDS);
+		});
+		threads.clear();
+		for (int i = 0; i < 4; i++) {
+			Thread thread = new Thread(() -> {
+				try {
+					filter.doFilter(chain);
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		Assert.assertTrue(blocked.await(3, TimeUnit.SECONDS));// 上限已增加到4
+		done.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+	}
+
+	/**
+	 * 读写数据源：只读数据源的选择、健康检查及数据分区
+	 */
+	@Test
+	public void testReadWriteDataSource() throws Exception {
+		Map<String, DataSource> shards = new LinkedHashMap<>();
+		shards.put("s1", new DriverManagerDataSource("jdbc:hsqldb:mem:shard1", "sa", ""));
+		shards.put("s2", new DriverManagerDataSource("jdbc:hsqldb:mem:shard2", "sa", ""));
+		AtomicBoolean lag = new AtomicBoolean();
+		ReadWriteDataSource dataSource = new ReadWriteDataSource();
+		dataSource.setWriteDataSource(new DriverManagerDataSource("jdbc:hsqldb:mem:write", "sa", ""));
+		dataSource.setReadDataSource(new DriverManagerDataSource("jdbc:hsqldb:mem:read1", "sa", ""));
+		dataSource.setReadDataSources(Arrays.asList(new DriverManagerDataSource("jdbc:hsqldb:mem:read2", "sa", "")));
+		dataSource.setShards(shards);
+		dataSource.setProbeInterval(0);// 不定时检查，由测试调用
+		dataSource.setProbe(ds -> lag.get() && ((DriverManagerDataSource) ds).getUrl().endsWith("read1") ? 5000 : 0);
+		dataSource.afterPropertiesSet();
+		PrototypeStatus status = new PrototypeStatus();
+		status.setTransaction(new PrototypeStatus.TransactionStatus());
+		PrototypeStatus.setStatus(status);
+		try {
+			Assert.assertEquals("jdbc:hsqldb:mem:write", getUrl(dataSource));
+			status.getTransaction().setReadOnly(true);
+			try (Connection c1 = dataSource.getConnection(); Connection c2 = dataSource.getConnection()) {
+				Assert.assertNotEquals(c1.getMetaData().getURL(), c2.getMetaData().getURL());// 活动连接数少的优先
+			}
+			lag.set(true);
+			dataSource.checkReplicas();
+			for (int i = 0; i < 4; i++) {
+				Assert.assertEquals("jdbc:hsqldb:mem:read2", getUrl(dataSource));
+			}
+			lag.set(false);
+			dataSource.checkReplicas();// 恢复后再次使用
+			try (Connection c1 = dataSource.getConnection(); Connection c2 = dataSource.getConnection()) {
+				Assert.assertNotEquals(c1.getMetaData().getURL(), c2.getMetaData().getURL());
+			}
+			status.getTransaction().setPartion("1001");
+			String shard = getUrl(dataSource);
+			Assert.assertTrue(shard.startsWith("jdbc:hsqldb:mem:shard"));
+			Assert.assertEquals(shard, getUrl(dataSource));
+		} finally {
+			PrototypeStatus.setStatus(null);
+			dataSource.destroy();
+		}
+	}
+
+	private String getUrl(DataSource dataSource) throws SQLException {
+		try (Connection connection = dataSource.getConnection()) {
+			return connection.getMetaData().getURL();
+		}
+	}
+
+	/**
+	 * 事务中的预处理语句缓存
+	 */
+	@Test
+	public void testStatementCache() {
+		long hits = StatementCache.getHits();
+		BatchBusiness business = new BatchBusiness();
+		business.countAll();
+		Assert.assertEquals(0, business.getTotal() % 2);
+		Assert.assertEquals(hits + 1, StatementCache.getHits());
+	}
+
+	/**
+	 * 数组、集合参数的展开：注释及引号中的?、ANY的单词边界、空集合
+	 */
+	@Test
+	public void testExpandParameters() {
+		List<Object> values = new ArrayList<>();
+		String sql = SqlExpansion.expand("select \"a?\" from t -- ?\nwhere /* ? */ name='?' and id in ?", values,
+				Arrays.asList(1, 2));
+		Assert.assertEquals("select \"a?\" from t -- ?\nwhere /* ? */ name='?' and id in (?,?,?,?)", sql);
+		Assert.assertEquals(Arrays.asList(1, 2, 2, 2), values);
+		values.clear();
+		Assert.assertEquals("select company(?,?,?,?)", SqlExpansion.expand("select company(?)", values, new int[] { 1, 2 }));
+		values.clear();
+		Assert.assertEquals("select * from t where id = any (?)", SqlExpansion.expand("select * from t where id = any (?)", values, new int[] { 1 }));
+		Assert.assertArrayEquals(new Object[] { 1 }, (Object[]) values.get(0));
+		values.clear();
+		Assert.assertEquals("select * from t where id in (?)", SqlExpansion.expand("select * from t where id in (?)", values, new ArrayList<>()));
+		Assert.assertEquals(Collections.singletonList(null), values);
+		try {
+			SqlExpansion.expand("select * from t where id NOT IN (?)", values, new ArrayList<>());
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			// NOT IN不允许空集合
+		}
+	}
+
+	/**
+	 * 游标方式查询（Stream、逐行回调、Iterator）及数组、集合参数的展开
+	 */
+	@Test
+	public void testCursor() {
+		BatchBusiness business = new BatchBusiness();
+		business.readAll();
+		Assert.assertTrue(business.getRows() > 0);
+		Assert.assertEquals(business.getRows(), business.getDicts().size());
+		Assert.assertEquals(business.getRows(), business.getIds());
+		Assert.assertArrayEquals(new int[] { 0, 1, 1, 1 }, business.getInCounts());
+		Assert.assertTrue(business.isDeregistered());
+		try {
+			business.readOutside();// 事务外返回游标
+			Assert.fail();
+		} catch (RuntimeException e) {
+			Throwable cause = e;
+			while (cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			Assert.assertTrue(cause.getMessage(), cause.getMessage().endsWith("must be called in a transaction"));
+		}
+	}
+
 	/**
 	 * 数据库CRUD
 	 */
@@ -360,6 +932,43 @@ public class ApplicationTest {
 		Assert.assertEquals(3, busi.getValue().get());
 	}
 
+	/**
+	 * 截止时间：复制到异步线程时继承，并发方法最多等待到截止时间
+	 */
+	@Test
+	public void testDeadline() throws Exception {
+		PrototypeStatus status = new PrototypeStatus();
+		Assert.assertFalse(status.hasDeadline());
+		Assert.assertEquals(Long.MAX_VALUE, status.getRemainingNanos());
+		status.setDeadline(300, TimeUnit.MILLISECONDS);
+		status.setDeadline(10, TimeUnit.SECONDS);// 截止时间只会提前
+		Assert.assertTrue(status.getRemainingNanos() <= TimeUnit.MILLISECONDS.toNanos(300));
+		PrototypeStatus async = status.copyToAsync();
+		Assert.assertTrue(async.hasDeadline());
+		Assert.assertTrue(async.getRemainingNanos() <= TimeUnit.MILLISECONDS.toNanos(300));
+		PrototypeStatus.setStatus(status);
+		long t = System.currentTimeMillis();
+		ForkBusiness busi = new ForkBusiness();
+		try {
+			busi.fork();
+			Assert.fail("deadline exceeded");
+		} catch (Exception e) {
+			Throwable cause = e;
+			while (!(cause instanceof TimeoutException) && cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			Assert.assertTrue(cause instanceof TimeoutException);
+		} finally {
+			PrototypeStatus.setStatus(null);
+		}
+		Assert.assertTrue(System.currentTimeMillis() - t < 900);
+		Assert.assertTrue(status.isExpired());
+		for (int i = 0; i < 200 && busi.getValue().get() < 2; i++) {// 等待已开始的并发方法结束，释放线程池
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(2, busi.getValue().get());
+	}
+
 	/**
 	 * 测试服务生成
 	 * 
@@ -383,6 +992,102 @@ public class ApplicationTest {
 		Assert.assertEquals(int[].class, field.getType());
 	}
 
+	/**
+	 * 原型状态：序号为long，按需生成字符串；异步状态保留业务序号并以span关联；纳秒计时及换算的开始时间
+	 */
+	@Test
+	public void testPrototypeStatus() throws Exception {
+		long before = System.currentTimeMillis();
+		PrototypeStatus status = new PrototypeStatus();
+		long after = System.currentTimeMillis();
+		Assert.assertTrue(status.getStartTime() >= before - 10 && status.getStartTime() <= after + 10);// 换算误差
+		Assert.assertEquals(status.getSeq(), status.getSpan());
+		Assert.assertEquals(0, status.getParentSpan());
+		Assert.assertEquals(Long.toString(status.getSeq()), status.toString());
+		Assert.assertSame(status.getId(), status.getId());
+
+		PrototypeStatus async = status.copyToAsync();
+		Assert.assertEquals(status.getSeq(), async.getSeq());
+		Assert.assertEquals(status.getSpan(), async.getParentSpan());
+		Assert.assertNotEquals(status.getSpan(), async.getSpan());
+		Assert.assertEquals(status.getId() + "/" + async.getSpan(), async.toString());
+		Assert.assertTrue(async.getStartNanos() >= status.getStartNanos());
+
+		Assert.assertTrue(status.getElapsedNanos() >= 0);
+		long elapsed = status.end().getElapsedNanos();
+		Assert.assertEquals(elapsed, status.getElapsedNanos());// 结束后用时不变
+		Assert.assertTrue(async.getElapsedNanos() > 0);// 异步状态单独计时
+
+		status.setTarget(this);
+		status.setResult(elapsed);
+		status.recycle();
+		Assert.assertNull(status.getTarget());// 回收后不持有业务对象及结果
+		Assert.assertNull(status.getResult());
+		Assert.assertSame(status, PrototypeStatus.obtain());
+	}
+
+	/**
+	 * 复用执行链及原型状态时，异步订阅在业务结束后读取的原型状态不被复用
+	 */
+	@Test
+	public void testPooledExecuteMessage() throws Exception {
+		List<Runnable> pending = new ArrayList<>();
+		List<PrototypeStatus> statuses = new ArrayList<>();
+		MessageBus.Subscription subscription = Message.getBus().subscribe(
+				message -> statuses.add((PrototypeStatus) message.getContent()), pending::add, 16,
+				MessageBus.OverflowPolicy.DROP, 16, Message.EXECUTE);
+		ReflectionTestUtils.setField(executor, "pooled", true);
+		try {
+			Service service = executor.getService(ServiceDemo2.class);
+			executor.execute(ServiceDemo2.class, new Object[] { service.getParamType().newInstance() });
+			executor.execute(ServiceDemo2.class, new Object[] { service.getParamType().newInstance() });
+		} finally {
+			ReflectionTestUtils.setField(executor, "pooled", false);
+		}
+		for (int i = 0; i < pending.size(); i++) {// 业务结束后才投递
+			pending.get(i).run();
+		}
+		subscription.unsubscribe();
+		Assert.assertEquals(2, statuses.size());
+		Assert.assertNotSame(statuses.get(0), statuses.get(1));
+		Assert.assertNotEquals(statuses.get(0).getSeq(), statuses.get(1).getSeq());
+		Assert.assertTrue(statuses.get(0).getElapsedNanos() > 0);
+	}
+
+	/**
+	 * 流式输出
+	 */
+	@Test
+	public void testStreamOutput() throws Exception {
+		Service service = executor.getService(ServiceDemo2.class);
+		Assert.assertEquals(Iterable.class, service.getResultType().getDeclaredField("amounts").getType());
+		Assert.assertEquals(Iterable.class, service.getResultType().getDeclaredField("dicts").getType());
+		Object rs = executor.execute(ServiceDemo2.class, new Object[] { service.getParamType().newInstance() });
+		int closed = ServiceDemo2.closed.get();
+		String json = mapper.writeValueAsString(rs);
+		Assert.assertEquals(closed + 1, ServiceDemo2.closed.get());// 序列化完成后关闭Stream
+		Assert.assertTrue(json, json.contains("\"amounts\":[\"1.50\",\"2.00\"]"));
+		Assert.assertTrue(json, json.contains("\"dicts\":[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"}]"));
+		Field field = rs.getClass().getDeclaredField("amounts");
+		field.setAccessible(true);
+		Assert.assertEquals("[\"1.50\",\"2.00\"]", mapper.writeValueAsString(field.get(rs)));// Iterable可重复输出
+		try {
+			mapper.writeValueAsString(rs);// Stream只能输出一次
+			Assert.fail();
+		} catch (JsonMappingException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		rs = executor.execute(ServiceDemo2.class, new Object[] { service.getParamType().newInstance() });
+		field = rs.getClass().getDeclaredField("dicts");
+		field.setAccessible(true);
+		Iterator<?> it = ((Iterable<?>) field.get(rs)).iterator();
+		it.next();
+		it.next();
+		Assert.assertEquals(closed + 1, ServiceDemo2.closed.get());
+		Assert.assertFalse(it.hasNext());
+		Assert.assertEquals(closed + 2, ServiceDemo2.closed.get());// 迭代完成后关闭Stream
+	}
+
 	/**
 	 * 断路测试
 	 */
@@ -419,4 +1124,103 @@ public class ApplicationTest {
 		Thread.sleep(300);
 		Assert.assertTrue(seq.get() < 80);// 因为发生断路之后不会抛出异常，也就不会有Fallback消息抛出。
 	}
+
+	/**
+	 * 消息总线的缓冲订阅
+	 */
+	@Test
+	public void testMessageBus() {
+		List<Runnable> tasks = new ArrayList<>();
+		List<Object> dropReceived = new ArrayList<>();
+		List<Object> latestReceived = new ArrayList<>();
+		MessageBus.Subscription drop = Message.getBus().subscribe(m -> dropReceived.add(m.getContent()), tasks::add, 2,
+				MessageBus.OverflowPolicy.DROP, 10, "testBus");
+		MessageBus.Subscription latest = Message.getBus().subscribe(m -> latestReceived.add(m.getContent()),
+				tasks::add, 2, MessageBus.OverflowPolicy.LATEST, 10, "testBus");
+		try {
+			for (int i = 0; i < 5; i++) {
+				Message.getBus().publish(new Message("testBus", getClass().getName(), i));
+			}
+			Message.getBus().publish(new Message("other", getClass().getName(), -1));// 其它类型不会分派
+			Assert.assertEquals(2, tasks.size());// 每个订阅只提交一次处理任务
+			Assert.assertEquals(3, drop.getDropped());
+			Assert.assertEquals(3, latest.getDropped());
+			for (Runnable task : tasks) {
+				task.run();
+			}
+			Assert.assertEquals(Arrays.asList(0, 1), dropReceived);
+			Assert.assertEquals(Arrays.asList(3, 4), latestReceived);
+		} finally {
+			drop.unsubscribe();
+			latest.unsubscribe();
+		}
+
+		tasks.clear();
+		List<Object> errorReceived = new ArrayList<>();
+		MessageBus.Subscription error = Message.getBus().subscribe(m -> {
+			if (Integer.valueOf(0).equals(m.getContent())) {
+				throw new AssertionError("Handler error");
+			}
+			errorReceived.add(m.getContent());
+		}, tasks::add, 2, MessageBus.OverflowPolicy.DROP, 10, "testError");
+		try {
+			Message.getBus().publish(new Message("testError", getClass().getName(), 0));
+			try {
+				tasks.get(0).run();
+				Assert.fail();
+			} catch (AssertionError e) {
+				Assert.assertEquals("Handler error", e.getMessage());
+			}
+			Message.getBus().publish(new Message("testError", getClass().getName(), 1));
+			Assert.assertEquals(2, tasks.size());// 抛出Error后仍能提交处理任务
+			tasks.get(1).run();
+			Assert.assertEquals(Arrays.asList(1), errorReceived);
+		} finally {
+			error.unsubscribe();
+		}
+
+		List<Object> busReceived = new ArrayList<>();
+		List<Object> subjectReceived = new ArrayList<>();
+		MessageBus.Subscription bus = Message.getBus().subscribe(m -> busReceived.add(m.getContent()), "testSubject");
+		rx.Subscription subject = Message.getSubject().filter(m -> "testSubject".equals(m.getType()))
+				.subscribe(m -> subjectReceived.add(m.getContent()));
+		try {
+			Message.getBus().publish(new Message("testSubject", getClass().getName(), 1));
+			Message.getSubject().onNext(new Message("testSubject", getClass().getName(), 2));
+			Assert.assertEquals(Arrays.asList(1, 2), busReceived);// 消息主题与消息总线互通，不重复分派
+			Assert.assertEquals(Arrays.asList(1, 2), subjectReceived);
+		} finally {
+			bus.unsubscribe();
+			subject.unsubscribe();
+		}
+	}
+
+	/**
+	 * 各种属性访问器的读写结果与反射一致
+	 */
+	@Test
+	public void testPropertyAccessor() throws Exception {
+		Property.AccessorType old = Property.getAccessorType();
+		try {
+			for (Property.AccessorType type : Property.AccessorType.values()) {
+				Property.setAccessorType(type);
+				Map<String, Property> props = ClassUtils.properties(Dict.class);
+				Assert.assertSame(props, ClassUtils.properties(Dict.class));// 属性表与类关联缓存
+				Dict dict = new Dict(1, "a");
+				Assert.assertEquals("a", props.get("name").getValue(dict));
+				props.get("id").setValue(dict, 2);
+				Assert.assertEquals(Integer.valueOf(2), dict.getId());
+				props.get("name").setValue(dict, null);
+				Assert.assertNull(dict.getName());
+				try {
+					props.get("id").setValue(dict, "x");// 类型不匹配时与反射一样抛出IllegalArgumentException
+					Assert.fail();
+				} catch (IllegalArgumentException e) {
+					Assert.assertEquals(Integer.valueOf(2), dict.getId());
+				}
+			}
+		} finally {
+			Property.setAccessorType(old);
+		}
+	}
 }
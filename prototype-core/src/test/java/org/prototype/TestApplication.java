@@ -1,18 +1,24 @@
 package org.prototype;
 
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.prototype.business.Performance;
+import org.prototype.business.limit.RedisStandIn;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Primary;
 
+import redis.clients.jedis.JedisPool;
+
 /**
  * 测试
  * @author lj
@@ -48,6 +54,35 @@ public class TestApplication {
 		return Executors.newFixedThreadPool(10, new ThreadFactoryImpl(2));
 	}
 
+	/**
+	 * 拒绝每第二个任务的线程池（用于并发批处理的拒绝）
+	 * @return 线程池
+	 */
+	@Bean
+	public Executor rejectingExecutor() {
+		AtomicInteger count = new AtomicInteger();
+		return task -> {
+			if (count.incrementAndGet() % 2 == 0) {
+				throw new RejectedExecutionException("Rejected for test");
+			}
+			new Thread(task).start();
+		};
+	}
+
+	/**
+	 * Redis替身（用于Redis限制）
+	 * @return 替身
+	 */
+	@Bean
+	public RedisStandIn redisStandIn() {
+		return new RedisStandIn();
+	}
+
+	@Bean
+	public JedisPool jedisPool(RedisStandIn redis) {
+		return redis.pool();
+	}
+
 	private class ThreadFactoryImpl implements ThreadFactory {
 
 		private int index;
@@ -0,0 +1,45 @@
+package org.prototype.business;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * 参数绑定测试业务：由业务类预先编译的参数绑定器（ParamBinder）按属性名绑定输入值
+ * @author lj
+ *
+ */
+public class BindBusiness extends Business {
+
+	@Input(@Prop(desc = "数量", min = 1, max = 10))
+	private Integer count;
+
+	@Input(@Prop(desc = "日期", pattern = "yyyy-MM-dd"))
+	private Date day;
+
+	@Input(@Prop(desc = "名称", maxLength = 5))
+	private String name;
+
+	/**
+	 * 绑定输入值
+	 * @param values 属性名与输入值的映射
+	 * @return 绑定后的业务对象
+	 * @throws Exception 异常
+	 */
+	public static BindBusiness bind(Map<String, Object> values) throws Exception {
+		BindBusiness rs = new BindBusiness();
+		ParamBinder binder = ParamBinder.of(BindBusiness.class);
+		ExecuteChain chain = new ExecuteChainImpl(rs);
+		for (Map.Entry<String, Object> entry : values.entrySet()) {
+			binder.bind(chain, rs, entry.getKey(), entry.getValue());
+		}
+		return rs;
+	}
+
+	/**
+	 * 业务类的参数绑定器（每个业务类一个）
+	 * @return 参数绑定器
+	 */
+	public static Object getBinder() {
+		return ParamBinder.of(BindBusiness.class);
+	}
+}
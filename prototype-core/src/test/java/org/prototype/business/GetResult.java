@@ -8,6 +8,7 @@ import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -125,6 +126,10 @@ public class GetResult {
 			@Output(type = Dict.class, value = { @Prop(desc = "ID", name = "id"),
 					@Prop(desc = "NAME", name = "name",maxLength=20) }) })
 	private List<User> users;
+
+	@InputOutput(output = { @Output(type = User.class, value = { @Prop(desc = "ID", name = "id"),
+			@Prop(desc = "NAME", name = "name", maxLength = 20) }) })
+	private Map<String, User> userMap;
 	
 	public String getValue(Integer value){
 		return value.toString();
@@ -186,6 +191,13 @@ public class GetResult {
 		result.user1.getType().setName("fdsa");
 		result.user2=new User();
 		result.user2.setId(5);
+		result.userMap = new LinkedHashMap<>();
+		for (String key : new String[] { "a", "b" }) {// 相等但不是同一对象
+			User user = new User();
+			user.setId(7);
+			user.setName("same");
+			result.userMap.put(key, user);
+		}
 		
 		Result rs=new Result();
 		new GetResultExecuteFilter.ResultSetter(result,rs).build();
@@ -228,6 +240,12 @@ public class GetResult {
 		Assert.assertNotNull(rs.user1);
 		Assert.assertNotNull(rs.user2);
 		Assert.assertNotNull(rs.users);
+		// 每个属性单独记录已转换的对象，同一对象在不同属性中都完整输出
+		Assert.assertEquals("test1", rs.user.getName());
+		Assert.assertEquals("test1", rs.user1.getName());
+		// 同一属性中相等的对象（按equals）再次出现时输出ID
+		Assert.assertEquals("same", ((User) rs.userMap.get("a")).getName());
+		Assert.assertEquals(7, rs.userMap.get("b"));
 		log.info(new ObjectMapper().writeValueAsString(rs.user));
 		log.info(new ObjectMapper().writeValueAsString(rs.user1));
 		log.info(new ObjectMapper().writeValueAsString(rs.user2));
@@ -278,6 +296,7 @@ public class GetResult {
 		private User user1;
 		private User user2;
 		private List<User> users;
+		private Map<String, Object> userMap;
 
 	}
 }
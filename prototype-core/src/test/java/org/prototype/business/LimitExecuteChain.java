@@ -0,0 +1,61 @@
+package org.prototype.business;
+
+import java.lang.annotation.Annotation;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 访问限制测试的执行链：注解取自指定的类，记录执行及拒绝的次数，执行时调用指定的操作
+ * @author lj
+ *
+ */
+public class LimitExecuteChain extends ExecuteChainImpl {
+
+	private Class<?> annotated;
+
+	@Getter
+	private AtomicInteger executed = new AtomicInteger();
+
+	@Getter
+	private AtomicInteger rejected = new AtomicInteger();
+
+	@Setter
+	private Callable<?> action;
+
+	@Setter
+	private Object[] params;
+
+	public LimitExecuteChain(Class<?> annotated) {
+		super(null);
+		this.annotated = annotated;
+	}
+
+	@Override
+	public void doChain() throws Exception {
+		executed.incrementAndGet();
+		if (action != null) {
+			action.call();
+		}
+	}
+
+	@Override
+	public Object[] getParams() {
+		return params;
+	}
+
+	@Override
+	public void setResultType(int resultType) {
+		if (resultType == REJECT) {
+			rejected.incrementAndGet();
+		}
+	}
+
+	@Override
+	public <T extends Annotation> T getAnnotation(Class<T> annotationType) {
+		return annotated.getAnnotation(annotationType);
+	}
+
+}
@@ -1,11 +1,22 @@
 package org.prototype.business;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.prototype.entity.Dict;
 
 @ServiceDefine(hint = "...", value = "first demo")
 public class ServiceDemo2 extends Business{
 
+	/**
+	 * 测试用：Stream关闭的次数
+	 */
+	public static final AtomicInteger closed = new AtomicInteger();
+
 	@Input(@Prop(desc = "关键字",maxLength=20))
 	private String keyword;
 	
@@ -20,4 +31,10 @@ public class ServiceDemo2 extends Business{
 	
 	@Input(@Prop(desc="附加属性",maxLength=20))
 	private Map<String, String> attributes;
+
+	@Output(value = @Prop(desc = "金额", pattern = "0.00"), stream = true)
+	private List<Double> amounts = Arrays.asList(1.5, 2d);
+
+	@Output(desc = "词典", value = { @Prop(name = "id", desc = "id"), @Prop(name = "name", desc = "条目名", maxLength = 20) }, stream = true)
+	private Stream<Dict> dicts = Stream.of(new Dict(1, "a"), new Dict(2, "b")).onClose(closed::incrementAndGet);
 }
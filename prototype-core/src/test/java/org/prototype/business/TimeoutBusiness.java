@@ -0,0 +1,42 @@
+package org.prototype.business;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 超时测试业务：在线程池中执行，等待指定的时间
+ * @author lj
+ *
+ */
+@ServiceDefine(value = "timeout", url = "/timeout")
+@Concurrent(timeout = 200)
+public class TimeoutBusiness extends Business {
+
+	@Setter
+	private static volatile long sleep;
+
+	@Getter
+	private static volatile String thread;
+
+	@Getter
+	private static volatile boolean interrupted;
+
+	/**
+	 * 创建业务对象的线程
+	 */
+	@Getter
+	private static volatile String creator;
+
+	{
+		creator = Thread.currentThread().getName();
+	}
+
+	void business() {
+		thread = Thread.currentThread().getName();
+		try {
+			Thread.sleep(sleep);
+		} catch (InterruptedException e) {
+			interrupted = true;
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package org.prototype.business.limit;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.ZeroArgFunction;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import lombok.Getter;
+import lombok.Setter;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+/**
+ * Redis替身：用Lua解释器（luaj）执行{@link RedisLimiter}的脚本，redis.call支持脚本用到的hash命令、PEXPIRE及TIME，
+ * 数据保存在内存中，TIME返回可调整的时间，可模拟Redis不可用
+ *
+ * @author lj
+ *
+ */
+public class RedisStandIn extends Jedis {
+
+	private final Globals globals = JsePlatform.standardGlobals();
+
+	/**
+	 * SHA1与已加载的脚本
+	 */
+	private final Map<String, LuaValue> scripts = new HashMap<>();
+
+	private final Map<String, Map<String, String>> hashes = new HashMap<>();
+
+	/**
+	 * TIME命令返回的时间（毫秒）
+	 */
+	private long time = System.currentTimeMillis();
+
+	/**
+	 * 执行脚本的次数
+	 */
+	@Getter
+	private AtomicInteger evals = new AtomicInteger();
+
+	/**
+	 * 使用本地限制的次数
+	 */
+	@Getter
+	private AtomicInteger fallbacks = new AtomicInteger();
+
+	@Setter
+	private volatile boolean down;
+
+	public RedisStandIn() {
+		LuaTable redis = new LuaTable();
+		redis.set("call", new VarArgFunction() {
+			@Override
+			public Varargs invoke(Varargs args) {
+				return redisCall(args);
+			}
+		});
+		redis.set("replicate_commands", new ZeroArgFunction() {
+			@Override
+			public LuaValue call() {
+				return LuaValue.TRUE;
+			}
+		});
+		globals.set("redis", redis);
+	}
+
+	@Override
+	public synchronized Object evalsha(String sha1, List<String> keys, List<String> args) {
+		LuaValue script = scripts.get(sha1);
+		if (script == null) {
+			throw new JedisDataException("NOSCRIPT No matching script. Please use EVAL.");
+		}
+		return run(script, keys, args);
+	}
+
+	@Override
+	public synchronized Object eval(String script, List<String> keys, List<String> args) {
+		LuaValue rs = scripts.computeIfAbsent(RedisLimiter.sha1(script), sha -> globals.load(script, sha));
+		return run(rs, keys, args);
+	}
+
+	private Object run(LuaValue script, List<String> keys, List<String> args) {
+		evals.incrementAndGet();
+		if (down) {
+			throw new JedisConnectionException("Connection refused");
+		}
+		globals.set("KEYS", table(keys));
+		globals.set("ARGV", table(args));
+		LuaValue rs;
+		try {
+			rs = script.call();
+		} catch (LuaError e) {
+			throw new JedisDataException("ERR Error running script: " + e.getMessage());
+		}
+		return rs.type() == LuaValue.TNUMBER ? Long.valueOf(rs.tolong()) : rs.isnil() ? null : rs.tojstring();
+	}
+
+	private static LuaTable table(List<String> values) {
+		LuaTable rs = new LuaTable();
+		for (int i = 0; i < values.size(); i++) {
+			rs.set(i + 1, values.get(i));
+		}
+		return rs;
+	}
+
+	/**
+	 * 执行脚本中的redis.call
+	 */
+	private Varargs redisCall(Varargs args) {
+		String command = args.checkjstring(1).toUpperCase();
+		if ("TIME".equals(command)) {
+			return table(Arrays.asList(String.valueOf(time / 1000), String.valueOf(time % 1000 * 1000)));
+		}
+		Map<String, String> hash = hashes.computeIfAbsent(args.checkjstring(2), k -> new LinkedHashMap<>());
+		switch (command) {
+		case "HMGET":
+			LuaTable values = new LuaTable();
+			for (int i = 3; i <= args.narg(); i++) {
+				String value = hash.get(args.checkjstring(i));
+				values.set(i - 2, value == null ? LuaValue.FALSE : LuaValue.valueOf(value));
+			}
+			return values;
+		case "HMSET":
+			for (int i = 3; i < args.narg(); i += 2) {
+				hash.put(args.checkjstring(i), args.checkjstring(i + 1));
+			}
+			return LuaValue.valueOf("OK");
+		case "HGETALL":
+			LuaTable all = new LuaTable();
+			for (Map.Entry<String, String> entry : hash.entrySet()) {
+				all.insert(0, LuaValue.valueOf(entry.getKey()));
+				all.insert(0, LuaValue.valueOf(entry.getValue()));
+			}
+			return all;
+		case "HDEL":
+			int removed = 0;
+			for (int i = 3; i <= args.narg(); i++) {
+				removed += hash.remove(args.checkjstring(i)) == null ? 0 : 1;
+			}
+			return LuaValue.valueOf(removed);
+		case "HINCRBY":
+			String field = args.checkjstring(3);
+			long value = Long.parseLong(hash.getOrDefault(field, "0")) + Long.parseLong(args.checkjstring(4));
+			hash.put(field, String.valueOf(value));
+			return LuaValue.valueOf(value);
+		case "PEXPIRE":
+			return LuaValue.ONE;
+		default:
+			throw new LuaError("Unknown Redis command called from Lua script : " + command);
+		}
+	}
+
+	/**
+	 * 调整TIME命令返回的时间
+	 *
+	 * @param millis
+	 *            增加的毫秒数
+	 */
+	public synchronized void advance(long millis) {
+		time += millis;
+	}
+
+	/**
+	 * 读取hash
+	 *
+	 * @param key
+	 *            键
+	 * @return hash的复制
+	 */
+	public synchronized Map<String, String> hash(String key) {
+		return new LinkedHashMap<>(hashes.getOrDefault(key, new LinkedHashMap<>()));
+	}
+
+	@Override
+	public void close() {
+		// do nothing
+	}
+
+	/**
+	 * 创建总是返回此替身的JedisPool（不连接Redis）
+	 *
+	 * @return JedisPool
+	 */
+	public JedisPool pool() {
+		return new JedisPool() {
+			@Override
+			public Jedis getResource() {
+				return RedisStandIn.this;
+			}
+		};
+	}
+
+	/**
+	 * 创建使用此替身的令牌桶限制器（本地限制总是拒绝）
+	 *
+	 * @param key
+	 *            键
+	 * @param rate
+	 *            每秒令牌数（也是桶容量）
+	 * @param prefetch
+	 *            每次预取的令牌数
+	 * @return 限制器
+	 */
+	public BooleanSupplier limiter(String key, int rate, int prefetch) {
+		String value = String.valueOf(rate);
+		RedisLimiter limiter = new RedisLimiter(key, RedisLimiter.TOKEN_BUCKET, Arrays.asList(value, value), prefetch,
+				TimeUnit.SECONDS.toNanos(prefetch) / rate, () -> this, (timeout, unit) -> {
+					fallbacks.incrementAndGet();
+					return false;
+				});
+		return () -> limiter.tryAcquire(0, TimeUnit.SECONDS);
+	}
+
+}
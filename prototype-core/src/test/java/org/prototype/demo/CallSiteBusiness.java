@@ -0,0 +1,62 @@
+package org.prototype.demo;
+
+import org.prototype.annotation.Catch;
+import org.prototype.core.Prototype;
+
+/**
+ * 方法调用点：重载、数组参数及基本类型返回值
+ * 
+ * @author lj
+ *
+ */
+@Prototype
+public class CallSiteBusiness {
+
+	@Catch
+	public double half(double value) {
+		return value / 2;
+	}
+
+	double halfException(Exception exception) {
+		return -1;
+	}
+
+	@Catch
+	public long sum(long[] values) {
+		long rs = 0;
+		for (long value : values) {
+			rs += value;
+		}
+		return rs;
+	}
+
+	long sumException(NullPointerException exception) {
+		return -1;
+	}
+
+	@Catch
+	public String join(String[] values) {
+		return String.join(",", values);
+	}
+
+	@Catch
+	public String join(String first, String second) {
+		return first + "+" + second;
+	}
+
+	String joinException(Exception exception) {
+		return null;
+	}
+
+	@Catch
+	public boolean check(int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException();
+		}
+		return value > 0;
+	}
+
+	boolean checkException(IllegalArgumentException exception) {
+		return false;
+	}
+}
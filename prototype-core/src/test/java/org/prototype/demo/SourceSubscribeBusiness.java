@@ -0,0 +1,30 @@
+package org.prototype.demo;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.prototype.annotation.Subscribe;
+
+/**
+ * 测试按来源前缀及消息内容类型分派的消息处理（同步处理）
+ * 
+ * @author lj
+ *
+ */
+@Subscribe(type = "sourceIndex", incloudSource = { "org.prototype.a", "org.prototype.b" }, excloudSource = "org.prototype.a.x", async = false)
+public class SourceSubscribeBusiness {
+
+	/**
+	 * 测试用
+	 */
+	public static final List<Object> received = new CopyOnWriteArrayList<>();
+
+	public void onMessage(Integer value) {
+		received.add(value);
+	}
+
+	public void onMessage(String value) {
+		received.add(value);
+	}
+
+}
@@ -2,12 +2,21 @@ package org.prototype.sql;
 
 import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.prototype.annotation.Chain;
 import org.prototype.core.Prototype;
+import org.prototype.core.PrototypeStatus;
 import org.prototype.entity.Dict;
 import org.springframework.transaction.annotation.Transactional;
 
+import lombok.Getter;
+
 /**
  * 批处理业务
  * 
@@ -17,23 +26,248 @@ import org.springframework.transaction.annotation.Transactional;
 @Prototype
 public class BatchBusiness {
 
+	@Getter
 	private List<Dict> inserted = new ArrayList<>();
 	private List<Dict> updated = new ArrayList<>();
+	@Getter
+	private int total;
+	@Getter
+	private List<Dict> dicts = new ArrayList<>();
+	@Getter
+	private long rows;
+	@Getter
+	private int ids;
+	@Getter
+	private int[] inCounts;
+	@Getter
+	private boolean deregistered;
+
+	@Getter
+	private List<Dict> rowsInserted = new ArrayList<>();
+	@Getter
+	private List<Dict> streamed = new ArrayList<>();
+	@Getter
+	private List<Integer> chainedIds;
+	@Getter
+	private int[] nullableIds;
+	@Getter
+	private int nullableId = -1;
 
+	@Chain({ "prepare", "save" })
 	@Transactional
-	@Batch(value = { "update", "insert" }, after = true)
 	public void execute() {
+	}
+
+	void prepare() {
 		updated.add(new Dict(1, "Item1"));
 		updated.add(new Dict(2, "Item2"));
 		inserted.add(new Dict("Item3"));
 		inserted.add(new Dict("Item4"));
 	}
 
+	@Batch(value = { "update", "insert" })
+	void save(Connection conn) {
+	}
+
+	@Chain({ "prepare", "saveChained" })
+	@Transactional
+	public void executeChained() {
+	}
+
+	@Batch({ "insert", "renameInserted" })
+	void saveChained(Connection conn) {
+	}
+
+	@BatchSql("update sys_dict set name=? where id=?")
+	CollectionIterator<?> renameInserted() {
+		chainedIds = inserted.stream().map(Dict::getId).collect(Collectors.toList());// 调用时读取ID
+		return new CollectionIterator<Dict>(inserted) {
+
+			@Override
+			public Object[] next(Dict t) {
+				return new Object[] { t.getName() + "!", t.getId() };
+			}
+
+		};
+	}
+
+	@Chain("saveAfter")
+	@Transactional
+	public void executeAfter() {
+	}
+
+	@Batch(value = { "update", "insert" }, after = true)
+	void saveAfter(Connection conn) {
+		prepare();// 批处理在方法之后执行
+	}
+
+	@Chain({ "prepareStream", "saveStream" })
+	@Transactional
+	public void executeStream() {
+	}
+
+	void prepareStream() {
+		for (int i = 0; i < 250; i++) {
+			streamed.add(new Dict("Stream" + i));
+		}
+	}
+
+	@Batch("insertStream")
+	void saveStream(Connection conn) {
+	}
+
+	@BatchSql("insert into sys_dict(name) values(?)")
+	InsertIterator<?> insertStream() {
+		return new InsertIterator<Dict>(streamed.stream()) {
+
+			@Override
+			public Object[] next(Dict t) {
+				return new Object[] { t.getName() };
+			}
+
+		};
+	}
+
+	@Chain({ "prepareRows", "saveParallel" })
+	public void executeParallel() {
+	}
+
+	void prepareRows() {
+		for (int i = 0; i < 10; i++) {
+			rowsInserted.add(new Dict("Row" + i));
+		}
+		inserted.add(new Dict("Item5"));
+	}
+
+	@Batch(value = { "insertRows", "insert" }, parallel = true)
+	void saveParallel(Connection conn) {
+	}
+
+	@Chain({ "prepareRows", "saveRejected" })
+	public void executeRejected() {
+	}
+
+	@Batch(value = { "insertRows", "insert" }, parallel = true, executor = "rejectingExecutor")
+	void saveRejected(Connection conn) {
+	}
+
+	@BatchSql(value = "insert into sys_dict(name) values(?)", rows = 4)
+	InsertIterator<?> insertRows() {
+		return new InsertIterator<Dict>(rowsInserted) {
+
+			@Override
+			public Object[] next(Dict t) {
+				return new Object[] { t.getName() };
+			}
+
+		};
+	}
+
 	@Transactional
 	public int count(Connection conn) {
 		return countSql(conn,"select count(id) from sys_dict");
 	}
 
+	@Chain("countTwice")
+	@Transactional
+	public void countAll() {
+	}
+
+	void countTwice(Connection conn) {
+		total = countSql(conn, "select count(id) from sys_dict") + countSql(conn, "select count(id) from sys_dict");
+	}
+
+	@Chain("cursor")
+	@Transactional
+	public void readAll() {
+	}
+
+	void cursor(Connection conn) {
+		insertDict(conn, "insert into sys_dict(name) values(?)", new Object[] { "cursor" });
+		try (Stream<Dict> stream = streamDicts(conn, "select id,name from sys_dict")) {
+			stream.forEach(dicts::add);
+		}
+		rows = eachDict(conn, "select id,name from sys_dict where id>?", new Object[] { 0 }, dict -> {
+			if (dict.getName() == null) {
+				throw new IllegalStateException("Name required");
+			}
+		});
+		Iterator<Integer> it = iterateIds(conn, "select id from sys_dict");
+		for (; it.hasNext(); it.next()) {
+			ids++;
+		}
+		deregistered = PrototypeStatus.getStatus().getTransaction().getResource(it) == null;// 读取完成后移除
+		Integer id = dicts.get(0).getId();
+		inCounts = new int[] {
+				countIn(conn, "select count(id) from sys_dict where id in (?) and name in ?",
+						new Object[] { Arrays.asList(id, id, id, id, id), new String[0] }),
+				countIn(conn, "select count(id) from sys_dict where id in (?)", new Object[] { new int[] { id, -1 } }),
+				countBuilder(conn, new SQLBuilder("select count(id) from sys_dict where id>0")
+						.appendWhenNotEmpty(Arrays.asList(id, -1, -2), "and id in")),
+				countIn(conn, "select count(id) from sys_dict where id in (unnest(?))", new Object[] { new Integer[] { id } }) };
+	}
+
+	@Chain("mapNulls")
+	@Transactional
+	public void readNulls() {
+	}
+
+	void mapNulls(Connection conn) {
+		insertDict(conn, "insert into sys_dict(name) values(?)", new Object[] { "null1" });
+		insertDict(conn, "insert into sys_dict(name) values(?)", new Object[] { "null2" });
+		String sql = "select case when name=? then null else id end from sys_dict where name";
+		nullableIds = selectIds(conn, sql + " in (?, ?) order by id", new Object[] { "null1", "null1", "null2" });
+		nullableId = selectId(conn, sql + "=?", new Object[] { "null1", "null1" });
+	}
+
+	@PreparedSql
+	private int[] selectIds(Connection conn, String sql, Object[] params) {
+		return null;
+	}
+
+	@PreparedSql
+	private int selectId(Connection conn, String sql, Object[] params) {
+		return 0;
+	}
+
+	@Chain("iterateOutside")
+	public void readOutside() {
+	}
+
+	void iterateOutside(Connection conn) {
+		iterateIds(conn, "select id from sys_dict");
+	}
+
+	@PreparedSql
+	private int countIn(Connection conn, String sql, Object[] params) {
+		return 0;
+	}
+
+	@PreparedSql
+	private int countBuilder(Connection conn, SQLBuilder builder) {
+		return 0;
+	}
+
+	@PreparedSql(type = StatementType.INSERT)
+	private Integer insertDict(Connection conn, String sql, Object[] params) {
+		return null;
+	}
+
+	@PreparedSql(value = { "id", "name" }, fetchSize = 1)
+	private Stream<Dict> streamDicts(Connection conn, String sql) {
+		return null;
+	}
+
+	@PreparedSql({ "id", "name" })
+	private long eachDict(Connection conn, String sql, Object[] params, Consumer<Dict> consumer) {
+		return 0;
+	}
+
+	@PreparedSql
+	private Iterator<Integer> iterateIds(Connection conn, String sql) {
+		return null;
+	}
+
 	@PreparedSql()
 	private int countSql(Connection conn,String sql){return 0;}
 
@@ -0,0 +1,28 @@
+package org.prototype.sql;
+
+import java.util.List;
+
+/**
+ * 参数展开测试（调用包内的{@link SqlUtil#expandParameters(String, Object[], List)}）
+ * 
+ * @author lj
+ *
+ */
+public class SqlExpansion {
+
+	/**
+	 * 展开SQL中的数组及集合参数
+	 * 
+	 * @param sql
+	 *            SQL
+	 * @param values
+	 *            展开后的参数
+	 * @param parameters
+	 *            参数
+	 * @return 展开后的SQL
+	 */
+	public static String expand(String sql, List<Object> values, Object... parameters) {
+		return SqlUtil.expandParameters(sql, parameters, values);
+	}
+
+}
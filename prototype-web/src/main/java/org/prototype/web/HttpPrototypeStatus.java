@@ -1,6 +1,7 @@
 package org.prototype.web;
 
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -12,13 +13,24 @@ import org.springframework.web.context.request.ServletRequestAttributes;
 import lombok.Getter;
 
 /**
- * HTTP原型状态.
+ * HTTP原型状态. <br>
+ * 请求头{@link #TIMEOUT_HEADER}指定客户端的等待时间（毫秒）时，作为业务的截止时间.
  * 
  * @author lj
  *
  */
 public class HttpPrototypeStatus extends PrototypeStatus {
 
+	/**
+	 * 客户端等待时间（毫秒）的请求头
+	 */
+	public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+	/**
+	 * 请求头中允许的最大等待时间（毫秒）
+	 */
+	private static final long MAX_TIMEOUT = TimeUnit.DAYS.toMillis(1);
+
 	@Getter
 	private HttpServletRequest request;
 
@@ -37,6 +49,14 @@ public class HttpPrototypeStatus extends PrototypeStatus {
 		ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
 		request = attributes.getRequest();
 		response = attributes.getResponse();
+		String timeout = request.getHeader(TIMEOUT_HEADER);
+		if (timeout != null) {
+			try {
+				setDeadline(Math.min(Long.parseLong(timeout.trim()), MAX_TIMEOUT), TimeUnit.MILLISECONDS);
+			} catch (NumberFormatException e) {
+				// 忽略无效的请求头
+			}
+		}
 	}
 
 	/**
@@ -7,6 +7,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
@@ -58,7 +59,7 @@ class RequestResponse implements java.io.Serializable {
 		this.result = result;
 		HttpPrototypeStatus status = HttpPrototypeStatus.getStatus(HttpPrototypeStatus.class);
 		id = status.getId();
-		useTime = System.currentTimeMillis() - status.getStartTime();
+		useTime = TimeUnit.NANOSECONDS.toMillis(status.getElapsedNanos());
 		request = new Request(status.getRequest());
 		response = new Response(status.getResponse());
 	}